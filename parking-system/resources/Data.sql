@@ -18,6 +18,39 @@ create table ticket(
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create table ticket_journal(
+ NAME varchar(100) PRIMARY KEY,
+ LAST_SEQ bigint NOT NULL);
+
+create table report_hourly(
+ HOUR_START DATETIME NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ EXITS bigint NOT NULL,
+ REVENUE_CENTS bigint NOT NULL,
+ OCCUPIED_SECONDS bigint NOT NULL,
+ PRIMARY KEY (HOUR_START, TYPE));
+
+create table report_pending(
+ TICKET_ID int PRIMARY KEY,
+ SINCE DATETIME NOT NULL);
+
+/* closed tickets moved out of ticket by TicketArchiver, one partition per year of exit; TicketArchiver adds the coming years' partitions */
+create table ticket_archive(
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ PRIMARY KEY (ID, OUT_TIME))
+ PARTITION BY RANGE COLUMNS(OUT_TIME) (
+ PARTITION p2025 VALUES LESS THAN ('2026-01-01'),
+ PARTITION p2026 VALUES LESS THAN ('2027-01-01'),
+ PARTITION p2027 VALUES LESS THAN ('2028-01-01'),
+ PARTITION pmax VALUES LESS THAN (MAXVALUE));
+
+create index ticket_archive_plate on ticket_archive(VEHICLE_REG_NUMBER);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
@@ -45,6 +78,39 @@ create table ticket(
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create table ticket_journal(
+ NAME varchar(100) PRIMARY KEY,
+ LAST_SEQ bigint NOT NULL);
+
+create table report_hourly(
+ HOUR_START DATETIME NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ EXITS bigint NOT NULL,
+ REVENUE_CENTS bigint NOT NULL,
+ OCCUPIED_SECONDS bigint NOT NULL,
+ PRIMARY KEY (HOUR_START, TYPE));
+
+create table report_pending(
+ TICKET_ID int PRIMARY KEY,
+ SINCE DATETIME NOT NULL);
+
+/* closed tickets moved out of ticket by TicketArchiver, one partition per year of exit; TicketArchiver adds the coming years' partitions */
+create table ticket_archive(
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ PRIMARY KEY (ID, OUT_TIME))
+ PARTITION BY RANGE COLUMNS(OUT_TIME) (
+ PARTITION p2025 VALUES LESS THAN ('2026-01-01'),
+ PARTITION p2026 VALUES LESS THAN ('2027-01-01'),
+ PARTITION p2027 VALUES LESS THAN ('2028-01-01'),
+ PARTITION pmax VALUES LESS THAN (MAXVALUE));
+
+create index ticket_archive_plate on ticket_archive(VEHICLE_REG_NUMBER);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
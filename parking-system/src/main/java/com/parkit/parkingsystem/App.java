@@ -1,13 +1,50 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.archive.TicketArchiver;
+import com.parkit.parkingsystem.batch.GateEventBatchProcessor;
+import com.parkit.parkingsystem.batch.TicketReRater;
+import com.parkit.parkingsystem.migration.SchemaMigrator;
+import com.parkit.parkingsystem.report.RevenueReportService;
+import com.parkit.parkingsystem.server.GateServer;
 import com.parkit.parkingsystem.service.InteractiveShell;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
+
 public class App {
 	 private static final Logger logger = LogManager.getLogger("App");
-	    public static void main(String args[]){
+	    public static void main(String args[]) throws Exception {
 	        logger.info("Initializing Parking System");
+	        //the gate server migrates the database of each facility it serves
+	        if((args.length == 0 || !"server".equals(args[0])) && new SchemaMigrator().migrate() < 0){
+	            throw new IllegalStateException("Schema migration failed, not starting");
+	        }
+	        //"server [port] [maxInFlight] [tariffFile] [facilitiesFile]" serves the gates over HTTP instead of the console
+	        if(args.length > 0 && "server".equals(args[0])){
+	            GateServer.main(Arrays.copyOfRange(args, 1, args.length));
+	            return;
+	        }
+	        //"batch <file> [batchSize]" imports an offline car park's gate event log
+	        if(args.length > 0 && "batch".equals(args[0])){
+	            GateEventBatchProcessor.main(Arrays.copyOfRange(args, 1, args.length));
+	            return;
+	        }
+	        //"rerate [tariff=file] [dryRun=true] [diff=file] [from=date] [to=date]" prices closed tickets again
+	        if(args.length > 0 && "rerate".equals(args[0])){
+	            TicketReRater.main(Arrays.copyOfRange(args, 1, args.length));
+	            return;
+	        }
+	        //"report hourly|daily <from> [to]" prints revenue and occupancy per parking type
+	        if(args.length > 0 && "report".equals(args[0])){
+	            RevenueReportService.main(Arrays.copyOfRange(args, 1, args.length));
+	            return;
+	        }
+	        //"archive [maxAgeDays] [chunkSize]" moves old closed tickets to the archive table
+	        if(args.length > 0 && "archive".equals(args[0])){
+	            TicketArchiver.main(Arrays.copyOfRange(args, 1, args.length));
+	            return;
+	        }
 	        InteractiveShell.loadInterface();
 }
-}
\ No newline at end of file
+}
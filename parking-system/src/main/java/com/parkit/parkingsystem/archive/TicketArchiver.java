@@ -0,0 +1,218 @@
+package com.parkit.parkingsystem.archive;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.report.ReportAggregator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves closed tickets older than a maximum age from the ticket table to ticket_archive, so the table the
+ * gates query stays small. Tickets are moved a chunk per transaction, which only locks the old rows being
+ * moved and never the open tickets of the gates. History and loyalty queries read both tables.
+ *
+ * <p>Only tickets already counted in the revenue reports are moved, since the report catch-up reads the
+ * ticket table alone; each chunk holds the report high-water mark so that it cannot run during a catch-up.
+ *
+ * <p>On MySQL, where ticket_archive has one partition per year of exit, each run first splits the current and
+ * the next year out of the catch-all pmax partition, so old years can still be dropped a partition at a time.
+ */
+public class TicketArchiver {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiver");
+
+    public static final int DEFAULT_MAX_AGE_DAYS = 90;
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    //MySQL only, the embedded test database does not partition ticket_archive
+    private static final String GET_ARCHIVE_PARTITIONS = "select PARTITION_NAME from information_schema.PARTITIONS where TABLE_SCHEMA = database() and TABLE_NAME = 'ticket_archive' and PARTITION_NAME is not null";
+    private static final Pattern YEAR_PARTITION = Pattern.compile("p(\\d{4})");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    private final long maxAgeMillis;
+    private final int chunkSize;
+
+    public TicketArchiver() {
+        this(TimeUnit.DAYS.toMillis(DEFAULT_MAX_AGE_DAYS), DEFAULT_CHUNK_SIZE);
+    }
+
+    public TicketArchiver(long maxAgeMillis, int chunkSize) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.chunkSize = chunkSize;
+    }
+
+    //"archive [maxAgeDays] [chunkSize]" archives once and prints how many tickets were moved
+    public static void main(String[] args) {
+        int maxAgeDays = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_AGE_DAYS;
+        int chunkSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CHUNK_SIZE;
+        try {
+            System.out.println(new TicketArchiver(TimeUnit.DAYS.toMillis(maxAgeDays), chunkSize).archive() + " tickets archived");
+        } finally {
+            DataBaseConfig.shutdownPools();
+        }
+    }
+
+    //moves the closed tickets that exited before the max age and returns how many, or -1 on error
+    public int archive() {
+        addPartitions();
+        Timestamp cutOff = new Timestamp(System.currentTimeMillis() - maxAgeMillis);
+        ReportAggregator reportAggregator = new ReportAggregator();
+        reportAggregator.dataBaseConfig = dataBaseConfig;
+        int archived = 0;
+        int after = 0;
+        while (true) {
+            Connection con = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                con.setAutoCommit(false);
+                ReportAggregator.CountedTickets countedTickets = reportAggregator.lockCounted(con);
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKETS);
+                ps.setInt(1, after);
+                ps.setLong(2, countedTickets.getMark());
+                ps.setTimestamp(3, cutOff);
+                ps.setInt(4, chunkSize);
+                ResultSet rs = ps.executeQuery();
+                int read = 0;
+                List<Integer> ids = new ArrayList<>();
+                while (rs.next()) {
+                    read++;
+                    after = rs.getInt(1);
+                    //still pending, the next catch-up counts it
+                    if (countedTickets.isCounted(after)) {
+                        ids.add(after);
+                    }
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+                if (!ids.isEmpty()) {
+                    move(con, ids);
+                }
+                con.commit();
+                archived += ids.size();
+                if (read < chunkSize) {
+                    if (archived > 0) {
+                        logger.info("Archived " + archived + " tickets closed before " + cutOff);
+                    }
+                    return archived;
+                }
+            } catch (Exception ex) {
+                logger.error("Error archiving tickets, rolling back", ex);
+                rollback(con);
+                return -1;
+            } finally {
+                dataBaseConfig.closeConnection(con);
+            }
+        }
+    }
+
+    //adds the yearly partitions missing up to next year and returns how many, 0 when ticket_archive is not
+    //partitioned by year, or -1 on error; a node racing another for the same year fails and retries next run
+    public int addPartitions() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            if (!"MySQL".equals(con.getMetaData().getDatabaseProductName())) {
+                return 0;
+            }
+            int lastYear = 0;
+            boolean hasMax = false;
+            PreparedStatement ps = con.prepareStatement(GET_ARCHIVE_PARTITIONS);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String name = rs.getString(1);
+                Matcher matcher = YEAR_PARTITION.matcher(name);
+                if (matcher.matches()) {
+                    lastYear = Math.max(lastYear, Integer.parseInt(matcher.group(1)));
+                } else if ("pmax".equalsIgnoreCase(name)) {
+                    hasMax = true;
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            if (!hasMax) {
+                return 0;
+            }
+            int nextYear = Year.now().getValue() + 1;
+            int added = 0;
+            Statement statement = con.createStatement();
+            for (int year = lastYear == 0 ? nextYear - 1 : lastYear + 1; year <= nextYear; year++) {
+                statement.execute("alter table ticket_archive reorganize partition pmax into (partition p" + year
+                        + " values less than ('" + (year + 1) + "-01-01'), partition pmax values less than (maxvalue))");
+                logger.info("Added partition p" + year + " to ticket_archive");
+                added++;
+            }
+            statement.close();
+            return added;
+        } catch (Exception ex) {
+            logger.error("Error adding ticket_archive partitions", ex);
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    //archives now and then every period, on a daemon thread
+    public ScheduledExecutorService schedule(long periodMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::archive, 0, periodMillis, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    //copies then deletes, failing the chunk if any ticket was not moved exactly once
+    private void move(Connection con, List<Integer> ids) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.ARCHIVE_TICKET);
+        for (int id : ids) {
+            ps.setInt(1, id);
+            ps.addBatch();
+        }
+        checkMoved(ps.executeBatch(), "copied");
+        dataBaseConfig.closePreparedStatement(ps);
+        ps = con.prepareStatement(DBConstants.DELETE_ARCHIVED_TICKET);
+        for (int id : ids) {
+            ps.setInt(1, id);
+            ps.addBatch();
+        }
+        checkMoved(ps.executeBatch(), "deleted");
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    private static void checkMoved(int[] counts, String what) throws SQLException {
+        for (int count : counts) {
+            //drivers may report a batched statement as succeeded without a count
+            if (count == 0 || count > 1) {
+                throw new SQLException("Ticket not " + what + " exactly once while archiving");
+            }
+        }
+    }
+
+    private void rollback(Connection con) {
+        if (con == null) {
+            return;
+        }
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            logger.error("Error rolling back ticket archival", e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem.batch;
+
+import com.parkit.parkingsystem.model.GateResult;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcome of one {@link GateEventBatchProcessor} import.
+ */
+public class BatchReport {
+
+    private long elapsedMillis;
+    private long entries;
+    private long exits;
+    private double revenue;
+    private final Map<GateResult.Rejection, Long> rejected = new EnumMap<>(GateResult.Rejection.class);
+    private long malformedLines;
+    private long batches;
+    private long committedLine;
+    private int parkedVehicles;
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    void countEntry() {
+        entries++;
+    }
+
+    public long getExits() {
+        return exits;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    void countExit(double price) {
+        exits++;
+        revenue += price;
+    }
+
+    //events the live gates would have turned away, by reason; ERROR counts exits logged before their entry
+    public long getRejected(GateResult.Rejection rejection) {
+        Long count = rejected.get(rejection);
+        return count == null ? 0 : count;
+    }
+
+    public long getRejected() {
+        long total = 0;
+        for (long count : rejected.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    void reject(GateResult.Rejection rejection) {
+        rejected.merge(rejection, 1L, Long::sum);
+    }
+
+    public long getMalformedLines() {
+        return malformedLines;
+    }
+
+    void setMalformedLines(long malformedLines) {
+        this.malformedLines = malformedLines;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    //last line of the file whose event is committed
+    public long getCommittedLine() {
+        return committedLine;
+    }
+
+    void countBatch(long committedLine) {
+        batches++;
+        this.committedLine = committedLine;
+    }
+
+    //vehicles still inside at the end of the log
+    public int getParkedVehicles() {
+        return parkedVehicles;
+    }
+
+    void setParkedVehicles(int parkedVehicles) {
+        this.parkedVehicles = parkedVehicles;
+    }
+
+    public long getEvents() {
+        return entries + exits + getRejected();
+    }
+
+    public double getEventsPerSecond() {
+        return elapsedMillis == 0 ? 0 : getEvents() * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%d events in %d ms (%.0f events/s), %d batches%n"
+                        + "entries %d, exits %d, revenue %.2f, still parked %d%n"
+                        + "rejected %d (already parked %d, parking full %d, not parked %d, out of order %d), malformed lines %d",
+                getEvents(), elapsedMillis, getEventsPerSecond(), batches,
+                entries, exits, revenue, parkedVehicles,
+                getRejected(), getRejected(GateResult.Rejection.ALREADY_PARKED), getRejected(GateResult.Rejection.PARKING_FULL),
+                getRejected(GateResult.Rejection.NOT_PARKED), getRejected(GateResult.Rejection.ERROR), malformedLines);
+    }
+}
@@ -0,0 +1,57 @@
+package com.parkit.parkingsystem.batch;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * One line of a plate camera log. {@link GateEventReader} refills the same instance for every line.
+ */
+public class GateEvent {
+
+    private long lineNumber;
+    private long time;
+    private boolean entry;
+    private String vehicleRegNumber;
+    private ParkingType parkingType;
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    void setLineNumber(long lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    //epoch millis the camera saw the vehicle
+    public long getTime() {
+        return time;
+    }
+
+    void setTime(long time) {
+        this.time = time;
+    }
+
+    public boolean isEntry() {
+        return entry;
+    }
+
+    void setEntry(boolean entry) {
+        this.entry = entry;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    void setVehicleRegNumber(String vehicleRegNumber) {
+        this.vehicleRegNumber = vehicleRegNumber;
+    }
+
+    //null on exits, the spot already tells the type
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    void setParkingType(ParkingType parkingType) {
+        this.parkingType = parkingType;
+    }
+}
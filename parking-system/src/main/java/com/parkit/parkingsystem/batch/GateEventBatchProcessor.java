@@ -0,0 +1,298 @@
+package com.parkit.parkingsystem.batch;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replays an uploaded plate camera log (see {@link GateEventReader}) against the database, for car
+ * parks whose gates were offline. Events go through the same rules as the live gates: a parked vehicle
+ * cannot enter again, it gets the lowest free spot of its type, it pays the fare of its stay from the
+ * event timestamps, with the loyalty discount once it closed a ticket before.
+ *
+ * <p>Spots, open tickets and loyal plates are loaded once and then tracked in memory, and every
+ * {@code batchSize} events the resulting ticket and parking rows go out as JDBC batches in one
+ * transaction. A stay that starts and ends within the same batch is written as a single closed ticket.
+ * The import assumes it is the only writer of the car park's tables while it runs.
+ */
+public class GateEventBatchProcessor {
+
+    private static final Logger logger = LogManager.getLogger("GateEventBatchProcessor");
+
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    private final int batchSize;
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+    private final FreeSpotIndex freeSpots = new FreeSpotIndex();
+    private final Map<String, Stay> parked = new HashMap<>();
+    private final Set<String> loyalVehicles = new HashSet<>();
+
+    //changes waiting for the next flush
+    private final List<Stay> opened = new ArrayList<>();
+    private final List<Stay> closed = new ArrayList<>();
+    private final Map<Integer, Boolean> spotsBefore = new HashMap<>();
+    private final Map<Integer, Boolean> spotsAfter = new HashMap<>();
+    private int pendingEvents;
+    private long pendingLine;
+
+    private BatchReport report;
+
+    public GateEventBatchProcessor(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    //"batch <file> [batchSize]" from App
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: batch <gate events csv> [batch size]");
+            return;
+        }
+        GateEventBatchProcessor processor = new GateEventBatchProcessor(
+                args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BATCH_SIZE);
+        try {
+            System.out.println(processor.process(Paths.get(args[0])));
+        } finally {
+            DataBaseConfig.shutdownPools();
+        }
+    }
+
+    //events up to the last committed line are in the database when this throws
+    public BatchReport process(Path file) throws IOException, SQLException, ClassNotFoundException {
+        report = new BatchReport();
+        long start = System.nanoTime();
+        load();
+        GateEvent event = new GateEvent();
+        try (GateEventReader reader = new GateEventReader(file)) {
+            while (reader.next(event)) {
+                if (event.isEntry()) {
+                    enter(event);
+                } else {
+                    exit(event);
+                }
+                pendingLine = event.getLineNumber();
+                if (++pendingEvents >= batchSize) {
+                    flush();
+                }
+            }
+            flush();
+            report.setMalformedLines(reader.getMalformedLines());
+        } catch (IOException | SQLException | RuntimeException e) {
+            logger.error("Import of " + file + " stopped, events up to line " + report.getCommittedLine() + " are saved", e);
+            throw e;
+        }
+        report.setElapsedMillis((System.nanoTime() - start) / 1000000);
+        report.setParkedVehicles(parked.size());
+        return report;
+    }
+
+    private void load() throws SQLException, ClassNotFoundException {
+        freeSpots.clear();
+        parked.clear();
+        loyalVehicles.clear();
+        Connection con = dataBaseConfig.getConnection();
+        try {
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                if (rs.getBoolean(2)) {
+                    freeSpots.release(ParkingType.valueOf(rs.getString(3)), rs.getInt(1));
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+
+            ps = con.prepareStatement(DBConstants.GET_OPEN_SESSIONS);
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                Stay stay = new Stay(rs.getString(1), rs.getInt(3), ParkingType.valueOf(rs.getString(4)),
+                        rs.getTimestamp(5).getTime(), rs.getInt(6) > 0);
+                stay.ticketId = rs.getInt(2);
+                stay.persisted = true;
+                parked.put(stay.vehicleRegNumber, stay);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+
+            ps = con.prepareStatement(DBConstants.GET_LOYAL_VEHICLES);
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                loyalVehicles.add(rs.getString(1));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private void enter(GateEvent event) {
+        String vehicleRegNumber = event.getVehicleRegNumber();
+        if (parked.containsKey(vehicleRegNumber)) {
+            report.reject(GateResult.Rejection.ALREADY_PARKED);
+            return;
+        }
+        int parkingNumber = freeSpots.claimLowest(event.getParkingType());
+        if (parkingNumber < 0) {
+            report.reject(GateResult.Rejection.PARKING_FULL);
+            return;
+        }
+        Stay stay = new Stay(vehicleRegNumber, parkingNumber, event.getParkingType(), event.getTime(),
+                loyalVehicles.contains(vehicleRegNumber));
+        parked.put(vehicleRegNumber, stay);
+        opened.add(stay);
+        setAvailable(parkingNumber, true, false);
+        report.countEntry();
+    }
+
+    private void exit(GateEvent event) {
+        Stay stay = parked.get(event.getVehicleRegNumber());
+        if (stay == null) {
+            report.reject(GateResult.Rejection.NOT_PARKED);
+            return;
+        }
+        if (event.getTime() < stay.inTime) {
+            //the log is out of order for this vehicle, its stay cannot be priced
+            report.reject(GateResult.Rejection.ERROR);
+            return;
+        }
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(stay.parkingNumber, stay.parkingType, false));
+        ticket.setVehicleRegNumber(stay.vehicleRegNumber);
+        ticket.setRecurent(stay.recurent);
+        ticket.setInTime(new Date(stay.inTime));
+        ticket.setOutTime(new Date(event.getTime()));
+        fareCalculatorService.calculateFare(ticket);
+
+        stay.outTime = event.getTime();
+        stay.price = ticket.getPrice();
+        parked.remove(stay.vehicleRegNumber);
+        if (stay.persisted) {
+            closed.add(stay);
+        }
+        freeSpots.release(stay.parkingType, stay.parkingNumber);
+        setAvailable(stay.parkingNumber, false, true);
+        loyalVehicles.add(stay.vehicleRegNumber);
+        report.countExit(stay.price);
+    }
+
+    //remembers the spot's state at the last flush, so a spot taken and freed within one batch is not written
+    private void setAvailable(int parkingNumber, boolean before, boolean after) {
+        spotsBefore.putIfAbsent(parkingNumber, before);
+        spotsAfter.put(parkingNumber, after);
+    }
+
+    //closes, then inserts, so a vehicle that left and came back within the batch ends with one open ticket
+    private void flush() throws SQLException, ClassNotFoundException {
+        if (pendingEvents == 0) {
+            return;
+        }
+        Connection con = dataBaseConfig.getConnection();
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement closeById = con.prepareStatement(DBConstants.CLOSE_TICKET);
+            PreparedStatement closeByPlate = con.prepareStatement(DBConstants.CLOSE_OPEN_TICKET);
+            for (Stay stay : closed) {
+                //tickets opened by an earlier batch of this import have no known id
+                PreparedStatement ps = stay.ticketId > 0 ? closeById : closeByPlate;
+                ps.setDouble(1, stay.price);
+                ps.setTimestamp(2, new Timestamp(stay.outTime));
+                if (stay.ticketId > 0) {
+                    ps.setInt(3, stay.ticketId);
+                } else {
+                    ps.setString(3, stay.vehicleRegNumber);
+                }
+                ps.addBatch();
+            }
+            closeById.executeBatch();
+            closeByPlate.executeBatch();
+            dataBaseConfig.closePreparedStatement(closeById);
+            dataBaseConfig.closePreparedStatement(closeByPlate);
+
+            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            for (Stay stay : opened) {
+                ps.setInt(1, stay.parkingNumber);
+                ps.setString(2, stay.vehicleRegNumber);
+                ps.setDouble(3, stay.price);
+                ps.setTimestamp(4, new Timestamp(stay.inTime));
+                ps.setTimestamp(5, stay.outTime > 0 ? new Timestamp(stay.outTime) : null);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+
+            ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            for (Map.Entry<Integer, Boolean> spot : spotsAfter.entrySet()) {
+                if (!spot.getValue().equals(spotsBefore.get(spot.getKey()))) {
+                    ps.setBoolean(1, spot.getValue());
+                    ps.setInt(2, spot.getKey());
+                    ps.addBatch();
+                }
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+            dataBaseConfig.closeConnection(con);
+        }
+
+        for (Stay stay : opened) {
+            stay.persisted = true;
+        }
+        report.countBatch(pendingLine);
+        opened.clear();
+        closed.clear();
+        spotsBefore.clear();
+        spotsAfter.clear();
+        pendingEvents = 0;
+    }
+
+    private static final class Stay {
+        private final String vehicleRegNumber;
+        private final int parkingNumber;
+        private final ParkingType parkingType;
+        private final long inTime;
+        private final boolean recurent;
+        private int ticketId;
+        private boolean persisted;
+        private long outTime;
+        private double price;
+
+        private Stay(String vehicleRegNumber, int parkingNumber, ParkingType parkingType, long inTime, boolean recurent) {
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.parkingNumber = parkingNumber;
+            this.parkingType = parkingType;
+            this.inTime = inTime;
+            this.recurent = recurent;
+        }
+    }
+}
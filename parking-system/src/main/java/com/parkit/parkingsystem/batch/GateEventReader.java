@@ -0,0 +1,220 @@
+package com.parkit.parkingsystem.batch;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Streams a plate camera log through a fixed read buffer, one event per line:
+ *
+ * <pre>
+ * timestamp,event,plate[,type]
+ * 2024-05-02T08:15:00,ENTRY,AB123CD,CAR
+ * 1714637700000,EXIT,AB123CD
+ * </pre>
+ *
+ * The timestamp is epoch millis or ISO-8601, in the local zone unless it carries an offset.
+ * The event is ENTRY/IN or EXIT/OUT, the type is only read on entries. A first line not
+ * starting with a digit is taken for a header, blank lines are skipped and malformed lines are
+ * counted and skipped.
+ */
+public class GateEventReader implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("GateEventReader");
+
+    static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_PLATE_LENGTH = 10;
+    private static final int LOGGED_MALFORMED_LINES = 10;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private final ZoneId zone;
+    private final int[] fields = new int[5];
+    private boolean endOfFile;
+    private long lineNumber;
+    private long malformedLines;
+
+    public GateEventReader(Path file) throws IOException {
+        this(file, ZoneId.systemDefault());
+    }
+
+    public GateEventReader(Path file, ZoneId zone) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.bytes = buffer.array();
+        this.zone = zone;
+        buffer.flip();
+    }
+
+    //fills the event with the next well-formed line, false at the end of the file
+    public boolean next(GateEvent event) throws IOException {
+        while (true) {
+            int end = nextLineEnd();
+            if (end < 0) {
+                return false;
+            }
+            int start = buffer.position();
+            buffer.position(end < buffer.limit() ? end + 1 : end);
+            lineNumber++;
+            if (parse(start, end, event)) {
+                return true;
+            }
+        }
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public long getMalformedLines() {
+        return malformedLines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    //index of the '\n' ending the line at the buffer position, refilling the buffer when the line is cut
+    private int nextLineEnd() throws IOException {
+        int searched = buffer.position();
+        while (true) {
+            for (int i = searched; i < buffer.limit(); i++) {
+                if (bytes[i] == '\n') {
+                    return i;
+                }
+            }
+            if (endOfFile) {
+                return buffer.hasRemaining() ? buffer.limit() : -1;
+            }
+            int cut = buffer.position();
+            searched = buffer.limit() - cut;
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Line " + (lineNumber + 1) + " is longer than " + BUFFER_SIZE + " bytes");
+            }
+            endOfFile = channel.read(buffer) < 0;
+            buffer.flip();
+        }
+    }
+
+    private boolean parse(int start, int end, GateEvent event) {
+        end = trimEnd(start, end);
+        if (start == end) {
+            return false;
+        }
+        if (lineNumber == 1 && !isDigit(bytes[start])) {
+            return false;
+        }
+        int count = split(start, end, fields);
+        if (count < 3) {
+            return malformed("expected timestamp,event,plate[,type]");
+        }
+        int timeEnd = fields[1] - 1;
+        int eventEnd = fields[2] - 1;
+        int plateEnd = count > 3 ? fields[3] - 1 : end;
+
+        String action = text(fields[1], eventEnd).trim().toUpperCase();
+        if (action.equals("ENTRY") || action.equals("IN")) {
+            event.setEntry(true);
+        } else if (action.equals("EXIT") || action.equals("OUT")) {
+            event.setEntry(false);
+        } else {
+            return malformed("unknown event " + action);
+        }
+
+        String vehicleRegNumber = text(fields[2], plateEnd).trim();
+        if (vehicleRegNumber.isEmpty() || vehicleRegNumber.length() > MAX_PLATE_LENGTH) {
+            return malformed("invalid plate");
+        }
+        event.setVehicleRegNumber(vehicleRegNumber);
+
+        event.setParkingType(null);
+        if (event.isEntry()) {
+            if (count < 4) {
+                return malformed("entry without vehicle type");
+            }
+            int typeEnd = count > 4 ? fields[4] - 1 : end;
+            try {
+                event.setParkingType(ParkingType.valueOf(text(fields[3], typeEnd).trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                return malformed("unknown vehicle type");
+            }
+        }
+
+        try {
+            event.setTime(parseTime(start, timeEnd));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return malformed("invalid timestamp");
+        }
+        event.setLineNumber(lineNumber);
+        return true;
+    }
+
+    private long parseTime(int start, int end) {
+        boolean digits = end > start;
+        long millis = 0;
+        for (int i = start; i < end && digits; i++) {
+            digits = isDigit(bytes[i]);
+            millis = millis * 10 + (bytes[i] - '0');
+        }
+        if (digits) {
+            return millis;
+        }
+        String text = text(start, end).trim().replace(' ', 'T');
+        TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(text, OffsetDateTime::from, LocalDateTime::from);
+        if (parsed instanceof OffsetDateTime) {
+            return ((OffsetDateTime) parsed).toInstant().toEpochMilli();
+        }
+        return ((LocalDateTime) parsed).atZone(zone).toInstant().toEpochMilli();
+    }
+
+    //start offsets of up to five comma separated fields, the count of fields found
+    private int split(int start, int end, int[] fields) {
+        int count = 1;
+        fields[0] = start;
+        for (int i = start; i < end && count < fields.length; i++) {
+            if (bytes[i] == ',') {
+                fields[count++] = i + 1;
+            }
+        }
+        return count;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && (bytes[end - 1] == '\r' || bytes[end - 1] == ' ')) {
+            end--;
+        }
+        return end;
+    }
+
+    private String text(int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private boolean malformed(String reason) {
+        if (malformedLines++ < LOGGED_MALFORMED_LINES) {
+            logger.warn("Skipping line " + lineNumber + ": " + reason);
+        }
+        return false;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,75 @@
+package com.parkit.parkingsystem.batch;
+
+/**
+ * Totals of a {@link TicketReRater} run, prices in cents.
+ */
+public class ReRatingReport {
+
+    private final boolean dryRun;
+    private long tickets;
+    private long changed;
+    private long written;
+    private long oldCents;
+    private long newCents;
+    private long elapsedMillis;
+
+    public ReRatingReport(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    void count(long oldPrice, long newPrice) {
+        tickets++;
+        oldCents += oldPrice;
+        newCents += newPrice;
+        if (oldPrice != newPrice) {
+            changed++;
+        }
+    }
+
+    void countWritten(long count) {
+        written += count;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public long getTickets() {
+        return tickets;
+    }
+
+    public long getChanged() {
+        return changed;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getOldCents() {
+        return oldCents;
+    }
+
+    public long getNewCents() {
+        return newCents;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getTicketsPerSecond() {
+        return elapsedMillis == 0 ? tickets : tickets * 1000 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return (dryRun ? "Dry run: " : "") + tickets + " tickets re-rated, " + changed + " changed, "
+                + written + " written, revenue " + oldCents / 100.0 + " -> " + newCents / 100.0
+                + " in " + elapsedMillis + " ms (" + getTicketsPerSecond() + " tickets/s)";
+    }
+}
@@ -0,0 +1,401 @@
+package com.parkit.parkingsystem.batch;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.report.HourlyAggregates;
+import com.parkit.parkingsystem.report.ReportAggregator;
+import com.parkit.parkingsystem.tariff.Tariff;
+import com.parkit.parkingsystem.tariff.TariffEngine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prices closed tickets again with a {@link Tariff}, after a tariff change or for a billing dispute.
+ *
+ * <p>The caller's thread streams the closed tickets through a forward-only cursor into fixed-size chunks
+ * of primitive columns, a fork-join pool prices each chunk, and a writer thread takes the priced chunks in
+ * order and writes the changed prices back, one JDBC batch and commit per chunk. Reading, pricing and
+ * writing of consecutive chunks overlap. In dry-run mode nothing is written and the changes can be listed
+ * as a diff instead.
+ *
+ * <p>Archived tickets are priced again like the others and their new price is written back to
+ * ticket_archive. A ticket counts as a returning user's when its plate had closed a ticket, archived or not,
+ * before it entered, as at the gate.
+ */
+public class TicketReRater {
+
+    private static final Logger logger = LogManager.getLogger("TicketReRater");
+
+    private static final ParkingType[] TYPES = ParkingType.values();
+    private static final int PRICING_THRESHOLD = 1024;
+    //chunks priced or waiting to be written while the next one is read
+    private static final int CHUNKS_IN_FLIGHT = 4;
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    private Tariff tariff = TariffEngine.getInstance().getTariff();
+    private boolean dryRun;
+    private Writer diff;
+    private long fromMillis = Long.MIN_VALUE;
+    private long toMillis = Long.MAX_VALUE;
+    private int fetchSize = 10000;
+    private int chunkSize = 8192;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    //"rerate key=value..." from App, see set(String)
+    public static void main(String[] args) throws Exception {
+        TicketReRater reRater = new TicketReRater();
+        for (String arg : args) {
+            reRater.set(arg);
+        }
+        try {
+            System.out.println(reRater.run());
+        } finally {
+            if (reRater.diff != null) {
+                reRater.diff.close();
+            }
+            DataBaseConfig.shutdownPools();
+        }
+    }
+
+    public Tariff getTariff() {
+        return tariff;
+    }
+
+    public void setTariff(Tariff tariff) {
+        this.tariff = tariff;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    //"id,vehicleRegNumber,oldPrice,newPrice" lines for every ticket whose price changes, in dry run or not
+    public void setDiff(Writer diff) {
+        this.diff = diff;
+    }
+
+    //only tickets closed in [from, to) are priced again
+    public void setClosedBetween(long fromMillis, long toMillis) {
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    //"tariff=<properties file>", "dryRun=true", "diff=<file>", "from=2024-01-01", "to=2024-02-01",
+    //"fetchSize=10000", "chunkSize=8192", "parallelism=8"
+    public void set(String argument) throws IOException {
+        String[] pair = argument.split("=", 2);
+        if (pair.length != 2) {
+            throw new IllegalArgumentException("Expected key=value but was: " + argument);
+        }
+        switch (pair[0]) {
+            case "tariff": {
+                TariffEngine engine = new TariffEngine(tariff);
+                if (!engine.load(Paths.get(pair[1]))) {
+                    throw new IllegalArgumentException("Invalid tariff file: " + pair[1]);
+                }
+                setTariff(engine.getTariff());
+                break;
+            }
+            case "dryRun": setDryRun(Boolean.parseBoolean(pair[1])); break;
+            case "diff": setDiff(Files.newBufferedWriter(Paths.get(pair[1]), StandardCharsets.UTF_8)); break;
+            case "from": fromMillis = startOfDay(pair[1]); break;
+            case "to": toMillis = startOfDay(pair[1]); break;
+            case "fetchSize": setFetchSize(Integer.parseInt(pair[1])); break;
+            case "chunkSize": setChunkSize(Integer.parseInt(pair[1])); break;
+            case "parallelism": setParallelism(Integer.parseInt(pair[1])); break;
+            default: throw new IllegalArgumentException("Unknown re-rating setting: " + pair[0]);
+        }
+    }
+
+    public ReRatingReport run() throws SQLException, ClassNotFoundException, InterruptedException {
+        ReRatingReport report = new ReRatingReport(dryRun);
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        BlockingQueue<Pricing> priced = new ArrayBlockingQueue<>(CHUNKS_IN_FLIGHT);
+        ChunkWriter writer = new ChunkWriter(priced, report);
+        writer.start();
+        Connection con = dataBaseConfig.getConnection();
+        try {
+            Map<String, Long> firstExits = loadFirstExits(con);
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_CLOSED_TICKETS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ResultSet rs = ps.executeQuery();
+            Chunk chunk = new Chunk(chunkSize);
+            while (rs.next() && writer.failure == null) {
+                long outTime = rs.getTimestamp(6).getTime();
+                if (outTime < fromMillis || outTime >= toMillis) {
+                    continue;
+                }
+                String vehicleRegNumber = rs.getString(2);
+                long inTime = rs.getTimestamp(5).getTime();
+                Long firstExit = firstExits.get(vehicleRegNumber);
+                chunk.add(rs.getInt(1), vehicleRegNumber, ParkingType.valueOf(rs.getString(3)),
+                        Math.round(rs.getDouble(4) * 100), inTime, outTime, firstExit != null && firstExit < inTime,
+                        rs.getBoolean(7));
+                if (chunk.size == chunkSize) {
+                    priced.put(price(pool, chunk));
+                    chunk = new Chunk(chunkSize);
+                }
+            }
+            if (chunk.size > 0) {
+                priced.put(price(pool, chunk));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            writer.finish();
+            pool.shutdown();
+        }
+        if (writer.failure != null) {
+            throw writer.failure;
+        }
+        report.setElapsedMillis((System.nanoTime() - start) / 1000000);
+        return report;
+    }
+
+    //when each plate first left, from both the ticket table and the archive
+    private Map<String, Long> loadFirstExits(Connection con) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_FIRST_EXITS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        ResultSet rs = ps.executeQuery();
+        Map<String, Long> firstExits = new HashMap<>();
+        while (rs.next()) {
+            firstExits.put(rs.getString(1), rs.getTimestamp(2).getTime());
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return firstExits;
+    }
+
+    private Pricing price(ForkJoinPool pool, Chunk chunk) {
+        Pricing pricing = new Pricing(chunk, 0, chunk.size);
+        pool.execute(pricing);
+        return pricing;
+    }
+
+    private static long startOfDay(String date) {
+        return LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    //one column per field, so pricing a chunk allocates nothing
+    private static final class Chunk {
+        private final int[] ids;
+        private final String[] vehicleRegNumbers;
+        private final byte[] types;
+        private final long[] oldCents;
+        private final long[] newCents;
+        private final long[] inTimes;
+        private final long[] outTimes;
+        private final boolean[] recurent;
+        private final boolean[] archived;
+        private int size;
+
+        private Chunk(int capacity) {
+            ids = new int[capacity];
+            vehicleRegNumbers = new String[capacity];
+            types = new byte[capacity];
+            oldCents = new long[capacity];
+            newCents = new long[capacity];
+            inTimes = new long[capacity];
+            outTimes = new long[capacity];
+            recurent = new boolean[capacity];
+            archived = new boolean[capacity];
+        }
+
+        private void add(int id, String vehicleRegNumber, ParkingType parkingType, long cents, long inTime, long outTime,
+                         boolean isRecurent, boolean isArchived) {
+            ids[size] = id;
+            vehicleRegNumbers[size] = vehicleRegNumber;
+            types[size] = (byte) parkingType.ordinal();
+            oldCents[size] = cents;
+            inTimes[size] = inTime;
+            outTimes[size] = outTime;
+            recurent[size] = isRecurent;
+            archived[size] = isArchived;
+            size++;
+        }
+    }
+
+    private final class Pricing extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        private Pricing(Chunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PRICING_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Pricing(chunk, from, middle), new Pricing(chunk, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                chunk.newCents[i] = tariff.fareCents(TYPES[chunk.types[i]], chunk.inTimes[i], chunk.outTimes[i], chunk.recurent[i]);
+            }
+        }
+    }
+
+    private final class ChunkWriter extends Thread {
+        private final BlockingQueue<Pricing> priced;
+        private final ReRatingReport report;
+        private volatile boolean finished;
+        private volatile SQLException failure;
+
+        private ChunkWriter(BlockingQueue<Pricing> priced, ReRatingReport report) {
+            super("rerate-writer");
+            this.priced = priced;
+            this.report = report;
+        }
+
+        private void finish() throws InterruptedException {
+            finished = true;
+            join();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    //read before polling, so once it is set every chunk is already queued
+                    boolean done = finished;
+                    Pricing pricing = priced.poll(10, TimeUnit.MILLISECONDS);
+                    if (pricing == null) {
+                        if (done) {
+                            return;
+                        }
+                        continue;
+                    }
+                    pricing.join();
+                    write(pricing.chunk);
+                }
+            } catch (SQLException e) {
+                logger.error("Re-rating stopped, earlier chunks are saved", e);
+                failure = e;
+            } catch (Exception e) {
+                logger.error("Re-rating stopped, earlier chunks are saved", e);
+                failure = new SQLException(e);
+            }
+            //unblock the reader if it waits for room
+            priced.clear();
+        }
+
+        private void write(Chunk chunk) throws SQLException, ClassNotFoundException, IOException {
+            int changed = 0;
+            for (int i = 0; i < chunk.size; i++) {
+                report.count(chunk.oldCents[i], chunk.newCents[i]);
+                if (chunk.oldCents[i] != chunk.newCents[i]) {
+                    changed++;
+                    if (diff != null) {
+                        diff.write(chunk.ids[i] + "," + chunk.vehicleRegNumbers[i] + "," + chunk.oldCents[i] / 100.0
+                                + "," + chunk.newCents[i] / 100.0 + "\n");
+                    }
+                }
+            }
+            if (dryRun || changed == 0) {
+                return;
+            }
+            Connection con = dataBaseConfig.getConnection();
+            try {
+                con.setAutoCommit(false);
+                ReportAggregator reportAggregator = new ReportAggregator();
+                reportAggregator.dataBaseConfig = dataBaseConfig;
+                //revenue already in the report aggregates moves with the price
+                ReportAggregator.CountedTickets counted = reportAggregator.lockCounted(con);
+                HourlyAggregates revenueChanges = new HourlyAggregates();
+                PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+                //archived tickets by id and exit time, so only their partition is searched
+                PreparedStatement archivedPs = con.prepareStatement(DBConstants.UPDATE_ARCHIVED_TICKET_PRICE);
+                for (int i = 0; i < chunk.size; i++) {
+                    if (chunk.oldCents[i] != chunk.newCents[i]) {
+                        if (chunk.archived[i]) {
+                            archivedPs.setDouble(1, chunk.newCents[i] / 100.0);
+                            archivedPs.setInt(2, chunk.ids[i]);
+                            archivedPs.setTimestamp(3, new Timestamp(chunk.outTimes[i]));
+                            archivedPs.addBatch();
+                        } else {
+                            ps.setDouble(1, chunk.newCents[i] / 100.0);
+                            ps.setInt(2, chunk.ids[i]);
+                            ps.addBatch();
+                        }
+                        if (counted.isCounted(chunk.ids[i])) {
+                            revenueChanges.addRevenue(TYPES[chunk.types[i]], chunk.outTimes[i],
+                                    chunk.newCents[i] - chunk.oldCents[i]);
+                        }
+                    }
+                }
+                ps.executeBatch();
+                dataBaseConfig.closePreparedStatement(ps);
+                archivedPs.executeBatch();
+                dataBaseConfig.closePreparedStatement(archivedPs);
+                reportAggregator.apply(con, revenueChanges);
+                con.commit();
+                report.countWritten(changed);
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+                dataBaseConfig.closeConnection(con);
+            }
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of physical JDBC connections. Connections handed out are proxies whose
+ * {@code close()} gives the physical connection back to the pool instead of closing it.
+ * Each physical connection also keeps the statements prepared on it, so a DAO preparing
+ * the same SQL again on a later lease gets the already parsed statement back.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final PoolSettings settings;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, PoolSettings settings) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, settings.getHousekeepingPeriod(), TimeUnit.MILLISECONDS);
+        logger.info("Connection pool created for " + url + " (max " + settings.getMaxSize() + " connections)");
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(settings.getConnectionTimeout(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + settings.getConnectionTimeout()
+                        + "ms waiting for a connection, " + activeConnections.get() + " in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            activeConnections.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getPendingThreads() {
+        return permits.getQueueLength();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    public double getStatementCacheHitRatio() {
+        long hits = statementCacheHits.sum();
+        long lookups = hits + statementCacheMisses.sum();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public PoolSettings getSettings() {
+        return settings;
+    }
+
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+        logger.info("Connection pool closed for " + url);
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        //most recently used first, so surplus connections stay idle long enough to be evicted
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (now - pooled.createdAt >= settings.getMaxLifetime()) {
+            return false;
+        }
+        if (now - pooled.lastUsed < settings.getValidationInterval()) {
+            return true;
+        }
+        try {
+            return pooled.connection.isValid((int) Math.max(1, settings.getValidationTimeout() / 1000));
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        logger.debug("Opened new physical connection, " + totalConnections.get() + " in pool");
+        return new PooledConnection(connection);
+    }
+
+    private void release(PooledConnection pooled) {
+        activeConnections.decrementAndGet();
+        try {
+            if (!closed && !pooled.broken && resetState(pooled)
+                    && System.currentTimeMillis() - pooled.createdAt < settings.getMaxLifetime()) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean resetState(PooledConnection pooled) {
+        try {
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            return !pooled.connection.isClosed();
+        } catch (SQLException e) {
+            logger.error("Error while resetting pooled connection", e);
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing pooled connection", e);
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            for (PooledConnection pooled : idle) {
+                boolean expired = now - pooled.createdAt >= settings.getMaxLifetime();
+                boolean surplus = now - pooled.lastUsed >= settings.getIdleTimeout()
+                        && idle.size() > settings.getMinIdle();
+                if ((expired || surplus) && idle.remove(pooled)) {
+                    discard(pooled);
+                }
+            }
+            while (!closed && idle.size() < settings.getMinIdle() && reserveSlot()) {
+                totalConnections.decrementAndGet();
+                idle.offerLast(open());
+            }
+        } catch (Exception e) {
+            logger.error("Error while maintaining connection pool", e);
+        }
+    }
+
+    private boolean reserveSlot() {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= settings.getMaxSize()) {
+                return false;
+            }
+        } while (!totalConnections.compareAndSet(total, total + 1));
+        return true;
+    }
+
+    private final class PooledConnection {
+        private final Connection connection;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsed = createdAt;
+        private volatile boolean broken;
+        //only touched by the thread holding the current lease
+        private final Map<String, CachedStatement> statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= settings.getStatementCacheSize()) {
+                    return false;
+                }
+                CachedStatement evicted = eldest.getValue();
+                evicted.evict();
+                if (evicted.inUse) {
+                    uncached.add(evicted);
+                }
+                return true;
+            }
+        };
+        //open statements that are not in the cache and get closed when the lease ends
+        private final List<CachedStatement> uncached = new ArrayList<>();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private Connection lease() {
+            Lease lease = new Lease(this);
+            lease.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, lease);
+            return lease.proxy;
+        }
+
+        private PreparedStatement prepare(Lease lease, String sql, Integer autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys == null ? sql : autoGeneratedKeys + "|" + sql;
+            CachedStatement cached = statements.get(key);
+            if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+                statementCacheHits.increment();
+            } else {
+                statementCacheMisses.increment();
+                PreparedStatement statement = autoGeneratedKeys == null ? connection.prepareStatement(sql)
+                        : connection.prepareStatement(sql, autoGeneratedKeys);
+                cached = new CachedStatement(statement);
+                //a second statement for SQL that is still open on this lease is not cached
+                if (!statements.containsKey(key)) {
+                    statements.put(key, cached);
+                } else {
+                    cached.evicted = true;
+                    uncached.add(cached);
+                }
+            }
+            cached.inUse = true;
+            return cached.borrow(lease);
+        }
+
+        //statements a caller forgot to close are taken back with the connection
+        private void returnStatements() {
+            Iterator<CachedStatement> it = statements.values().iterator();
+            while (it.hasNext()) {
+                CachedStatement cached = it.next();
+                if (cached.inUse && !cached.reset()) {
+                    it.remove();
+                }
+            }
+            for (CachedStatement cached : uncached) {
+                if (cached.inUse) {
+                    cached.reset();
+                }
+            }
+            uncached.clear();
+        }
+    }
+
+    private final class CachedStatement {
+        private final PreparedStatement statement;
+        private volatile boolean inUse;
+        private volatile boolean evicted;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private PreparedStatement borrow(Lease lease) {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new StatementLease(this, lease));
+        }
+
+        //clears what the last user left on the statement, false when it cannot be reused
+        private boolean reset() {
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+                return false;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+                return true;
+            } catch (SQLException e) {
+                closeQuietly();
+                return false;
+            }
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.error("Error while closing cached statement", e);
+            }
+        }
+    }
+
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final AtomicBoolean returned = new AtomicBoolean();
+        private Connection proxy;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close": {
+                    if (returned.compareAndSet(false, true)) {
+                        pooled.returnStatements();
+                        release(pooled);
+                    }
+                    return null;
+                }
+                case "isClosed": {
+                    return returned.get() || pooled.connection.isClosed();
+                }
+                case "equals": {
+                    return proxy == args[0];
+                }
+                case "hashCode": {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString": {
+                    return "Pooled" + pooled.connection;
+                }
+                default: {
+                    if (returned.get()) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    if (isCacheable(method)) {
+                        try {
+                            return pooled.prepare(this, (String) args[0], args.length == 2 ? (Integer) args[1] : null);
+                        } catch (SQLException e) {
+                            throw markIfBroken(e);
+                        }
+                    }
+                    return forward(pooled.connection, method, args);
+                }
+            }
+        }
+
+        //prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys)
+        private boolean isCacheable(Method method) {
+            if (!"prepareStatement".equals(method.getName()) || settings.getStatementCacheSize() <= 0) {
+                return false;
+            }
+            Class<?>[] types = method.getParameterTypes();
+            return types.length == 1 || (types.length == 2 && types[1] == int.class);
+        }
+
+        private Object forward(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    markIfBroken((SQLException) cause);
+                }
+                throw cause;
+            }
+        }
+
+        private SQLException markIfBroken(SQLException e) {
+            if (e.getSQLState() != null && e.getSQLState().startsWith("08")) {
+                pooled.broken = true;
+            }
+            return e;
+        }
+    }
+
+    //a cached statement as seen by one caller: close() hands it back to the connection's cache
+    private final class StatementLease implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Lease lease;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        private StatementLease(CachedStatement cached, Lease lease) {
+            this.cached = cached;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close": {
+                    if (returned.compareAndSet(false, true) && !lease.returned.get() && !cached.reset()) {
+                        lease.pooled.statements.values().remove(cached);
+                    }
+                    return null;
+                }
+                case "isClosed": {
+                    return returned.get() || lease.returned.get();
+                }
+                case "getConnection": {
+                    return lease.proxy;
+                }
+                case "equals": {
+                    return proxy == args[0];
+                }
+                case "hashCode": {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString": {
+                    return "Cached" + cached.statement;
+                }
+                default: {
+                    if (returned.get() || lease.returned.get()) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    return lease.forward(cached.statement, method, args);
+                }
+            }
+        }
+    }
+}
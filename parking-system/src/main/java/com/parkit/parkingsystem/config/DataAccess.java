@@ -0,0 +1,14 @@
+package com.parkit.parkingsystem.config;
+
+/**
+ * What a DAO method does with the database, which decides where {@link DataBaseConfig#getConnection(DataAccess)}
+ * sends it.
+ */
+public enum DataAccess {
+    //changes rows, on the primary
+    WRITE,
+    //reads that must see every committed write, on the primary
+    READ,
+    //reads that can lag a little behind the primary, on a replica when there is one
+    STALE_READ,
+}
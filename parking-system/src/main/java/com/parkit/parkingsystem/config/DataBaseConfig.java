@@ -3,47 +3,112 @@ package com.parkit.parkingsystem.config;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.sql.*;
-import java.util.Properties;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    //one pool per database account, shared by every DAO pointing at it
+    private static final ConcurrentMap<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    //a connection to the primary
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-    	 logger.info("Create DB connection");
-         Class.forName("com.mysql.cj.jdbc.Driver");
-         String url = "jdbc:mysql://localhost:3306/prod?serverTimezone=UTC";
-         String user = "root";
-         String passwd = "rootroot";
-         return DriverManager.getConnection(url,user,passwd);
-       
-      }
+        logger.debug("Borrow DB connection");
+        return getConnectionPool().getConnection();
+    }
+
+    //stale reads take the replicas in turn, skipping any that cannot hand out a connection,
+    //and fall back to the primary; writes and consistent reads always go to the primary
+    public Connection getConnection(DataAccess access) throws ClassNotFoundException, SQLException {
+        List<DataBaseConfig> replicas = getReplicas();
+        if (access != DataAccess.STALE_READ || replicas.isEmpty()) {
+            return getConnection();
+        }
+        int first = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            DataBaseConfig replica = replicas.get((first + i) % replicas.size());
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                logger.warn("Replica " + replica.getUrl() + " unavailable: " + e.getMessage());
+            }
+        }
+        return getConnection();
+    }
+
+    public ConnectionPool getConnectionPool() throws ClassNotFoundException {
+        String key = getUser() + "@" + getUrl();
+        ConnectionPool pool = pools.get(key);
+        if (pool == null) {
+            Class.forName(getDriverClassName());
+            pool = pools.computeIfAbsent(key, k -> new ConnectionPool(getUrl(), getUser(), getPassword(), getPoolSettings()));
+        }
+        return pool;
+    }
+
+    protected String getDriverClassName() {
+        return "com.mysql.cj.jdbc.Driver";
+    }
+
+    //server-side prepared statements, so the statements kept by the pool are parsed by MySQL only once,
+    //and JDBC batches sent as multi-row statements instead of one round trip per row
+    protected String getUrl() {
+        return "jdbc:mysql://localhost:3306/prod?serverTimezone=UTC&useServerPrepStmts=true&rewriteBatchedStatements=true&useCursorFetch=true";
+    }
+
+    protected String getUser() {
+        return "root";
+    }
+
+    protected String getPassword() {
+        return "rootroot";
+    }
+
+    protected PoolSettings getPoolSettings() {
+        return new PoolSettings();
+    }
+
+    //read replicas of this database, none by default
+    protected List<DataBaseConfig> getReplicas() {
+        return Collections.emptyList();
+    }
+
+    public static void shutdownPools() {
+        for (ConnectionPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
     public void closeConnection(Connection con) {
-    	
+
     	if(con!=null){
             try {
                 con.close();
-                logger.info("Closing connection");
+                logger.debug("Connection returned to pool");
             } catch (SQLException e) {
                 logger.error("Error while closing connection",e);
             }
-            
+
         }
     }
     public void closePreparedStatement(PreparedStatement ps) {
         if(ps!=null){
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                logger.debug("Prepared statement returned to cache");
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement",e);
             }
-           
+
         }
     }
 
@@ -51,7 +116,7 @@ public class DataBaseConfig {
         if(rs!=null){
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                logger.debug("Closing Result Set");
             } catch (SQLException e) {
                 logger.error("Error while closing result set",e);
             }
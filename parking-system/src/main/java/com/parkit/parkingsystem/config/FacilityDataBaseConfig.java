@@ -0,0 +1,70 @@
+package com.parkit.parkingsystem.config;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Connection settings of one facility's database. Settings left null fall back to those of
+ * {@link DataBaseConfig}. Facilities on different databases get different connection pools, so a busy lot
+ * can run out of its own connections but never takes those of the others. Stale reads are spread over the
+ * replicas added to it.
+ */
+public class FacilityDataBaseConfig extends DataBaseConfig {
+
+    private final String facility;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String driverClassName;
+    private final PoolSettings poolSettings;
+    private final List<DataBaseConfig> replicas = new CopyOnWriteArrayList<>();
+
+    public FacilityDataBaseConfig(String facility, String url, String user, String password, String driverClassName,
+                                  PoolSettings poolSettings) {
+        this.facility = facility;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.driverClassName = driverClassName;
+        this.poolSettings = poolSettings;
+    }
+
+    public String getFacility() {
+        return facility;
+    }
+
+    public FacilityDataBaseConfig addReplica(DataBaseConfig replica) {
+        replicas.add(replica);
+        return this;
+    }
+
+    @Override
+    protected String getDriverClassName() {
+        return driverClassName != null ? driverClassName : super.getDriverClassName();
+    }
+
+    @Override
+    protected String getUrl() {
+        return url != null ? url : super.getUrl();
+    }
+
+    @Override
+    protected String getUser() {
+        return user != null ? user : super.getUser();
+    }
+
+    @Override
+    protected String getPassword() {
+        return password != null ? password : super.getPassword();
+    }
+
+    @Override
+    protected PoolSettings getPoolSettings() {
+        return poolSettings != null ? poolSettings : super.getPoolSettings();
+    }
+
+    @Override
+    protected List<DataBaseConfig> getReplicas() {
+        return replicas;
+    }
+}
@@ -0,0 +1,143 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.dao.SpotAllocationStrategy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Which database serves which facility. Every facility has the parking and ticket tables of Data.sql in a
+ * database of its own, so the facility of a spot or ticket is the database it is stored in and no query
+ * needs to filter on it. Read from a properties file such as:
+ *
+ * <pre>
+ * facilities=north,south
+ * north.url=jdbc:mysql://db-north:3306/north?serverTimezone=UTC&amp;useServerPrepStmts=true
+ * north.user=parkit
+ * north.password=secret
+ * north.maxPoolSize=20
+ * north.leaseBlockSize=32
+ * north.allocation=nearest:0:A
+ * north.replicas=jdbc:mysql://db-north-r1:3306/north?serverTimezone=UTC&amp;useServerPrepStmts=true
+ * south.url=jdbc:mysql://db-south:3306/south?serverTimezone=UTC&amp;useServerPrepStmts=true
+ * </pre>
+ *
+ * The first facility listed is the default one. Replicas, comma separated, take the account and pool
+ * settings of their primary. A lease block size makes the gates of the facility allocate from blocks of
+ * spots leased by their node, for facilities served by several gate servers. The allocation picks the
+ * spots of the facility: lowest (the default), spread across levels, or nearest to a level and zone.
+ */
+public class FacilityRouter {
+
+    public static final String DEFAULT_FACILITY = "main";
+
+    private final Map<String, DataBaseConfig> dataBaseConfigs = new LinkedHashMap<>();
+    private final Map<String, Integer> leaseBlockSizes = new HashMap<>();
+    private final Map<String, SpotAllocationStrategy> allocationStrategies = new HashMap<>();
+
+    //the single facility of a deployment without a facilities file
+    public static FacilityRouter single(DataBaseConfig dataBaseConfig) {
+        return new FacilityRouter().add(DEFAULT_FACILITY, dataBaseConfig);
+    }
+
+    public static FacilityRouter load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return fromProperties(properties);
+    }
+
+    public static FacilityRouter fromProperties(Properties properties) {
+        String facilities = properties.getProperty("facilities");
+        if (facilities == null || facilities.trim().isEmpty()) {
+            throw new IllegalArgumentException("No facilities listed");
+        }
+        FacilityRouter router = new FacilityRouter();
+        for (String facility : facilities.split(",")) {
+            facility = facility.trim();
+            String url = properties.getProperty(facility + ".url");
+            if (url == null) {
+                throw new IllegalArgumentException("No url for facility " + facility);
+            }
+            PoolSettings poolSettings = null;
+            String maxPoolSize = properties.getProperty(facility + ".maxPoolSize");
+            if (maxPoolSize != null) {
+                poolSettings = new PoolSettings();
+                poolSettings.setMaxSize(Integer.parseInt(maxPoolSize.trim()));
+            }
+            String user = properties.getProperty(facility + ".user");
+            String password = properties.getProperty(facility + ".password");
+            String driver = properties.getProperty(facility + ".driver");
+            FacilityDataBaseConfig primary = new FacilityDataBaseConfig(facility, url, user, password, driver, poolSettings);
+            String replicas = properties.getProperty(facility + ".replicas");
+            if (replicas != null) {
+                for (String replicaUrl : replicas.split(",")) {
+                    if (!replicaUrl.trim().isEmpty()) {
+                        primary.addReplica(new FacilityDataBaseConfig(facility, replicaUrl.trim(), user, password, driver, poolSettings));
+                    }
+                }
+            }
+            router.add(facility, primary);
+            String leaseBlockSize = properties.getProperty(facility + ".leaseBlockSize");
+            if (leaseBlockSize != null) {
+                router.setLeaseBlockSize(facility, Integer.parseInt(leaseBlockSize.trim()));
+            }
+            String allocation = properties.getProperty(facility + ".allocation");
+            if (allocation != null) {
+                router.setAllocationStrategy(facility, SpotAllocationStrategy.parse(allocation));
+            }
+        }
+        return router;
+    }
+
+    public FacilityRouter add(String facility, DataBaseConfig dataBaseConfig) {
+        if (dataBaseConfigs.putIfAbsent(facility, dataBaseConfig) != null) {
+            throw new IllegalArgumentException("Facility " + facility + " listed twice");
+        }
+        return this;
+    }
+
+    public FacilityRouter setLeaseBlockSize(String facility, int blockSize) {
+        leaseBlockSizes.put(facility, blockSize);
+        return this;
+    }
+
+    //0 when the facility allocates from all its spots without leases
+    public int getLeaseBlockSize(String facility) {
+        return leaseBlockSizes.getOrDefault(facility, 0);
+    }
+
+    public FacilityRouter setAllocationStrategy(String facility, SpotAllocationStrategy allocationStrategy) {
+        allocationStrategies.put(facility, allocationStrategy);
+        return this;
+    }
+
+    public SpotAllocationStrategy getAllocationStrategy(String facility) {
+        return allocationStrategies.getOrDefault(facility, SpotAllocationStrategy.lowestNumber());
+    }
+
+    public DataBaseConfig route(String facility) {
+        DataBaseConfig dataBaseConfig = dataBaseConfigs.get(facility);
+        if (dataBaseConfig == null) {
+            throw new IllegalArgumentException("Unknown facility: " + facility);
+        }
+        return dataBaseConfig;
+    }
+
+    public Set<String> getFacilities() {
+        return Collections.unmodifiableSet(dataBaseConfigs.keySet());
+    }
+
+    public String getDefaultFacility() {
+        return dataBaseConfigs.keySet().iterator().next();
+    }
+}
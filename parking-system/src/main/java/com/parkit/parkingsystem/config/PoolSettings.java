@@ -0,0 +1,91 @@
+package com.parkit.parkingsystem.config;
+
+/**
+ * Sizing and timeout settings of a {@link ConnectionPool}. All durations are in milliseconds.
+ * The statement cache size is per physical connection, 0 turns statement caching off.
+ */
+public class PoolSettings {
+
+    private int minIdle = 2;
+    private int maxSize = 10;
+    private long idleTimeout = 10 * 60 * 1000;
+    private long maxLifetime = 30 * 60 * 1000;
+    private long connectionTimeout = 30 * 1000;
+    private long validationTimeout = 5 * 1000;
+    private long validationInterval = 1000;
+    private long housekeepingPeriod = 30 * 1000;
+    private int statementCacheSize = 32;
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    public long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(long connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public long getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    public void setValidationTimeout(long validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
+    //connections idle for less than this are handed out without a validation round trip
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    public long getHousekeepingPeriod() {
+        return housekeepingPeriod;
+    }
+
+    public void setHousekeepingPeriod(long housekeepingPeriod) {
+        this.housekeepingPeriod = housekeepingPeriod;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
@@ -2,10 +2,62 @@ package com.parkit.parkingsystem.constants;
 
 public class DBConstants {
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE, PARKING_LEVEL, ZONE from parking";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
-    public static final String RECURENT_USERS ="SELECT *  from ticket WHERE VEHICLE_REG_NUMBER =?";
+    public static final String RELEASE_PARKING_SPOT = "update parking set AVAILABLE = true where PARKING_NUMBER = ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
+    //history and loyalty lookups read the archived tickets too
+    public static final String RECURENT_USERS ="select 1 from ticket where VEHICLE_REG_NUMBER = ? union all select 1 from ticket_archive where VEHICLE_REG_NUMBER = ? limit 1";
+    public static final String GET_LOYAL_VEHICLES = "select VEHICLE_REG_NUMBER from ticket where OUT_TIME is not null union select VEHICLE_REG_NUMBER from ticket_archive";
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
     public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
+    public static final String CLOSE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME is null";
+    //close of a ticket whose id the caller does not know, found by plate
+    public static final String CLOSE_OPEN_TICKET = "update ticket set PRICE=?, OUT_TIME=? where VEHICLE_REG_NUMBER=? and OUT_TIME is null";
+    //named high-water marks, such as the report catch-up's, kept in the ticket_journal table
+    public static final String UPDATE_JOURNAL_CHECKPOINT = "update ticket_journal set LAST_SEQ = ? where NAME = ?";
+    public static final String GET_JOURNAL_CHECKPOINT_FOR_UPDATE = "select LAST_SEQ from ticket_journal where NAME = ? for update";
+    public static final String SAVE_JOURNAL_CHECKPOINT = "insert into ticket_journal(NAME, LAST_SEQ) values(?,?)";
     public static final String IN_PARKING ="SELECT t.PARKING_NUMBER, p.AVAILABLE from ticket t,parking p where p.parking_number = t.parking_number and p.available = 0 and t.VEHICLE_REG_NUMBER=? order by p.PARKING_NUMBER limit 1 ";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME  limit 1";
+    //an open ticket of the plate, read on the primary to confirm a plate already parked before refusing it
+    public static final String IS_VEHICLE_PARKED = "select 1 from ticket where VEHICLE_REG_NUMBER = ? and OUT_TIME is null limit 1";
+    //all tickets and closed tickets of a plate: any open one means already parked, any closed one a returning user
+    public static final String GET_VEHICLE_STATUS = "select count(*), count(OUT_TIME) from (select OUT_TIME from ticket where VEHICLE_REG_NUMBER = ? union all select OUT_TIME from ticket_archive where VEHICLE_REG_NUMBER = ?) h";
+    //the plate's open ticket with its spot type and how many earlier tickets it has closed
+    public static final String GET_OPEN_TICKET = "select t.ID, t.PARKING_NUMBER, t.IN_TIME, p.TYPE, (select count(h.OUT_TIME) from ticket h where h.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER) + (select count(*) from ticket_archive a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER) from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.VEHICLE_REG_NUMBER = ? and t.OUT_TIME is null order by t.IN_TIME desc limit 1";
+    public static final String GET_OPEN_SESSIONS = "select t.VEHICLE_REG_NUMBER, t.ID, t.PARKING_NUMBER, p.TYPE, t.IN_TIME, (select count(h.OUT_TIME) from ticket h where h.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER) + (select count(*) from ticket_archive a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER) from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME is null";
+    //when each plate first left, over live and archived tickets, for the re-rating loyalty check
+    public static final String GET_FIRST_EXITS = "select VEHICLE_REG_NUMBER, min(OUT_TIME) from (select VEHICLE_REG_NUMBER, OUT_TIME from ticket where OUT_TIME is not null union all select VEHICLE_REG_NUMBER, OUT_TIME from ticket_archive) h group by VEHICLE_REG_NUMBER";
+    //closed tickets, live and archived, by id for re-rating
+    public static final String GET_CLOSED_TICKETS = "select t.ID, t.VEHICLE_REG_NUMBER, p.TYPE, t.PRICE, t.IN_TIME, t.OUT_TIME, false as ARCHIVED from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME is not null union all select a.ID, a.VEHICLE_REG_NUMBER, p.TYPE, a.PRICE, a.IN_TIME, a.OUT_TIME, true as ARCHIVED from ticket_archive a join parking p on p.PARKING_NUMBER = a.PARKING_NUMBER order by ID";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=?";
+    public static final String UPDATE_ARCHIVED_TICKET_PRICE = "update ticket_archive set PRICE=? where ID=? and OUT_TIME=?";
+    //tickets above the report high-water mark, and the ones left pending below it
+    public static final String GET_TICKETS_AFTER = "select t.ID, p.TYPE, t.PRICE, t.IN_TIME, t.OUT_TIME from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.ID > ? order by t.ID limit ?";
+    public static final String GET_REPORT_PENDING = "select r.TICKET_ID, r.SINCE, p.TYPE, t.PRICE, t.IN_TIME, t.OUT_TIME from report_pending r left join ticket t on t.ID = r.TICKET_ID left join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER";
+    public static final String GET_REPORT_PENDING_IDS = "select TICKET_ID from report_pending";
+    public static final String SAVE_REPORT_PENDING = "insert into report_pending(TICKET_ID, SINCE) values(?,?)";
+    public static final String DELETE_REPORT_PENDING = "delete from report_pending where TICKET_ID = ?";
+    public static final String UPDATE_REPORT_HOURLY = "update report_hourly set EXITS = EXITS + ?, REVENUE_CENTS = REVENUE_CENTS + ?, OCCUPIED_SECONDS = OCCUPIED_SECONDS + ? where HOUR_START = ? and TYPE = ?";
+    public static final String SAVE_REPORT_HOURLY = "insert into report_hourly(HOUR_START, TYPE, EXITS, REVENUE_CENTS, OCCUPIED_SECONDS) values(?,?,?,?,?)";
+    public static final String GET_REPORT_HOURLY = "select HOUR_START, TYPE, EXITS, REVENUE_CENTS, OCCUPIED_SECONDS from report_hourly where HOUR_START >= ? and HOUR_START < ? order by HOUR_START, TYPE";
+    public static final String CREATE_SCHEMA_VERSION = "create table if not exists schema_version(VERSION int PRIMARY KEY, DESCRIPTION varchar(200) NOT NULL, APPLIED_AT DATETIME NOT NULL)";
+    public static final String GET_SCHEMA_VERSION = "select max(VERSION) from schema_version";
+    public static final String LOCK_SCHEMA_VERSION = "select VERSION from schema_version where VERSION = ? for update";
+    public static final String SAVE_SCHEMA_VERSION = "insert into schema_version(VERSION, DESCRIPTION, APPLIED_AT) values(?,?,?)";
+    //live leases of spot blocks, all nodes or one
+    public static final String GET_SPOT_LEASES = "select TYPE, BLOCK_NO, NODE from spot_lease where EXPIRES_AT > ?";
+    public static final String GET_NODE_SPOT_LEASES = "select TYPE, BLOCK_NO from spot_lease where NODE = ? and EXPIRES_AT > ?";
+    //succeeds on a block this node holds or whose lease expired
+    public static final String TAKE_SPOT_LEASE = "update spot_lease set NODE = ?, EXPIRES_AT = ? where TYPE = ? and BLOCK_NO = ? and (NODE = ? or EXPIRES_AT <= ?)";
+    public static final String SAVE_SPOT_LEASE = "insert into spot_lease(TYPE, BLOCK_NO, NODE, EXPIRES_AT) values(?,?,?,?)";
+    public static final String RENEW_SPOT_LEASES = "update spot_lease set EXPIRES_AT = ? where NODE = ? and EXPIRES_AT > ?";
+    public static final String RELEASE_SPOT_LEASE = "delete from spot_lease where TYPE = ? and BLOCK_NO = ? and NODE = ?";
+    //spots and free spots per type
+    public static final String GET_SPOT_COUNTS = "select TYPE, count(*), sum(case when AVAILABLE then 1 else 0 end) from parking group by TYPE";
+    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? union all select a.PARKING_NUMBER, a.ID, a.PRICE, a.IN_TIME, a.OUT_TIME, p.TYPE from ticket_archive a,parking p where p.parking_number = a.parking_number and a.VEHICLE_REG_NUMBER=? order by IN_TIME  limit 1";
+    //closed tickets exited before the cut-off, by id from a cursor up to the report high-water mark
+    public static final String GET_ARCHIVABLE_TICKETS = "select ID from ticket where ID > ? and ID <= ? and OUT_TIME < ? order by ID limit ?";
+    public static final String ARCHIVE_TICKET = "insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) select ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket where ID = ? and OUT_TIME is not null";
+    public static final String DELETE_ARCHIVED_TICKET = "delete from ticket where ID = ? and OUT_TIME is not null";
 }
@@ -0,0 +1,63 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.ActiveSession;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Open parking sessions keyed by vehicle registration number. A plate is reserved with a
+ * pending entry (ticket id 0) while its entry transaction runs, so two gates of the same
+ * process can never open two tickets for one vehicle.
+ */
+public class ActiveSessionIndex {
+
+    private final ConcurrentMap<String, ActiveSession> sessions = new ConcurrentHashMap<>();
+
+    public ActiveSession get(String vehicleRegNumber) {
+        ActiveSession session = sessions.get(vehicleRegNumber);
+        return session == null || session.getTicketId() <= 0 ? null : session;
+    }
+
+    public boolean contains(String vehicleRegNumber) {
+        return sessions.containsKey(vehicleRegNumber);
+    }
+
+    //false when the plate already has an open or pending session
+    public boolean reserve(String vehicleRegNumber) {
+        return sessions.putIfAbsent(vehicleRegNumber, pending(vehicleRegNumber)) == null;
+    }
+
+    public void open(ActiveSession session) {
+        sessions.put(session.getVehicleRegNumber(), session);
+    }
+
+    public void cancel(String vehicleRegNumber) {
+        ActiveSession session = sessions.get(vehicleRegNumber);
+        if (session != null && session.getTicketId() <= 0) {
+            sessions.remove(vehicleRegNumber, session);
+        }
+    }
+
+    public void close(ActiveSession session) {
+        sessions.remove(session.getVehicleRegNumber(), session);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    //takes over the entries still reserved in the index this one replaces, so entries running
+    //across a reload keep their plate
+    public void keepPending(ActiveSessionIndex previous) {
+        for (ActiveSession session : previous.sessions.values()) {
+            if (session.getTicketId() <= 0) {
+                sessions.putIfAbsent(session.getVehicleRegNumber(), session);
+            }
+        }
+    }
+
+    private ActiveSession pending(String vehicleRegNumber) {
+        return new ActiveSession(vehicleRegNumber, 0, 0, null, 0, false);
+    }
+}
@@ -0,0 +1,364 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Free parking spot numbers per {@link ParkingType}, kept sorted so the lowest free spot
+ * is found without querying the parking table.
+ *
+ * <p>The free spots are also kept per area, a zone of a level, each sorted and counted, so that
+ * {@link SpotAllocationStrategy strategies} find the lowest free spot of the area they want in
+ * O(log n). The free spots of each level are counted as they change too, so finding the emptiest
+ * level never recounts the areas. The set of a type decides which claim wins when a spot is claimed
+ * through both at once.
+ */
+public class FreeSpotIndex {
+
+    private static final Area DEFAULT_AREA = new Area(0, ParkingSpot.DEFAULT_ZONE);
+
+    private final Map<ParkingType, ConcurrentSkipListSet<Integer>> freeSpots = new EnumMap<>(ParkingType.class);
+    private final Map<ParkingType, ConcurrentSkipListMap<Area, FreeArea>> areas = new EnumMap<>(ParkingType.class);
+    private final Map<ParkingType, ConcurrentSkipListMap<Integer, FreeLevel>> levels = new EnumMap<>(ParkingType.class);
+    private final ConcurrentMap<Integer, Area> locations = new ConcurrentHashMap<>();
+    //moves whenever an area gets its first spot, which makes every AreaOrder out of date
+    private final AtomicInteger layoutVersion = new AtomicInteger();
+
+    public FreeSpotIndex() {
+        for (ParkingType parkingType : ParkingType.values()) {
+            freeSpots.put(parkingType, new ConcurrentSkipListSet<>());
+            areas.put(parkingType, new ConcurrentSkipListMap<>());
+            levels.put(parkingType, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    //where the spot is; spots never located are on level 0 of the default zone
+    public void locate(int parkingNumber, int level, String zone) {
+        locations.put(parkingNumber, new Area(level, zone));
+    }
+
+    //sets the level and zone of the spot to where it was located
+    public void locateSpot(ParkingSpot parkingSpot) {
+        Area location = locationOf(parkingSpot.getId());
+        parkingSpot.setLevel(location.level);
+        parkingSpot.setZone(location.zone);
+    }
+
+    public int lowest(ParkingType parkingType) {
+        Integer first = spots(parkingType).ceiling(Integer.MIN_VALUE);
+        return first == null ? -1 : first;
+    }
+
+    //removes and returns the lowest free spot, -1 when the type is full
+    public int claimLowest(ParkingType parkingType) {
+        Integer first = spots(parkingType).pollFirst();
+        if (first == null) {
+            return -1;
+        }
+        removeFromArea(parkingType, first);
+        return first;
+    }
+
+    //removes and returns a free spot picked at random among the lowest ones, so gates that
+    //just collided on the same spot spread out instead of colliding again on the next one
+    public int claimAmongLowest(ParkingType parkingType, int window) {
+        int skip = ThreadLocalRandom.current().nextInt(window);
+        while (true) {
+            Integer candidate = pick(spots(parkingType), skip);
+            if (candidate == null) {
+                return -1;
+            }
+            if (claim(parkingType, candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    //removes and returns the lowest free spot numbered from (included) to (excluded), -1 when none
+    public int claimLowestBetween(ParkingType parkingType, int from, int to) {
+        Integer first = spots(parkingType).subSet(from, to).pollFirst();
+        if (first == null) {
+            return -1;
+        }
+        removeFromArea(parkingType, first);
+        return first;
+    }
+
+    //the areas of a type from the nearest to the given one to the farthest: levels away first, then
+    //zones away in zone order. Sorted here once, so a strategy keeps it for as long as isCurrent says.
+    public AreaOrder orderByDistance(ParkingType parkingType, int level, String zone) {
+        int version = layoutVersion.get();
+        List<Area> nearest = new ArrayList<>(areas(parkingType).keySet());
+        TreeSet<String> distinctZones = new TreeSet<>();
+        for (Area area : nearest) {
+            distinctZones.add(area.zone);
+        }
+        List<String> zones = new ArrayList<>(distinctZones);
+        int zoneRank = rankOf(zones, zone);
+        nearest.sort(Comparator.<Area>comparingInt(area -> Math.abs(area.level - level))
+                .thenComparingInt(area -> Math.abs(rankOf(zones, area.zone) - zoneRank))
+                .thenComparing(Comparator.naturalOrder()));
+        List<FreeArea> ordered = new ArrayList<>(nearest.size());
+        for (Area area : nearest) {
+            ordered.add(areas(parkingType).get(area));
+        }
+        return new AreaOrder(this, version, parkingType, ordered);
+    }
+
+    //false once the order was made for another index or spots turned up in an area it does not have
+    public boolean isCurrent(AreaOrder order) {
+        return order.index == this && order.layoutVersion == layoutVersion.get();
+    }
+
+    //removes and returns a free spot of the first area of the order that has one, picked at random
+    //among its lowest window ones, the lowest with a window of 1
+    public int claimNearest(AreaOrder order, int window) {
+        for (FreeArea area : order.areas) {
+            int parkingNumber = claimIn(order.parkingType, area, window);
+            if (parkingNumber >= 0) {
+                return parkingNumber;
+            }
+        }
+        return -1;
+    }
+
+    //removes and returns a free spot of the zone with the most free spots on the level with the most, picked
+    //at random among its lowest window ones, the lowest with a window of 1.
+    //Linear in the number of levels and in the zones of one level, as both counts are kept up to date.
+    public int claimOnEmptiestLevel(ParkingType parkingType, int window) {
+        while (true) {
+            //lowest level first on a tie
+            FreeLevel emptiest = null;
+            int mostFree = 0;
+            for (FreeLevel level : levels(parkingType).values()) {
+                int free = level.free.get();
+                if (free > mostFree) {
+                    emptiest = level;
+                    mostFree = free;
+                }
+            }
+            if (emptiest == null) {
+                return -1;
+            }
+            FreeArea fullest = null;
+            int fullestFree = 0;
+            for (FreeArea area : emptiest.zones.values()) {
+                int free = area.free.get();
+                if (free > fullestFree) {
+                    fullest = area;
+                    fullestFree = free;
+                }
+            }
+            if (fullest != null) {
+                int parkingNumber = claimIn(parkingType, fullest, window);
+                if (parkingNumber >= 0) {
+                    return parkingNumber;
+                }
+            }
+            //claimed meanwhile by another gate, count again
+        }
+    }
+
+    public int freeCountBetween(ParkingType parkingType, int from, int to) {
+        return spots(parkingType).subSet(from, to).size();
+    }
+
+    //free spots of one area, in constant time
+    public int freeCount(ParkingType parkingType, int level, String zone) {
+        FreeArea area = areas(parkingType).get(new Area(level, zone));
+        return area == null ? 0 : area.free.get();
+    }
+
+    //read-only live view, in ascending order
+    public NavigableSet<Integer> freeSpots(ParkingType parkingType) {
+        return Collections.unmodifiableNavigableSet(spots(parkingType));
+    }
+
+    public boolean claim(ParkingType parkingType, int parkingNumber) {
+        if (!spots(parkingType).remove(parkingNumber)) {
+            return false;
+        }
+        removeFromArea(parkingType, parkingNumber);
+        return true;
+    }
+
+    public void release(ParkingType parkingType, int parkingNumber) {
+        spots(parkingType).add(parkingNumber);
+        Area location = locationOf(parkingNumber);
+        FreeArea area = areas(parkingType).get(location);
+        if (area == null) {
+            area = addArea(parkingType, location);
+        }
+        if (area.spots.add(parkingNumber)) {
+            area.counted(1);
+        }
+    }
+
+    public int freeCount(ParkingType parkingType) {
+        return spots(parkingType).size();
+    }
+
+    public void clear() {
+        for (ConcurrentSkipListSet<Integer> spots : freeSpots.values()) {
+            spots.clear();
+        }
+        for (ConcurrentSkipListMap<Area, FreeArea> typeAreas : areas.values()) {
+            typeAreas.clear();
+        }
+        for (ConcurrentSkipListMap<Integer, FreeLevel> typeLevels : levels.values()) {
+            typeLevels.clear();
+        }
+        layoutVersion.incrementAndGet();
+    }
+
+    private FreeArea addArea(ParkingType parkingType, Area location) {
+        FreeLevel level = levels(parkingType).computeIfAbsent(location.level, key -> new FreeLevel());
+        FreeArea created = new FreeArea(level);
+        FreeArea existing = areas(parkingType).putIfAbsent(location, created);
+        if (existing != null) {
+            return existing;
+        }
+        level.zones.put(location.zone, created);
+        layoutVersion.incrementAndGet();
+        return created;
+    }
+
+    private int claimIn(ParkingType parkingType, FreeArea freeArea, int window) {
+        int skip = window > 1 ? ThreadLocalRandom.current().nextInt(window) : 0;
+        while (true) {
+            Integer parkingNumber = pick(freeArea.spots, skip);
+            if (parkingNumber == null) {
+                return -1;
+            }
+            if (!freeArea.spots.remove(parkingNumber)) {
+                continue;
+            }
+            freeArea.counted(-1);
+            //lost to a claim through the set of the type, which already left the area
+            if (spots(parkingType).remove(parkingNumber)) {
+                return parkingNumber;
+            }
+        }
+    }
+
+    private void removeFromArea(ParkingType parkingType, int parkingNumber) {
+        FreeArea area = areas(parkingType).get(locationOf(parkingNumber));
+        if (area != null && area.spots.remove(parkingNumber)) {
+            area.counted(-1);
+        }
+    }
+
+    //the spot skip places after the lowest one, or the highest when there are not that many
+    private static Integer pick(NavigableSet<Integer> spots, int skip) {
+        Integer candidate = null;
+        int position = 0;
+        for (Integer parkingNumber : spots) {
+            candidate = parkingNumber;
+            if (position++ == skip) {
+                break;
+            }
+        }
+        return candidate;
+    }
+
+    private Area locationOf(int parkingNumber) {
+        return locations.getOrDefault(parkingNumber, DEFAULT_AREA);
+    }
+
+    private static int rankOf(List<String> zones, String zone) {
+        int rank = Collections.binarySearch(zones, zone);
+        //a zone without spots ranks where it would be inserted
+        return rank >= 0 ? rank : -rank - 1;
+    }
+
+    private ConcurrentSkipListSet<Integer> spots(ParkingType parkingType) {
+        return freeSpots.get(parkingType);
+    }
+
+    private ConcurrentSkipListMap<Area, FreeArea> areas(ParkingType parkingType) {
+        return areas.get(parkingType);
+    }
+
+    private ConcurrentSkipListMap<Integer, FreeLevel> levels(ParkingType parkingType) {
+        return levels.get(parkingType);
+    }
+
+    /**
+     * The areas of one type of one index, in the order a strategy tries them.
+     */
+    public static final class AreaOrder {
+        private final FreeSpotIndex index;
+        private final int layoutVersion;
+        private final ParkingType parkingType;
+        private final List<FreeArea> areas;
+
+        private AreaOrder(FreeSpotIndex index, int layoutVersion, ParkingType parkingType, List<FreeArea> areas) {
+            this.index = index;
+            this.layoutVersion = layoutVersion;
+            this.parkingType = parkingType;
+            this.areas = areas;
+        }
+    }
+
+    private static final class Area implements Comparable<Area> {
+        private final int level;
+        private final String zone;
+
+        private Area(int level, String zone) {
+            this.level = level;
+            this.zone = zone;
+        }
+
+        @Override
+        public int compareTo(Area other) {
+            int byLevel = Integer.compare(level, other.level);
+            return byLevel != 0 ? byLevel : zone.compareTo(other.zone);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Area && compareTo((Area) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * level + zone.hashCode();
+        }
+    }
+
+    private static final class FreeArea {
+        private final ConcurrentSkipListSet<Integer> spots = new ConcurrentSkipListSet<>();
+        private final AtomicInteger free = new AtomicInteger();
+        private final FreeLevel level;
+
+        private FreeArea(FreeLevel level) {
+            this.level = level;
+        }
+
+        private void counted(int delta) {
+            free.addAndGet(delta);
+            level.free.addAndGet(delta);
+        }
+    }
+
+    private static final class FreeLevel {
+        private final AtomicInteger free = new AtomicInteger();
+        //lowest zone first on a tie
+        private final ConcurrentSkipListMap<String, FreeArea> zones = new ConcurrentSkipListMap<>();
+    }
+}
@@ -0,0 +1,46 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plates that already closed at least one ticket, i.e. the returning users entitled to the
+ * loyalty discount. A miss is not proof of a first visit, since another process may have
+ * closed the ticket, so callers confirm misses against the ticket table.
+ */
+public class LoyaltyRegistry {
+
+    private final Set<String> loyalVehicles = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public boolean contains(String vehicleRegNumber) {
+        if (loyalVehicles.contains(vehicleRegNumber)) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    public void add(String vehicleRegNumber) {
+        loyalVehicles.add(vehicleRegNumber);
+    }
+
+    public int size() {
+        return loyalVehicles.size();
+    }
+
+    public void clear() {
+        loyalVehicles.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
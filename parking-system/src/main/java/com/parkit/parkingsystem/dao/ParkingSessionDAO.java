@@ -0,0 +1,372 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataAccess;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ActiveSession;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.storage.ParkingSessionRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vehicle entry and exit as single transactions spanning the ticket and parking tables, always on the primary.
+ */
+public class ParkingSessionDAO implements ParkingSessionRepository {
+
+    private static final Logger logger = LogManager.getLogger("ParkingSessionDAO");
+
+    //no spot of the type was free at entry
+    private static final int FULL = -2;
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    //replaced whole on reload, like the free spot index, so reservations are never wiped by a refill
+    private volatile ActiveSessionIndex activeSessions = new ActiveSessionIndex();
+    private volatile boolean sessionsLoaded;
+    private final LoyaltyRegistry loyaltyRegistry = new LoyaltyRegistry();
+    private volatile boolean loyaltyLoaded;
+
+    public ParkingSessionDAO(ParkingSpotDAO parkingSpotDAO) {
+        this.parkingSpotDAO = parkingSpotDAO;
+    }
+
+    //rebuilds the open session index from tickets without an out time and swaps it in. Sessions other
+    //nodes closed drop out; one opened or closed here while the tickets are read may be off until the
+    //next reload, which is safe as a hit is confirmed on the primary at entry and a miss read from it at exit
+    public synchronized boolean loadActiveSessions() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_SESSIONS);
+            ResultSet rs = ps.executeQuery();
+            ActiveSessionIndex loaded = new ActiveSessionIndex();
+            while (rs.next()) {
+                loaded.open(new ActiveSession(rs.getString(1), rs.getInt(2), rs.getInt(3),
+                        ParkingType.valueOf(rs.getString(4)), rs.getTimestamp(5).getTime(), rs.getInt(6) > 0));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            loaded.keepPending(activeSessions);
+            activeSessions = loaded;
+            sessionsLoaded = true;
+        } catch (Exception ex) {
+            logger.error("Error loading open parking sessions", ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return sessionsLoaded;
+    }
+
+    //reloads the session index now and then every period, on a daemon thread, to drop the sessions of
+    //vehicles that left through the gates of other nodes
+    public ScheduledExecutorService watchSessions(long periodMillis) {
+        ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(this::loadActiveSessions, 0, periodMillis, TimeUnit.MILLISECONDS);
+        return reloader;
+    }
+
+    //warms the loyalty registry with every plate that has a closed ticket; plates missed by a lagging
+    //replica are only looked up on the primary at entry
+    public synchronized boolean loadLoyalVehicles() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection(DataAccess.STALE_READ);
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_LOYAL_VEHICLES);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                loyaltyRegistry.add(rs.getString(1));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            loyaltyLoaded = true;
+        } catch (Exception ex) {
+            logger.error("Error loading loyal vehicles", ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return loyaltyLoaded;
+    }
+
+    public LoyaltyRegistry getLoyaltyRegistry() {
+        return loyaltyRegistry;
+    }
+
+    public boolean isAtParking(String vehicleRegNumber) {
+        ensureSessionsLoaded();
+        return activeSessions.contains(vehicleRegNumber);
+    }
+
+    public ActiveSession getActiveSession(String vehicleRegNumber) {
+        ensureSessionsLoaded();
+        return activeSessions.get(vehicleRegNumber);
+    }
+
+    //checks presence and loyalty, claims a spot of the ticket's parking type and inserts the ticket.
+    //A plate with an entry running at another gate of this process is turned away before any DB access.
+    //A plate found open in the session index is checked for an open ticket on the primary, as it may
+    //have left through another gate node, and its stale session is dropped when it has none. A plate
+    //found in the loyalty registry skips counting its closed tickets but is still checked for an open
+    //ticket on the primary, which may have been opened by another gate node.
+    //The free spot index is brought up to date before the transaction borrows its connection, and once
+    //more after it when no spot was free, so a full car park never holds a connection while reloading.
+    //Fills in the ticket's id, spot number and recurent flag and returns the id, or -1 when the
+    //vehicle is already parked (atParking set), no spot is free (spot number left at 0) or on error.
+    public int enterVehicle(Ticket ticket) {
+        ParkingType parkingType = ticket.getParkingSpot().getParkingType();
+        parkingSpotDAO.prepareClaim(parkingType);
+        int ticketId = enter(ticket);
+        if (ticketId == FULL && parkingSpotDAO.reloadWhenFull(parkingType)) {
+            ticketId = enter(ticket);
+        }
+        return ticketId == FULL ? -1 : ticketId;
+    }
+
+    private int enter(Ticket ticket) {
+        Connection con = null;
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        int parkingNumber = -1;
+        ensureSessionsLoaded();
+        ActiveSession indexed = null;
+        if (!activeSessions.reserve(ticket.getVehicleRegNumber())) {
+            indexed = activeSessions.get(ticket.getVehicleRegNumber());
+            if (indexed == null) {
+                ticket.setAtParking(true);
+                return -1;
+            }
+        }
+        boolean reserved = indexed == null;
+        boolean opened = false;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+
+            if (indexed != null) {
+                if (isVehicleParked(con, ticket.getVehicleRegNumber())) {
+                    con.rollback();
+                    ticket.setAtParking(true);
+                    return -1;
+                }
+                //left through another node
+                activeSessions.close(indexed);
+                if (!activeSessions.reserve(ticket.getVehicleRegNumber())) {
+                    con.rollback();
+                    ticket.setAtParking(true);
+                    return -1;
+                }
+                reserved = true;
+            }
+
+            PreparedStatement ps;
+            ResultSet rs;
+            if (loyaltyRegistry.contains(ticket.getVehicleRegNumber())) {
+                ticket.setAtParking(isVehicleParked(con, ticket.getVehicleRegNumber()));
+                ticket.setRecurent(true);
+                if (ticket.getAtParking()) {
+                    con.rollback();
+                    return -1;
+                }
+            } else {
+                ps = con.prepareStatement(DBConstants.GET_VEHICLE_STATUS);
+                ps.setString(1, ticket.getVehicleRegNumber());
+                ps.setString(2, ticket.getVehicleRegNumber());
+                rs = ps.executeQuery();
+                rs.next();
+                int tickets = rs.getInt(1);
+                int closedTickets = rs.getInt(2);
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+                ticket.setAtParking(tickets > closedTickets);
+                ticket.setRecurent(closedTickets > 0);
+                if (ticket.getRecurent()) {
+                    loyaltyRegistry.add(ticket.getVehicleRegNumber());
+                }
+                if (ticket.getAtParking()) {
+                    con.rollback();
+                    return -1;
+                }
+            }
+
+            parkingNumber = parkingSpotDAO.claimNextAvailableSlot(con, parkingSpot.getParkingType());
+            if (parkingNumber < 0) {
+                con.rollback();
+                return FULL;
+            }
+
+            ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, ticket.getVehicleRegNumber());
+            ps.setDouble(3, ticket.getPrice());
+            ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+            ps.setTimestamp(5, null);
+            ps.executeUpdate();
+            rs = ps.getGeneratedKeys();
+            rs.next();
+            int ticketId = rs.getInt(1);
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            con.commit();
+
+            parkingSpot.setId(parkingNumber);
+            parkingSpot.setAvailable(false);
+            parkingSpotDAO.locate(parkingSpot);
+            ticket.setId(ticketId);
+            activeSessions.open(new ActiveSession(ticket.getVehicleRegNumber(), ticketId, parkingNumber,
+                    parkingSpot.getParkingType(), ticket.getInTime().getTime(), ticket.getRecurent()));
+            opened = true;
+            return ticketId;
+        } catch (Exception ex) {
+            logger.error("Error processing vehicle entry, rolling back", ex);
+            rollback(con);
+            if (parkingNumber > 0) {
+                parkingSpotDAO.releaseClaimedSlot(parkingSpot.getParkingType(), parkingNumber);
+            }
+            return -1;
+        } finally {
+            if (reserved && !opened) {
+                activeSessions.cancel(ticket.getVehicleRegNumber());
+            }
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private boolean isVehicleParked(Connection con, String vehicleRegNumber) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.IS_VEHICLE_PARKED);
+        ps.setString(1, vehicleRegNumber);
+        ResultSet rs = ps.executeQuery();
+        boolean parked = rs.next();
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return parked;
+    }
+
+    //takes the plate's open ticket and loyalty status from the session index, or loads them in one query
+    //when the ticket was opened elsewhere, prices it with the fare calculator, then closes the ticket and
+    //frees its spot in one transaction. Returns the closed ticket, or null when the vehicle has no open
+    //ticket, another gate closed it first, or on error.
+    public Ticket exitVehicle(String vehicleRegNumber, Date outTime, FareCalculatorService fareCalculatorService) {
+        Connection con = null;
+        ActiveSession session = getActiveSession(vehicleRegNumber);
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+
+            Ticket ticket = session != null ? session.toTicket() : loadOpenTicket(con, vehicleRegNumber);
+            if (ticket == null) {
+                con.rollback();
+                return null;
+            }
+
+            ticket.setOutTime(outTime);
+            fareCalculatorService.calculateFare(ticket);
+
+            PreparedStatement ps = con.prepareStatement(DBConstants.CLOSE_TICKET);
+            ps.setDouble(1, ticket.getPrice());
+            ps.setTimestamp(2, new Timestamp(outTime.getTime()));
+            ps.setInt(3, ticket.getId());
+            int closed = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            if (closed != 1) {
+                con.rollback();
+                if (session != null) {
+                    activeSessions.close(session);
+                }
+                return null;
+            }
+            ps = con.prepareStatement(DBConstants.RELEASE_PARKING_SPOT);
+            ps.setInt(1, ticket.getParkingSpot().getId());
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            con.commit();
+
+            ticket.getParkingSpot().setAvailable(true);
+            parkingSpotDAO.locate(ticket.getParkingSpot());
+            parkingSpotDAO.releaseClaimedSlot(ticket.getParkingSpot().getParkingType(), ticket.getParkingSpot().getId());
+            if (session != null) {
+                activeSessions.close(session);
+            }
+            loyaltyRegistry.add(vehicleRegNumber);
+            return ticket;
+        } catch (Exception ex) {
+            logger.error("Error processing vehicle exit, rolling back", ex);
+            rollback(con);
+            return null;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    //the plate's open ticket from the session index, or from DB when it was opened elsewhere; null when none
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        ActiveSession session = getActiveSession(vehicleRegNumber);
+        if (session != null) {
+            return session.toTicket();
+        }
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            return loadOpenTicket(con, vehicleRegNumber);
+        } catch (Exception ex) {
+            logger.error("Error loading open ticket", ex);
+            return null;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private Ticket loadOpenTicket(Connection con, String vehicleRegNumber) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKET);
+        ps.setString(1, vehicleRegNumber);
+        ResultSet rs = ps.executeQuery();
+        Ticket ticket = null;
+        if (rs.next()) {
+            ticket = new Ticket();
+            ticket.setId(rs.getInt(1));
+            ticket.setParkingSpot(new ParkingSpot(rs.getInt(2), ParkingType.valueOf(rs.getString(4)), false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setInTime(rs.getTimestamp(3));
+            ticket.setRecurent(rs.getInt(5) > 0);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return ticket;
+    }
+
+    private void ensureSessionsLoaded() {
+        if (!sessionsLoaded) {
+            loadActiveSessions();
+        }
+        if (!loyaltyLoaded) {
+            loadLoyalVehicles();
+        }
+    }
+
+    private void rollback(Connection con) {
+        if (con != null) {
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back transaction", e);
+            }
+        }
+    }
+}
@@ -1,49 +1,347 @@
 package com.parkit.parkingsystem.dao;
 
+import com.parkit.parkingsystem.config.DataAccess;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.OccupancyCounters;
+import com.parkit.parkingsystem.storage.ParkingSpotRepository;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotRepository {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+    private static final int CONTENTION_WINDOW = 8;
+    //how long a type found full, or without a block left to lease, goes without another reload
+    private static final long FULL_RELOAD_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    //replaced whole on reload, so gates claiming meanwhile never see a half-filled index
+    private volatile FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+    private final Object reloadLock = new Object();
+    //spots released while a reload reads the parking table, applied to the new index before it is used
+    private List<ReleasedSpot> releasedDuringReload;
+    private volatile boolean indexLoaded;
+    private final AtomicLong claimConflicts = new AtomicLong();
+    //a claim lost a race, so the index still offers spots other processes took
+    private volatile boolean stale;
+    //per type, the nanoTime before which a reload is skipped
+    private final AtomicLongArray reloadsSkippedUntil = new AtomicLongArray(ParkingType.values().length);
+    private volatile SpotLeases spotLeases;
+    private volatile SpotAllocationStrategy allocationStrategy = SpotAllocationStrategy.lowestNumber();
+
+    //how spots are picked outside leased blocks, lowest number first by default
+    public void setAllocationStrategy(SpotAllocationStrategy allocationStrategy){
+        this.allocationStrategy = allocationStrategy;
+    }
+
+    //from now on spots are allocated from the blocks this node leases, falling back to the whole
+    //car park only when no block is left to lease
+    public void enableLeasing(SpotLeases spotLeases){
+        this.spotLeases = spotLeases;
+    }
+
+    //renews the leases and keeps this node's supply of free spots between the low water mark and twice it
+    public void maintainLeases(){
+        SpotLeases leases = spotLeases;
+        if(leases == null || !ensureIndexLoaded()){
+            return;
+        }
+        leases.renew();
+        for(ParkingType parkingType : ParkingType.values()){
+            if(leases.supply(freeSpotIndex, parkingType) < leases.getLowWater()){
+                leaseBlock(leases, parkingType);
+            }
+            leases.releaseSurplus(freeSpotIndex, parkingType);
+        }
+    }
+
+    //maintains the leases now and then three times per time to live, on a daemon thread
+    public ScheduledExecutorService watchLeases(){
+        SpotLeases leases = spotLeases;
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spot-leases");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::maintainLeases, 0, leases.getTtl() / 3, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    //on the primary, a stale index would keep claiming spots that are already taken
+    public synchronized boolean loadFreeSpotIndex(){
+        Connection con = null;
+        try {
+            synchronized(reloadLock){
+                releasedDuringReload = new ArrayList<>();
+            }
+            con = dataBaseConfig.getConnection(DataAccess.READ);
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            ResultSet rs = ps.executeQuery();
+            FreeSpotIndex loaded = new FreeSpotIndex();
+            while(rs.next()){
+                loaded.locate(rs.getInt(1), rs.getInt(4), rs.getString(5));
+                if(rs.getBoolean(2)){
+                    loaded.release(ParkingType.valueOf(rs.getString(3)), rs.getInt(1));
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            synchronized(reloadLock){
+                //freed in DB after the read started, so possibly missing from it
+                for(ReleasedSpot releasedSpot : releasedDuringReload){
+                    loaded.release(releasedSpot.parkingType, releasedSpot.parkingNumber);
+                }
+                freeSpotIndex = loaded;
+            }
+            indexLoaded = true;
+        }catch (Exception ex){
+            logger.error("Error loading free parking spots",ex);
+        }finally {
+            synchronized(reloadLock){
+                releasedDuringReload = null;
+            }
+            dataBaseConfig.closeConnection(con);
+        }
+        return indexLoaded;
+    }
+
     public int getNextAvailableSlot(ParkingType parkingType){
+        if(!ensureIndexLoaded()){
+            return -1;
+        }
+        return freeSpotIndex.lowest(parkingType);
+    }
+
+    //takes the free spot the allocation strategy picks out of the index and claims it in DB, -1 when none is free.
+    //The claim only succeeds while the row is still available, so gates running in other
+    //processes can never be handed the same spot; a lost race just moves on to the next one.
+    public int claimNextAvailableSlot(ParkingType parkingType){
+        prepareClaim(parkingType);
+        int parkingNumber = claimOnOwnConnection(parkingType);
+        if(parkingNumber < 0 && reloadWhenFull(parkingType)){
+            parkingNumber = claimOnOwnConnection(parkingType);
+        }
+        return parkingNumber;
+    }
+
+    //same claim on the caller's connection, so it commits or rolls back with the caller's transaction.
+    //It never reads the parking table, which would take a second connection while the caller holds one:
+    //call prepareClaim before borrowing the connection, and reloadWhenFull after giving it back when the
+    //claim found the type full. After a rollback the caller hands the spot back with releaseClaimedSlot.
+    public int claimNextAvailableSlot(Connection con, ParkingType parkingType) throws SQLException {
+        if(!indexLoaded){
+            return -1;
+        }
+        SpotLeases leases = spotLeases;
+        if(leases != null){
+            int parkingNumber = claimLeased(con, leases, parkingType);
+            if(parkingNumber >= 0){
+                return parkingNumber;
+            }
+        }
+        boolean contended = false;
+        while(true){
+            //after a lost race, still where the strategy wants but no longer on the very spot other gates want too
+            int parkingNumber = allocationStrategy.claim(freeSpotIndex, parkingType, contended ? CONTENTION_WINDOW : 1);
+            if(parkingNumber < 0){
+                return -1;
+            }
+            int claimed;
+            try {
+                claimed = claimInDataBase(con, parkingNumber);
+            }catch (SQLException ex){
+                release(parkingType, parkingNumber);
+                throw ex;
+            }
+            if(claimed == 1){
+                return parkingNumber;
+            }
+            claimConflicts.incrementAndGet();
+            contended = true;
+            //another process is allocating too; the next prepareClaim drops every spot it already took in one read
+            stale = true;
+        }
+    }
+
+    //brings the index up to date for a claim, without a connection held: reloads it after a lost race and
+    //leases a block when this node's blocks have no free spot left, at most once per interval when none is left
+    public void prepareClaim(ParkingType parkingType){
+        if(!ensureIndexLoaded()){
+            return;
+        }
+        if(stale){
+            stale = false;
+            loadFreeSpotIndex();
+        }
+        SpotLeases leases = spotLeases;
+        if(leases != null && leases.supply(freeSpotIndex, parkingType) == 0 && startReload(parkingType)
+                && leaseBlock(leases, parkingType)){
+            allowReloads(parkingType);
+        }
+    }
+
+    //reloads the index after a claim found the type full, as spots freed by other processes only show up
+    //after a reload. A full car park is re-read at most once per interval, however many vehicles arrive:
+    //true only when this call reloaded and found a free spot.
+    public boolean reloadWhenFull(ParkingType parkingType){
+        if(!startReload(parkingType) || !loadFreeSpotIndex() || freeSpotIndex.freeCount(parkingType) == 0){
+            return false;
+        }
+        allowReloads(parkingType);
+        return true;
+    }
+
+    //free spots of a type as this process knows them, -1 when they cannot be loaded
+    public int getFreeSpotCount(ParkingType parkingType){
+        if(!ensureIndexLoaded()){
+            return -1;
+        }
+        return freeSpotIndex.freeCount(parkingType);
+    }
+
+    //fills in the level and zone of a spot from the layout read with the free spots, without querying
+    public void locate(ParkingSpot parkingSpot){
+        freeSpotIndex.locateSpot(parkingSpot);
+    }
+
+    public void releaseClaimedSlot(ParkingType parkingType, int parkingNumber){
+        if(indexLoaded){
+            release(parkingType, parkingNumber);
+        }
+    }
+
+    //counts from the parking table, so the claims of gates in other processes are included;
+    //on the primary, as the counters are set to these counts and a lagging replica would undo recent entries
+    public boolean loadOccupancy(OccupancyCounters occupancy){
         Connection con = null;
-        int result=-1;
         try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
-            ps.setString(1, parkingType.toString());
+            con = dataBaseConfig.getConnection(DataAccess.READ);
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_SPOT_COUNTS);
             ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                result = rs.getInt(1);
+            Map<ParkingType, int[]> counts = new EnumMap<>(ParkingType.class);
+            while(rs.next()){
+                counts.put(ParkingType.valueOf(rs.getString(1)), new int[]{rs.getInt(2), rs.getInt(3)});
             }
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+            for(ParkingType parkingType : ParkingType.values()){
+                int[] count = counts.getOrDefault(parkingType, new int[2]);
+                occupancy.set(parkingType, count[0], count[1]);
+            }
+            occupancy.setLoaded();
+            return true;
+        }catch (Exception ex){
+            logger.error("Error counting parking spots",ex);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    public long getClaimConflicts(){
+        return claimConflicts.get();
+    }
+
+    //allocates inside this node's blocks, where no other node's gate claims, so the claim does not
+    //race; a conflict only happens on spots taken before the block changed hands
+    private int claimLeased(Connection con, SpotLeases leases, ParkingType parkingType) throws SQLException {
+        while(true){
+            int parkingNumber = leases.claim(freeSpotIndex, parkingType);
+            if(parkingNumber < 0){
+                return -1;
+            }
+            int claimed;
+            try {
+                claimed = claimInDataBase(con, parkingNumber);
+            }catch (SQLException ex){
+                release(parkingType, parkingNumber);
+                throw ex;
+            }
+            if(claimed == 1){
+                return parkingNumber;
+            }
+            claimConflicts.incrementAndGet();
+        }
+    }
+
+    //spots freed at the gates of other nodes only show up after a reload
+    private boolean leaseBlock(SpotLeases leases, ParkingType parkingType){
+        return loadFreeSpotIndex() && leases.lease(freeSpotIndex, parkingType);
+    }
+
+    private int claimOnOwnConnection(ParkingType parkingType){
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection(DataAccess.WRITE);
+            return claimNextAvailableSlot(con, parkingType);
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            logger.error("Error claiming parking spot",ex);
+            return -1;
         }finally {
             dataBaseConfig.closeConnection(con);
         }
-        return result;
+    }
+
+    //takes the one reload of the interval for the type, false when another caller already did
+    private boolean startReload(ParkingType parkingType){
+        long now = System.nanoTime();
+        long skippedUntil = reloadsSkippedUntil.get(parkingType.ordinal());
+        return (skippedUntil == 0 || now - skippedUntil >= 0)
+                && reloadsSkippedUntil.compareAndSet(parkingType.ordinal(), skippedUntil, now + FULL_RELOAD_INTERVAL);
+    }
+
+    //the reload found spots, so the type is not full and the next one needs no wait
+    private void allowReloads(ParkingType parkingType){
+        reloadsSkippedUntil.set(parkingType.ordinal(), 0);
+    }
+
+    private int claimInDataBase(Connection con, int parkingNumber) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+        try {
+            ps.setInt(1, parkingNumber);
+            return ps.executeUpdate();
+        }finally {
+            dataBaseConfig.closePreparedStatement(ps);
+        }
     }
 
     public boolean updateParking(ParkingSpot parkingSpot){
+        boolean updated = writeAvailability(parkingSpot.getId(), parkingSpot.isAvailable());
+        if(updated && indexLoaded){
+            if(parkingSpot.isAvailable()){
+                release(parkingSpot.getParkingType(), parkingSpot.getId());
+            }else{
+                freeSpotIndex.claim(parkingSpot.getParkingType(), parkingSpot.getId());
+            }
+        }
+        return updated;
+    }
+
+    private boolean writeAvailability(int parkingNumber, boolean available){
         Connection con = null;
         try {
-            con = dataBaseConfig.getConnection();
+            con = dataBaseConfig.getConnection(DataAccess.WRITE);
             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
-            ps.setBoolean(1, parkingSpot.isAvailable());
-            ps.setInt(2, parkingSpot.getId());
+            ps.setBoolean(1, available);
+            ps.setInt(2, parkingNumber);
             int updateRowCount = ps.executeUpdate();
             dataBaseConfig.closePreparedStatement(ps);
             return (updateRowCount == 1);
@@ -55,4 +353,28 @@ public class ParkingSpotDAO {
         }
     }
 
+    private boolean ensureIndexLoaded(){
+        return indexLoaded || loadFreeSpotIndex();
+    }
+
+    //a reload in progress may have read the spot as taken, so it is handed to the new index too
+    private void release(ParkingType parkingType, int parkingNumber){
+        synchronized(reloadLock){
+            if(releasedDuringReload != null){
+                releasedDuringReload.add(new ReleasedSpot(parkingType, parkingNumber));
+            }
+        }
+        freeSpotIndex.release(parkingType, parkingNumber);
+    }
+
+    private static final class ReleasedSpot {
+        private final ParkingType parkingType;
+        private final int parkingNumber;
+
+        private ReleasedSpot(ParkingType parkingType, int parkingNumber) {
+            this.parkingType = parkingType;
+            this.parkingNumber = parkingNumber;
+        }
+    }
+
 }
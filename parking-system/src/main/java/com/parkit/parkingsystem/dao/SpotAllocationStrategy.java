@@ -0,0 +1,66 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks which free spot an incoming vehicle gets, taking it out of the {@link FreeSpotIndex}.
+ * Strategies only choose among the spots of the index; claiming the row in DB stays with the DAO.
+ */
+public interface SpotAllocationStrategy {
+
+    //removes and returns the chosen spot, -1 when the type is full. With a window above 1 the spot is
+    //picked at random among the lowest window ones of the area the strategy chose, so gates that just
+    //collided spread out without leaving that area
+    int claim(FreeSpotIndex freeSpotIndex, ParkingType parkingType, int window);
+
+    default int claim(FreeSpotIndex freeSpotIndex, ParkingType parkingType) {
+        return claim(freeSpotIndex, parkingType, 1);
+    }
+
+    //the lowest numbered free spot, wherever it is
+    static SpotAllocationStrategy lowestNumber() {
+        return (freeSpotIndex, parkingType, window) -> window > 1 ? freeSpotIndex.claimAmongLowest(parkingType, window)
+                : freeSpotIndex.claimLowest(parkingType);
+    }
+
+    //the free spot closest to the gate, same level first then the neighbouring zones and levels.
+    //The areas are put in order once per index and layout, not on every claim.
+    static SpotAllocationStrategy nearestTo(int level, String zone) {
+        Map<ParkingType, FreeSpotIndex.AreaOrder> orders = new ConcurrentHashMap<>();
+        return (freeSpotIndex, parkingType, window) -> {
+            FreeSpotIndex.AreaOrder order = orders.get(parkingType);
+            if (order == null || !freeSpotIndex.isCurrent(order)) {
+                order = freeSpotIndex.orderByDistance(parkingType, level, zone);
+                orders.put(parkingType, order);
+            }
+            return freeSpotIndex.claimNearest(order, window);
+        };
+    }
+
+    //a spot on the level with the most free spots, so traffic spreads over the ramps
+    static SpotAllocationStrategy spreadAcrossLevels() {
+        return FreeSpotIndex::claimOnEmptiestLevel;
+    }
+
+    //"lowest", "spread" or "nearest:<level>:<zone>"
+    static SpotAllocationStrategy parse(String name) {
+        String[] parts = name.trim().split(":");
+        switch (parts[0]) {
+            case "lowest":
+                return lowestNumber();
+            case "spread":
+                return spreadAcrossLevels();
+            case "nearest":
+                if (parts.length == 3) {
+                    return nearestTo(Integer.parseInt(parts[1]), parts[2]);
+                }
+                break;
+            default:
+                break;
+        }
+        throw new IllegalArgumentException("Unknown allocation strategy: " + name);
+    }
+}
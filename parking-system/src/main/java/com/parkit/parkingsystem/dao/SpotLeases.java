@@ -0,0 +1,263 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Blocks of spots leased by this node, so that the gates of a cluster each allocate from spots of their
+ * own and never race for the same parking row. Spot n of a type is in block n / blockSize; a block is
+ * held by at most one node at a time through its spot_lease row, which expires unless renewed, so the
+ * blocks of a node that died go back to the others after the time to live.
+ *
+ * <p>Expiry times are taken from the clock of each node: the clocks of the cluster must agree to well
+ * within the time to live, and a node stops allocating from its blocks a third of the time to live
+ * before they expire.
+ */
+public class SpotLeases {
+
+    private static final Logger logger = LogManager.getLogger("SpotLeases");
+
+    public static final int DEFAULT_BLOCK_SIZE = 32;
+    public static final long DEFAULT_TTL = 60000;
+    public static final int DEFAULT_LOW_WATER = 4;
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    private final String node;
+    private final int blockSize;
+    private final long ttlMillis;
+    private final int lowWater;
+    private final Map<ParkingType, ConcurrentSkipListSet<Integer>> blocks = new EnumMap<>(ParkingType.class);
+    private volatile long usableUntil;
+
+    public SpotLeases(int blockSize) {
+        this(localNode(), blockSize, DEFAULT_TTL, DEFAULT_LOW_WATER);
+    }
+
+    public SpotLeases(String node, int blockSize, long ttlMillis, int lowWater) {
+        this.node = node;
+        this.blockSize = blockSize;
+        this.ttlMillis = ttlMillis;
+        this.lowWater = lowWater;
+        for (ParkingType parkingType : ParkingType.values()) {
+            blocks.put(parkingType, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    //pid@host, unique in the cluster and different after a restart
+    public static String localNode() {
+        return ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public long getTtl() {
+        return ttlMillis;
+    }
+
+    public int getLowWater() {
+        return lowWater;
+    }
+
+    public Set<Integer> getBlocks(ParkingType parkingType) {
+        return Collections.unmodifiableSet(blocks.get(parkingType));
+    }
+
+    //takes the lowest free spot of this node's blocks out of the index, -1 when they are full or lapsed
+    int claim(FreeSpotIndex freeSpotIndex, ParkingType parkingType) {
+        if (System.currentTimeMillis() >= usableUntil) {
+            return -1;
+        }
+        for (int block : blocks.get(parkingType)) {
+            int parkingNumber = freeSpotIndex.claimLowestBetween(parkingType, block * blockSize, (block + 1) * blockSize);
+            if (parkingNumber >= 0) {
+                return parkingNumber;
+            }
+        }
+        return -1;
+    }
+
+    //free spots left in this node's blocks
+    int supply(FreeSpotIndex freeSpotIndex, ParkingType parkingType) {
+        int supply = 0;
+        for (int block : blocks.get(parkingType)) {
+            supply += freeSpotIndex.freeCountBetween(parkingType, block * blockSize, (block + 1) * blockSize);
+        }
+        return supply;
+    }
+
+    //leases the block with the most free spots that no live lease holds, false when there is none
+    synchronized boolean lease(FreeSpotIndex freeSpotIndex, ParkingType parkingType) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            long now = System.currentTimeMillis();
+            Set<Integer> held = new HashSet<>();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_SPOT_LEASES);
+            ps.setTimestamp(1, new Timestamp(now));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                if (parkingType.toString().equals(rs.getString(1)) && !node.equals(rs.getString(3))) {
+                    held.add(rs.getInt(2));
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            Map<Integer, Integer> freeSpots = new HashMap<>();
+            for (int parkingNumber : freeSpotIndex.freeSpots(parkingType)) {
+                int block = parkingNumber / blockSize;
+                if (!held.contains(block) && !blocks.get(parkingType).contains(block)) {
+                    freeSpots.merge(block, 1, Integer::sum);
+                }
+            }
+            List<Integer> candidates = new ArrayList<>(freeSpots.keySet());
+            candidates.sort((a, b) -> freeSpots.get(b) - freeSpots.get(a));
+            for (int block : candidates) {
+                if (take(con, parkingType, block, now)) {
+                    blocks.get(parkingType).add(block);
+                    if (blocks.values().stream().mapToInt(Set::size).sum() == 1) {
+                        usableUntil = usableFrom(now);
+                    }
+                    logger.info(node + " leased " + parkingType + " block " + block);
+                    return true;
+                }
+            }
+            return false;
+        } catch (Exception ex) {
+            logger.error("Error leasing a " + parkingType + " block", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    //extends every lease of this node and drops the blocks it no longer holds
+    synchronized boolean renew() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            long now = System.currentTimeMillis();
+            PreparedStatement ps = con.prepareStatement(DBConstants.RENEW_SPOT_LEASES);
+            ps.setTimestamp(1, new Timestamp(now + ttlMillis));
+            ps.setString(2, node);
+            ps.setTimestamp(3, new Timestamp(now));
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            Map<ParkingType, Set<Integer>> renewed = new EnumMap<>(ParkingType.class);
+            ps = con.prepareStatement(DBConstants.GET_NODE_SPOT_LEASES);
+            ps.setString(1, node);
+            ps.setTimestamp(2, new Timestamp(now));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                renewed.computeIfAbsent(ParkingType.valueOf(rs.getString(1)), type -> new HashSet<>()).add(rs.getInt(2));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            for (Map.Entry<ParkingType, ConcurrentSkipListSet<Integer>> held : blocks.entrySet()) {
+                Set<Integer> kept = renewed.getOrDefault(held.getKey(), Collections.emptySet());
+                if (held.getValue().retainAll(kept)) {
+                    logger.warn(node + " lost " + held.getKey() + " blocks, now holding " + held.getValue());
+                }
+            }
+            usableUntil = usableFrom(now);
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error renewing spot leases, they lapse at " + new Timestamp(usableUntil), ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    //hands back the blocks this node has no free spot left in, so the others can lease them once
+    //cars leave, and the blocks it hoards beyond twice the low water mark
+    synchronized void releaseSurplus(FreeSpotIndex freeSpotIndex, ParkingType parkingType) {
+        NavigableSet<Integer> held = blocks.get(parkingType);
+        int supply = supply(freeSpotIndex, parkingType);
+        List<Integer> released = new ArrayList<>();
+        for (int block : held) {
+            int free = freeSpotIndex.freeCountBetween(parkingType, block * blockSize, (block + 1) * blockSize);
+            if (held.size() - released.size() > 1 && (free == 0 || supply - free >= 2 * lowWater)) {
+                released.add(block);
+                supply -= free;
+            }
+        }
+        if (released.isEmpty()) {
+            return;
+        }
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.RELEASE_SPOT_LEASE);
+            for (int block : released) {
+                //stop allocating from the block before another node can take it
+                held.remove(block);
+                ps.setString(1, parkingType.toString());
+                ps.setInt(2, block);
+                ps.setString(3, node);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+        } catch (Exception ex) {
+            //the leases expire anyway
+            logger.error("Error releasing " + parkingType + " blocks " + released, ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private boolean take(Connection con, ParkingType parkingType, int block, long now) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.TAKE_SPOT_LEASE);
+        ps.setString(1, node);
+        ps.setTimestamp(2, new Timestamp(now + ttlMillis));
+        ps.setString(3, parkingType.toString());
+        ps.setInt(4, block);
+        ps.setString(5, node);
+        ps.setTimestamp(6, new Timestamp(now));
+        int taken = ps.executeUpdate();
+        dataBaseConfig.closePreparedStatement(ps);
+        if (taken == 1) {
+            return true;
+        }
+        ps = con.prepareStatement(DBConstants.SAVE_SPOT_LEASE);
+        try {
+            ps.setString(1, parkingType.toString());
+            ps.setInt(2, block);
+            ps.setString(3, node);
+            ps.setTimestamp(4, new Timestamp(now + ttlMillis));
+            return ps.executeUpdate() == 1;
+        } catch (SQLException e) {
+            //the row exists: another node holds the block
+            return false;
+        } finally {
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    private long usableFrom(long now) {
+        return now + ttlMillis - ttlMillis / 3;
+    }
+}
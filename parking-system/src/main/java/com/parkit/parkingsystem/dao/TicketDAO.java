@@ -1,10 +1,12 @@
 package com.parkit.parkingsystem.dao;
 
+import com.parkit.parkingsystem.config.DataAccess;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.storage.TicketRepository;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -13,17 +15,16 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
 
-public class TicketDAO {
+public class TicketDAO implements TicketRepository {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
-    
 	public boolean saveTicket(Ticket ticket){
         Connection con = null;
         try {
-            con = dataBaseConfig.getConnection();
+            con = dataBaseConfig.getConnection(DataAccess.WRITE);
             PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
             //ps.setInt(1,ticket.getId());
@@ -32,7 +33,9 @@ public class TicketDAO {
             ps.setDouble(3, ticket.getPrice());
             ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
             ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
-            return ps.execute();
+            boolean result = ps.executeUpdate() == 1;
+            dataBaseConfig.closePreparedStatement(ps);
+            return result;
         }catch (Exception ex){
         	 ex.printStackTrace();
         }
@@ -44,14 +47,16 @@ public class TicketDAO {
         
     }
 
+    //may lag behind the primary; exits look their open ticket up on the primary in ParkingSessionDAO
 	public Ticket getTicket(String vehicleRegNumber) {
         Connection con = null;
       Ticket ticket = null;
         try {
-            con = dataBaseConfig.getConnection();
+            con = dataBaseConfig.getConnection(DataAccess.STALE_READ);
             PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
             ps.setString(1,vehicleRegNumber);
+            ps.setString(2,vehicleRegNumber);
             ResultSet rs = ps.executeQuery();
             if(rs.next()){
                 ticket = new Ticket();
@@ -83,12 +88,13 @@ public class TicketDAO {
     public boolean updateTicket(Ticket ticket) {
         Connection con = null;
         try {
-            con = dataBaseConfig.getConnection();
+            con = dataBaseConfig.getConnection(DataAccess.WRITE);
             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
             ps.setDouble(1, ticket.getPrice());
             ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
             ps.setInt(3,ticket.getId());
             ps.execute();
+            dataBaseConfig.closePreparedStatement(ps);
             return true;
         }catch (Exception ex){
             logger.error("Error saving ticket info",ex);
@@ -106,16 +112,15 @@ public boolean recurrentUsers (String vehiculeNumber) {
     PreparedStatement ps = null;
     ResultSet rs = null;
     try {
-        con = dataBaseConfig.getConnection();
+        con = dataBaseConfig.getConnection(DataAccess.STALE_READ);
       ps = con.prepareStatement(DBConstants.RECURENT_USERS);
         ps.setString(1,vehiculeNumber);
+        ps.setString(2,vehiculeNumber);
        rs = ps.executeQuery();
         if (rs.next()) {
-            if(rs.getString("VEHICLE_REG_NUMBER").equalsIgnoreCase(vehiculeNumber)){
                recurent= true;
                 System.out.println("welcome you have 5% reduction");
         }
-        }
         dataBaseConfig.closeResultSet(rs);
         dataBaseConfig.closePreparedStatement(ps);
     }catch (Exception ex){
@@ -128,11 +133,12 @@ public boolean recurrentUsers (String vehiculeNumber) {
 }
 
 
+//advisory only, the entry transaction checks again on the primary
 public boolean alreadyAtParking (String vehiculeRegNumber)  {
     boolean inParking = false;
     Connection con = null;
     try {
-        con = dataBaseConfig.getConnection();
+        con = dataBaseConfig.getConnection(DataAccess.STALE_READ);
         PreparedStatement ps = con.prepareStatement(DBConstants.IN_PARKING);
         ps.setString(1, vehiculeRegNumber);
         ResultSet rs = ps.executeQuery();
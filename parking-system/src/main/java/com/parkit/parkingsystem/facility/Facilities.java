@@ -0,0 +1,185 @@
+package com.parkit.parkingsystem.facility;
+
+import com.parkit.parkingsystem.archive.TicketArchiver;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.FacilityRouter;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.SpotLeases;
+import com.parkit.parkingsystem.migration.SchemaMigrator;
+import com.parkit.parkingsystem.report.ReportAggregator;
+import com.parkit.parkingsystem.report.ReportRow;
+import com.parkit.parkingsystem.report.RevenueReportService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.storage.JdbcParkingStorage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * The facilities served by this process, each with a {@link ParkingService} of its own on its own storage,
+ * indexes and connection pool, so they scale and slow down independently. Queries over all facilities are
+ * fanned out in parallel, one task per facility.
+ */
+public class Facilities {
+
+    private static final Logger logger = LogManager.getLogger("Facilities");
+
+    private final Map<String, ParkingService> parkingServices;
+    private final Map<String, DataBaseConfig> dataBaseConfigs;
+    private final Map<String, JdbcParkingStorage> storages;
+    private final ExecutorService fanOutExecutor;
+
+    private Facilities(Map<String, ParkingService> parkingServices, Map<String, DataBaseConfig> dataBaseConfigs,
+                       Map<String, JdbcParkingStorage> storages) {
+        this.parkingServices = Collections.unmodifiableMap(parkingServices);
+        this.dataBaseConfigs = dataBaseConfigs;
+        this.storages = storages;
+        this.fanOutExecutor = Executors.newFixedThreadPool(parkingServices.size(), runnable -> {
+            Thread thread = new Thread(runnable, "facility-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //migrates every facility's database, refusing to serve any on a failed migration, loads its indexes, sets how it allocates spots and starts leasing
+    //spot blocks where configured
+    public static Facilities open(FacilityRouter router) {
+        Map<String, ParkingService> parkingServices = new LinkedHashMap<>();
+        Map<String, DataBaseConfig> dataBaseConfigs = new LinkedHashMap<>();
+        Map<String, JdbcParkingStorage> storages = new LinkedHashMap<>();
+        for (String facility : router.getFacilities()) {
+            DataBaseConfig dataBaseConfig = router.route(facility);
+            dataBaseConfigs.put(facility, dataBaseConfig);
+            SchemaMigrator schemaMigrator = new SchemaMigrator();
+            schemaMigrator.dataBaseConfig = dataBaseConfig;
+            if (schemaMigrator.migrate() < 0) {
+                throw new IllegalStateException("Schema migration failed for facility " + facility);
+            }
+            JdbcParkingStorage storage = new JdbcParkingStorage(dataBaseConfig).load();
+            storage.getParkingSpotRepository().setAllocationStrategy(router.getAllocationStrategy(facility));
+            if (router.getLeaseBlockSize(facility) > 0) {
+                SpotLeases spotLeases = new SpotLeases(router.getLeaseBlockSize(facility));
+                spotLeases.dataBaseConfig = dataBaseConfig;
+                storage.getParkingSpotRepository().enableLeasing(spotLeases);
+                storage.getParkingSpotRepository().watchLeases();
+            }
+            storages.put(facility, storage);
+            parkingServices.put(facility, new ParkingService(storage));
+        }
+        return new Facilities(parkingServices, dataBaseConfigs, storages);
+    }
+
+    //a single facility on any storage, without database-backed reports
+    public static Facilities single(ParkingService parkingService) {
+        Map<String, ParkingService> parkingServices = new LinkedHashMap<>();
+        parkingServices.put(FacilityRouter.DEFAULT_FACILITY, parkingService);
+        return new Facilities(parkingServices, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    public Set<String> getFacilities() {
+        return parkingServices.keySet();
+    }
+
+    public String getDefaultFacility() {
+        return parkingServices.keySet().iterator().next();
+    }
+
+    //null for a facility that is not served here
+    public ParkingService getParkingService(String facility) {
+        return parkingServices.get(facility);
+    }
+
+    //keeps every facility's occupancy counters, open sessions and report aggregates up to date and its ticket table small
+    public void watch(long occupancyPeriodMillis, long sessionPeriodMillis, long reportPeriodMillis, long archivePeriodMillis) {
+        for (Map.Entry<String, ParkingService> facility : parkingServices.entrySet()) {
+            facility.getValue().watchOccupancy(occupancyPeriodMillis);
+            JdbcParkingStorage storage = storages.get(facility.getKey());
+            if (storage != null) {
+                storage.getParkingSessionRepository().watchSessions(sessionPeriodMillis);
+            }
+            DataBaseConfig dataBaseConfig = dataBaseConfigs.get(facility.getKey());
+            if (dataBaseConfig != null) {
+                ReportAggregator reportAggregator = new ReportAggregator();
+                reportAggregator.dataBaseConfig = dataBaseConfig;
+                reportAggregator.schedule(reportPeriodMillis);
+                TicketArchiver ticketArchiver = new TicketArchiver();
+                ticketArchiver.dataBaseConfig = dataBaseConfig;
+                ticketArchiver.schedule(archivePeriodMillis);
+            }
+        }
+    }
+
+    //runs the query on every facility at once; a facility whose query fails is logged and left out
+    public <T> Map<String, T> fanOut(Function<String, T> query) {
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (String facility : parkingServices.keySet()) {
+            futures.put(facility, fanOutExecutor.submit(() -> query.apply(facility)));
+        }
+        Map<String, T> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+            try {
+                T result = future.getValue().get();
+                if (result != null) {
+                    results.put(future.getKey(), result);
+                }
+            } catch (ExecutionException e) {
+                logger.error("Query failed on facility " + future.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return results;
+    }
+
+    //free spots per type summed over the facilities, from their occupancy counters
+    public Map<ParkingType, Integer> getFreeSpots() {
+        Map<ParkingType, Integer> total = new EnumMap<>(ParkingType.class);
+        for (Map<ParkingType, Integer> freeSpots : fanOut(facility -> getParkingService(facility).getFreeSpots()).values()) {
+            for (Map.Entry<ParkingType, Integer> free : freeSpots.entrySet()) {
+                if (free.getValue() >= 0) {
+                    total.merge(free.getKey(), free.getValue(), Integer::sum);
+                }
+            }
+        }
+        return total;
+    }
+
+    //daily revenue and occupancy of all facilities together, read from each facility's aggregates, null when
+    //any facility's report could not be read rather than totals missing a car park
+    public List<ReportRow> daily(LocalDate from, LocalDate to) {
+        Map<String, List<ReportRow>> reports = fanOut(facility -> {
+            DataBaseConfig dataBaseConfig = dataBaseConfigs.get(facility);
+            if (dataBaseConfig == null) {
+                return Collections.emptyList();
+            }
+            RevenueReportService reportService = new RevenueReportService();
+            reportService.dataBaseConfig = dataBaseConfig;
+            return reportService.daily(from, to);
+        });
+        if (reports.size() < parkingServices.size()) {
+            Set<String> missing = new LinkedHashSet<>(parkingServices.keySet());
+            missing.removeAll(reports.keySet());
+            logger.error("Daily report not combined, no report from facilities " + missing);
+            return null;
+        }
+        return RevenueReportService.combine(reports.values());
+    }
+
+    public void close() {
+        fanOutExecutor.shutdown();
+    }
+}
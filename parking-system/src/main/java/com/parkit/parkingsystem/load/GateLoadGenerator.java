@@ -0,0 +1,305 @@
+package com.parkit.parkingsystem.load;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.FacilityDataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives {@link ParkingService} from several simulated gates at once. All gate threads share one
+ * service and its DAOs, the way gates of one site would share a process. Vehicles that entered leave again through whichever
+ * gate is free once their stay is over.
+ *
+ * <p>The run writes tickets, including a made-up past visit for every loyal customer, so it never
+ * defaults to the configured database: it is given one explicitly. Run with a {@code url=<jdbc url>}
+ * argument, optionally {@code user=} and {@code password=}, and {@code key=value} traffic settings,
+ * see {@link LoadProfile#set(String)}.
+ */
+public class GateLoadGenerator {
+
+    private static final Logger logger = LogManager.getLogger("GateLoadGenerator");
+
+    private static final long POOL_SAMPLING_PERIOD = 10;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final LoadProfile profile;
+
+    private final Set<String> parked = ConcurrentHashMap.newKeySet();
+    private final DelayQueue<Departure> departures = new DelayQueue<>();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong rejectedEntries = new AtomicLong();
+    private final AtomicLong exits = new AtomicLong();
+    private final AtomicLong failedExits = new AtomicLong();
+    private final AtomicLong newVehicles = new AtomicLong();
+
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+    private ParkingSessionDAO parkingSessionDAO;
+
+    public GateLoadGenerator(LoadProfile profile, DataBaseConfig dataBaseConfig) {
+        if (dataBaseConfig == null) {
+            throw new IllegalArgumentException("A database to run the load against is required");
+        }
+        this.profile = profile;
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = new LoadProfile();
+        String url = null;
+        String user = null;
+        String password = null;
+        for (String arg : args) {
+            if (arg.startsWith("url=")) {
+                url = arg.substring(4);
+            } else if (arg.startsWith("user=")) {
+                user = arg.substring(5);
+            } else if (arg.startsWith("password=")) {
+                password = arg.substring(9);
+            } else {
+                profile.set(arg);
+            }
+        }
+        if (url == null) {
+            throw new IllegalArgumentException("Expected a url=<jdbc url> argument naming the database to load");
+        }
+        LoadReport report = new GateLoadGenerator(profile,
+                new FacilityDataBaseConfig("load", url, user, password, null, null)).run();
+        System.out.println(report);
+        DataBaseConfig.shutdownPools();
+    }
+
+    public LoadReport run() throws Exception {
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadFreeSpotIndex();
+        parkingSessionDAO.loadActiveSessions();
+        parkingSessionDAO.loadLoyalVehicles();
+        seedLoyalCustomers();
+        long conflictsBefore = parkingSpotDAO.getClaimConflicts();
+
+        ConnectionPool pool = dataBaseConfig.getConnectionPool();
+        PoolSampler sampler = new PoolSampler(pool);
+        ScheduledExecutorService sampling = Executors.newSingleThreadScheduledExecutor();
+        sampling.scheduleAtFixedRate(sampler, 0, POOL_SAMPLING_PERIOD, TimeUnit.MILLISECONDS);
+
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO, parkingSessionDAO);
+        List<Gate> gates = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            long end = start + TimeUnit.MILLISECONDS.toNanos(profile.getDurationMillis());
+            for (int i = 0; i < profile.getGates(); i++) {
+                Gate gate = new Gate(i, end, parkingService);
+                gates.add(gate);
+                gate.start();
+            }
+            for (Gate gate : gates) {
+                gate.join();
+            }
+        } finally {
+            sampling.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+        drain();
+
+        LoadReport report = new LoadReport();
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsed));
+        report.setEntries(entries.get());
+        report.setRejectedEntries(rejectedEntries.get());
+        report.setExits(exits.get());
+        report.setFailedExits(failedExits.get());
+        for (Gate gate : gates) {
+            report.getEntryLatency().addAll(gate.entryLatency);
+            report.getExitLatency().addAll(gate.exitLatency);
+        }
+        report.setClaimConflicts(parkingSpotDAO.getClaimConflicts() - conflictsBefore);
+        report.setMaxPoolSize(pool.getSettings().getMaxSize());
+        report.setMaxActiveConnections(sampler.maxActive);
+        report.setMeanActiveConnections(sampler.samples == 0 ? 0 : (double) sampler.activeTotal / sampler.samples);
+        report.setMaxPendingThreads(sampler.maxPending);
+        report.setStatementCacheHitRatio(pool.getStatementCacheHitRatio());
+        return report;
+    }
+
+    //gives every returning customer a closed ticket, so the system knows them as loyal
+    private void seedLoyalCustomers() {
+        int parkingNumber = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+        if (parkingNumber < 0) {
+            parkingNumber = 1;
+        }
+        Date visit = new Date(System.currentTimeMillis() - 24 * 60 * 60 * 1000);
+        for (int i = 0; i < profile.getLoyalCustomers(); i++) {
+            String vehicleRegNumber = loyalVehicle(i);
+            if (parkingSessionDAO.getLoyaltyRegistry().contains(vehicleRegNumber)) {
+                continue;
+            }
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setInTime(visit);
+            ticket.setOutTime(visit);
+            ticketDAO.saveTicket(ticket);
+            parkingSessionDAO.getLoyaltyRegistry().add(vehicleRegNumber);
+        }
+    }
+
+    //vehicles still parked at the end leave without being measured, so the next run starts from an empty site
+    private void drain() {
+        FareCalculatorService fares = new FareCalculatorService();
+        for (String vehicleRegNumber : parked) {
+            parkingSessionDAO.exitVehicle(vehicleRegNumber, new Date(), fares);
+        }
+        parked.clear();
+        departures.clear();
+    }
+
+    private static String loyalVehicle(int index) {
+        return String.format("L%05d", index);
+    }
+
+    private final class Gate extends Thread {
+        private final long end;
+        private final Random random;
+        private final ParkingService parkingService;
+        private final LatencyRecorder entryLatency = new LatencyRecorder();
+        private final LatencyRecorder exitLatency = new LatencyRecorder();
+
+        private Gate(int index, long end, ParkingService parkingService) {
+            super("gate-" + index);
+            this.end = end;
+            this.random = new Random(profile.getSeed() + index);
+            this.parkingService = parkingService;
+        }
+
+        @Override
+        public void run() {
+            long nextArrival = System.nanoTime() + interArrival();
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    if (now >= end) {
+                        return;
+                    }
+                    Departure departure = departures.poll(Math.min(nextArrival, end) - now, TimeUnit.NANOSECONDS);
+                    if (departure != null) {
+                        exit(departure);
+                    } else if (System.nanoTime() >= nextArrival) {
+                        enter(nextArrival);
+                        nextArrival += interArrival();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.error("Gate stopped", e);
+            }
+        }
+
+        private void enter(long due) {
+            ParkingType parkingType = random.nextDouble() < profile.getBikeShare() ? ParkingType.BIKE : ParkingType.CAR;
+            String vehicleRegNumber = null;
+            if (profile.getLoyalCustomers() > 0 && random.nextDouble() < profile.getLoyalShare()) {
+                vehicleRegNumber = loyalVehicle(random.nextInt(profile.getLoyalCustomers()));
+            }
+            //a returning customer already inside is replaced by a first-time visitor
+            if (vehicleRegNumber == null || !parked.add(vehicleRegNumber)) {
+                vehicleRegNumber = "N" + Long.toString(newVehicles.incrementAndGet(), 36).toUpperCase();
+                parked.add(vehicleRegNumber);
+            }
+            GateResult result = parkingService.enterVehicle(vehicleRegNumber, parkingType);
+            entryLatency.record(System.nanoTime() - due);
+            if (result.isAccepted()) {
+                entries.incrementAndGet();
+                long stay = (long) (-Math.log(1 - random.nextDouble()) * profile.getMeanStayMillis());
+                departures.add(new Departure(vehicleRegNumber, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stay)));
+            } else {
+                parked.remove(vehicleRegNumber);
+                rejectedEntries.incrementAndGet();
+            }
+        }
+
+        private void exit(Departure departure) {
+            GateResult result = parkingService.exitVehicle(departure.vehicleRegNumber);
+            exitLatency.record(System.nanoTime() - departure.due);
+            if (result.isAccepted()) {
+                parked.remove(departure.vehicleRegNumber);
+                exits.incrementAndGet();
+            } else {
+                failedExits.incrementAndGet();
+            }
+        }
+
+        private long interArrival() {
+            double seconds = -Math.log(1 - random.nextDouble()) / profile.getArrivalsPerSecond();
+            return (long) (seconds * 1e9);
+        }
+    }
+
+    private static final class Departure implements Delayed {
+        private final String vehicleRegNumber;
+        private final long due;
+
+        private Departure(String vehicleRegNumber, long due) {
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.due = due;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(due, ((Departure) other).due);
+        }
+    }
+
+    private static final class PoolSampler implements Runnable {
+        private final ConnectionPool pool;
+        private volatile int maxActive;
+        private volatile int maxPending;
+        private volatile long activeTotal;
+        private volatile long samples;
+
+        private PoolSampler(ConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void run() {
+            int active = pool.getActiveConnections();
+            maxActive = Math.max(maxActive, active);
+            maxPending = Math.max(maxPending, pool.getPendingThreads());
+            activeTotal += active;
+            samples++;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.parkit.parkingsystem.load;
+
+import java.util.Arrays;
+
+/**
+ * Raw latency samples in nanoseconds. Not thread-safe: each gate keeps its own recorder and
+ * the recorders are merged once the run is over.
+ */
+public class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int count;
+    private boolean sorted = true;
+
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    public void addAll(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samples[i]);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    //nearest-rank percentile, 0 when nothing was recorded
+    public long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        //the epsilon keeps 99.9% of 1000 samples at rank 999 despite floating point error
+        int rank = (int) Math.ceil(percentile * count / 100 - 1e-9);
+        return samples[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    public long getMax() {
+        return percentile(100);
+    }
+}
@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem.load;
+
+/**
+ * Traffic shape driven by a {@link GateLoadGenerator}. Arrivals at each gate and stay durations
+ * are exponentially distributed around the configured means.
+ */
+public class LoadProfile {
+
+    private int gates = 4;
+    private long durationMillis = 30 * 1000;
+    private double arrivalsPerSecond = 10;
+    private long meanStayMillis = 2000;
+    private double bikeShare = 0.25;
+    private double loyalShare = 0.3;
+    private int loyalCustomers = 200;
+    private long seed = 42;
+
+    public int getGates() {
+        return gates;
+    }
+
+    public void setGates(int gates) {
+        this.gates = gates;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    //per gate
+    public double getArrivalsPerSecond() {
+        return arrivalsPerSecond;
+    }
+
+    public void setArrivalsPerSecond(double arrivalsPerSecond) {
+        this.arrivalsPerSecond = arrivalsPerSecond;
+    }
+
+    public long getMeanStayMillis() {
+        return meanStayMillis;
+    }
+
+    public void setMeanStayMillis(long meanStayMillis) {
+        this.meanStayMillis = meanStayMillis;
+    }
+
+    public double getBikeShare() {
+        return bikeShare;
+    }
+
+    public void setBikeShare(double bikeShare) {
+        this.bikeShare = bikeShare;
+    }
+
+    //share of arrivals made by returning customers, picked among loyalCustomers known plates
+    public double getLoyalShare() {
+        return loyalShare;
+    }
+
+    public void setLoyalShare(double loyalShare) {
+        this.loyalShare = loyalShare;
+    }
+
+    public int getLoyalCustomers() {
+        return loyalCustomers;
+    }
+
+    public void setLoyalCustomers(int loyalCustomers) {
+        this.loyalCustomers = loyalCustomers;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    //reads one key=value command line argument
+    public void set(String argument) {
+        String[] pair = argument.split("=", 2);
+        if (pair.length != 2) {
+            throw new IllegalArgumentException("Expected key=value but was: " + argument);
+        }
+        switch (pair[0]) {
+            case "gates": setGates(Integer.parseInt(pair[1])); break;
+            case "seconds": setDurationMillis(Long.parseLong(pair[1]) * 1000); break;
+            case "arrivalsPerSecond": setArrivalsPerSecond(Double.parseDouble(pair[1])); break;
+            case "meanStayMillis": setMeanStayMillis(Long.parseLong(pair[1])); break;
+            case "bikeShare": setBikeShare(Double.parseDouble(pair[1])); break;
+            case "loyalShare": setLoyalShare(Double.parseDouble(pair[1])); break;
+            case "loyalCustomers": setLoyalCustomers(Integer.parseInt(pair[1])); break;
+            case "seed": setSeed(Long.parseLong(pair[1])); break;
+            default: throw new IllegalArgumentException("Unknown load profile setting: " + pair[0]);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.parkit.parkingsystem.load;
+
+import java.util.Locale;
+
+/**
+ * Outcome of one {@link GateLoadGenerator} run. Latencies are measured from the moment a vehicle
+ * was due at the gate, so time spent queuing behind a slow gate is included.
+ */
+public class LoadReport {
+
+    private long elapsedMillis;
+    private long entries;
+    private long rejectedEntries;
+    private long exits;
+    private long failedExits;
+    private final LatencyRecorder entryLatency = new LatencyRecorder();
+    private final LatencyRecorder exitLatency = new LatencyRecorder();
+    private long claimConflicts;
+    private int maxPoolSize;
+    private int maxActiveConnections;
+    private double meanActiveConnections;
+    private int maxPendingThreads;
+    private double statementCacheHitRatio;
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    void setEntries(long entries) {
+        this.entries = entries;
+    }
+
+    //arrivals turned away because no spot of their type was free
+    public long getRejectedEntries() {
+        return rejectedEntries;
+    }
+
+    void setRejectedEntries(long rejectedEntries) {
+        this.rejectedEntries = rejectedEntries;
+    }
+
+    public long getExits() {
+        return exits;
+    }
+
+    void setExits(long exits) {
+        this.exits = exits;
+    }
+
+    public long getFailedExits() {
+        return failedExits;
+    }
+
+    void setFailedExits(long failedExits) {
+        this.failedExits = failedExits;
+    }
+
+    public LatencyRecorder getEntryLatency() {
+        return entryLatency;
+    }
+
+    public LatencyRecorder getExitLatency() {
+        return exitLatency;
+    }
+
+    public double getThroughput() {
+        return elapsedMillis == 0 ? 0 : (entries + rejectedEntries + exits + failedExits) * 1000.0 / elapsedMillis;
+    }
+
+    public long getClaimConflicts() {
+        return claimConflicts;
+    }
+
+    void setClaimConflicts(long claimConflicts) {
+        this.claimConflicts = claimConflicts;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getMaxActiveConnections() {
+        return maxActiveConnections;
+    }
+
+    void setMaxActiveConnections(int maxActiveConnections) {
+        this.maxActiveConnections = maxActiveConnections;
+    }
+
+    public double getMeanActiveConnections() {
+        return meanActiveConnections;
+    }
+
+    void setMeanActiveConnections(double meanActiveConnections) {
+        this.meanActiveConnections = meanActiveConnections;
+    }
+
+    //most threads seen waiting for a connection at once
+    public int getMaxPendingThreads() {
+        return maxPendingThreads;
+    }
+
+    void setMaxPendingThreads(int maxPendingThreads) {
+        this.maxPendingThreads = maxPendingThreads;
+    }
+
+    public double getStatementCacheHitRatio() {
+        return statementCacheHitRatio;
+    }
+
+    void setStatementCacheHitRatio(double statementCacheHitRatio) {
+        this.statementCacheHitRatio = statementCacheHitRatio;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "Ran %.1fs: %.1f gate operations/s%n"
+                        + "  entries  %8d ok %8d rejected  %s%n"
+                        + "  exits    %8d ok %8d failed    %s%n"
+                        + "  spot claim conflicts %d%n"
+                        + "  connections: max %d/%d in use, mean %.2f, max %d threads waiting, statement cache hit ratio %.3f",
+                elapsedMillis / 1000.0, getThroughput(),
+                entries, rejectedEntries, latencies(entryLatency),
+                exits, failedExits, latencies(exitLatency),
+                claimConflicts,
+                maxActiveConnections, maxPoolSize, meanActiveConnections, maxPendingThreads, statementCacheHitRatio);
+    }
+
+    private static String latencies(LatencyRecorder recorder) {
+        return String.format(Locale.ROOT, "p50 %.2fms p99 %.2fms p999 %.2fms max %.2fms",
+                recorder.percentile(50) / 1e6, recorder.percentile(99) / 1e6,
+                recorder.percentile(99.9) / 1e6, recorder.getMax() / 1e6);
+    }
+}
@@ -0,0 +1,225 @@
+package com.parkit.parkingsystem.migration;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Brings a database created from Data.sql up to the latest schema version. Migrations are applied in
+ * version order, each recorded in schema_version once all its steps ran, so a database is only ever
+ * migrated forward and every migration runs once. Append new migrations to the list, never change one
+ * that was released.
+ *
+ * <p>DDL commits on its own in MySQL, so a migration that failed halfway is retried from its first step:
+ * every step checks the database metadata and skips what already exists. Nodes starting together take
+ * turns through a row lock on schema_version, held on a connection of its own that runs no DDL.
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    //the row of schema_version locked while migrating, below every migration
+    private static final int LOCK_VERSION = 0;
+
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            new Migration(1, "indexes for the plate, open ticket and free spot lookups",
+                    //plate lookups, read from the index alone: loyalty, status, history and the open ticket
+                    index("ticket", "ticket_plate", "VEHICLE_REG_NUMBER, OUT_TIME, IN_TIME"),
+                    //open tickets at startup, closed ones for loyalty and archival
+                    index("ticket", "ticket_out_time", "OUT_TIME, VEHICLE_REG_NUMBER"),
+                    index("parking", "parking_type_available", "TYPE, AVAILABLE, PARKING_NUMBER")),
+            new Migration(2, "leases of spot blocks for gate clusters",
+                    table("spot_lease", "TYPE varchar(10) NOT NULL, BLOCK_NO int NOT NULL, NODE varchar(100) NOT NULL, "
+                            + "EXPIRES_AT DATETIME NOT NULL, PRIMARY KEY (TYPE, BLOCK_NO)"),
+                    index("spot_lease", "spot_lease_node", "NODE, EXPIRES_AT")),
+            new Migration(3, "level and zone of each spot",
+                    //existing car parks are a single zone on the ground level
+                    column("parking", "PARKING_LEVEL", "int default 0 not null"),
+                    column("parking", "ZONE", "varchar(10) default 'A' not null"))));
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    //applies the migrations the database has not seen yet and returns how many, or -1 on error
+    public int migrate() {
+        Connection lock = null;
+        Connection con = null;
+        int applied = 0;
+        try {
+            lock = dataBaseConfig.getConnection();
+            lock(lock);
+            con = dataBaseConfig.getConnection();
+            Statement statement = con.createStatement();
+            int version = getVersion(con);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= version) {
+                    continue;
+                }
+                for (Step step : migration.steps) {
+                    step.apply(con.getMetaData(), con.getCatalog(), statement);
+                }
+                PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_SCHEMA_VERSION);
+                ps.setInt(1, migration.version);
+                ps.setString(2, migration.description);
+                ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                ps.executeUpdate();
+                dataBaseConfig.closePreparedStatement(ps);
+                logger.info("Migrated schema to version " + migration.version + ": " + migration.description);
+                applied++;
+            }
+            statement.close();
+            return applied;
+        } catch (Exception ex) {
+            logger.error("Error migrating schema, " + applied + " migrations applied", ex);
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            unlock(lock);
+        }
+    }
+
+    //0 for a database that was never migrated, -1 on error
+    public int getVersion() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.createStatement().execute(DBConstants.CREATE_SCHEMA_VERSION);
+            return getVersion(con);
+        } catch (Exception ex) {
+            logger.error("Error reading schema version", ex);
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private int getVersion(Connection con) throws Exception {
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_SCHEMA_VERSION);
+        ResultSet rs = ps.executeQuery();
+        int version = rs.next() ? rs.getInt(1) : 0;
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return version;
+    }
+
+    //waits until no other node migrates this database, the lock row being created by whoever comes first
+    private void lock(Connection lock) throws SQLException {
+        lock.createStatement().execute(DBConstants.CREATE_SCHEMA_VERSION);
+        PreparedStatement ps = lock.prepareStatement(DBConstants.SAVE_SCHEMA_VERSION);
+        try {
+            ps.setInt(1, LOCK_VERSION);
+            ps.setString(2, "migration lock");
+            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            //already there
+        } finally {
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+        lock.setAutoCommit(false);
+        ps = lock.prepareStatement(DBConstants.LOCK_SCHEMA_VERSION);
+        ps.setInt(1, LOCK_VERSION);
+        ps.executeQuery().close();
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    private void unlock(Connection lock) {
+        if (lock == null) {
+            return;
+        }
+        try {
+            lock.rollback();
+        } catch (SQLException e) {
+            logger.error("Error releasing the migration lock", e);
+        }
+        dataBaseConfig.closeConnection(lock);
+    }
+
+    private static Step index(String table, String index, String columns) {
+        return (metaData, catalog, statement) -> {
+            String name = tableName(metaData, catalog, table);
+            ResultSet rs = metaData.getIndexInfo(catalog, null, name, false, true);
+            try {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return;
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+            statement.execute("create index " + index + " on " + table + "(" + columns + ")");
+        };
+    }
+
+    private static Step table(String table, String definition) {
+        return (metaData, catalog, statement) -> {
+            if (tableName(metaData, catalog, table) == null) {
+                statement.execute("create table " + table + "(" + definition + ")");
+            }
+        };
+    }
+
+    private static Step column(String table, String column, String definition) {
+        return (metaData, catalog, statement) -> {
+            ResultSet rs = metaData.getColumns(catalog, null, tableName(metaData, catalog, table), null);
+            try {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return;
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+            statement.execute("alter table " + table + " add column " + column + " " + definition);
+        };
+    }
+
+    //the table's name as the database stores it, upper case in H2, or null when there is no such table
+    private static String tableName(DatabaseMetaData metaData, String catalog, String table) throws SQLException {
+        ResultSet rs = metaData.getTables(catalog, null, "%", null);
+        try {
+            while (rs.next()) {
+                if (table.equalsIgnoreCase(rs.getString("TABLE_NAME")) && !"INFORMATION_SCHEMA".equalsIgnoreCase(rs.getString("TABLE_SCHEM"))) {
+                    return rs.getString("TABLE_NAME");
+                }
+            }
+            return null;
+        } finally {
+            rs.close();
+        }
+    }
+
+    //one schema change, skipped when the database already has it
+    private interface Step {
+        void apply(DatabaseMetaData metaData, String catalog, Statement statement) throws SQLException;
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final Step[] steps;
+
+        private Migration(int version, String description, Step... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = steps;
+        }
+    }
+}
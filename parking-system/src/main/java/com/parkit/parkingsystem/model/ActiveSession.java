@@ -0,0 +1,57 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Date;
+
+public class ActiveSession {
+    private final String vehicleRegNumber;
+    private final int ticketId;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private final long inTime;
+    private final boolean recurent;
+
+    public ActiveSession(String vehicleRegNumber, int ticketId, int parkingNumber, ParkingType parkingType, long inTime, boolean recurent) {
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.ticketId = ticketId;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.inTime = inTime;
+        this.recurent = recurent;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public int getTicketId() {
+        return ticketId;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public Date getInTime() {
+        return new Date(inTime);
+    }
+
+    public boolean getRecurent() {
+        return recurent;
+    }
+
+    public Ticket toTicket() {
+        Ticket ticket = new Ticket();
+        ticket.setId(ticketId);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(getInTime());
+        ticket.setRecurent(recurent);
+        return ticket;
+    }
+}
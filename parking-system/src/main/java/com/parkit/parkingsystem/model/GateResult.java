@@ -0,0 +1,60 @@
+package com.parkit.parkingsystem.model;
+
+/**
+ * Outcome of a vehicle entry or exit: the ticket, with its spot and fare, or why the gate turned the vehicle away.
+ */
+public class GateResult {
+
+    public enum Rejection {
+        INVALID_VEHICLE,
+        ALREADY_PARKED,
+        PARKING_FULL,
+        NOT_PARKED,
+        ERROR
+    }
+
+    private final Ticket ticket;
+    private final Rejection rejection;
+
+    private GateResult(Ticket ticket, Rejection rejection) {
+        this.ticket = ticket;
+        this.rejection = rejection;
+    }
+
+    public static GateResult accepted(Ticket ticket) {
+        return new GateResult(ticket, null);
+    }
+
+    public static GateResult rejected(Rejection rejection) {
+        return new GateResult(null, rejection);
+    }
+
+    public boolean isAccepted() {
+        return rejection == null;
+    }
+
+    //null when accepted
+    public Rejection getRejection() {
+        return rejection;
+    }
+
+    //null when rejected
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public ParkingSpot getParkingSpot() {
+        return ticket == null ? null : ticket.getParkingSpot();
+    }
+
+    //price to pay on exit, 0 on entry
+    public double getFare() {
+        return ticket == null ? 0 : ticket.getPrice();
+    }
+
+    @Override
+    public String toString() {
+        return isAccepted() ? "Accepted " + ticket.getVehicleRegNumber() + " at spot " + ticket.getParkingSpot().getId()
+                : "Rejected: " + rejection;
+    }
+}
@@ -3,14 +3,24 @@ package com.parkit.parkingsystem.model;
 import com.parkit.parkingsystem.constants.ParkingType;
 
 public class ParkingSpot {
+    public static final String DEFAULT_ZONE = "A";
+
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
+    private int level;
+    private String zone;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
+        this(number, parkingType, isAvailable, 0, DEFAULT_ZONE);
+    }
+
+    public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable, int level, String zone) {
         this.number = number;
         this.parkingType = parkingType;
         this.isAvailable = isAvailable;
+        this.level = level;
+        this.zone = zone;
     }
 
     public int getId() {
@@ -37,6 +47,22 @@ public class ParkingSpot {
         isAvailable = available;
     }
 
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public String getZone() {
+        return zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
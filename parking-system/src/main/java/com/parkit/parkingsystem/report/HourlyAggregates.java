@@ -0,0 +1,81 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Changes to the report_hourly rows, summed up in memory before they are applied in one go. A stay counts
+ * as an exit with its price in the hour it ends, and adds its parked seconds to every hour it overlaps.
+ */
+public class HourlyAggregates {
+
+    private static final ParkingType[] TYPES = ParkingType.values();
+
+    private final ZoneId zone;
+    //keyed by hour start millis * number of types + type ordinal
+    private final Map<Long, Row> rows = new HashMap<>();
+
+    public HourlyAggregates() {
+        this(ZoneId.systemDefault());
+    }
+
+    public HourlyAggregates(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    public void addStay(ParkingType parkingType, long inMillis, long outMillis, long priceCents) {
+        Row exitHour = row(hourStart(outMillis), parkingType);
+        exitHour.exits++;
+        exitHour.revenueCents += priceCents;
+        ZonedDateTime hour = Instant.ofEpochMilli(inMillis).atZone(zone).truncatedTo(ChronoUnit.HOURS);
+        long from = inMillis;
+        while (from < outMillis) {
+            ZonedDateTime next = hour.plusHours(1);
+            long to = Math.min(outMillis, next.toInstant().toEpochMilli());
+            row(hour.toInstant().toEpochMilli(), parkingType).occupiedSeconds += (to - from) / 1000;
+            from = to;
+            hour = next;
+        }
+    }
+
+    //a price changed after its stay was counted
+    public void addRevenue(ParkingType parkingType, long outMillis, long deltaCents) {
+        row(hourStart(outMillis), parkingType).revenueCents += deltaCents;
+    }
+
+    public boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    Collection<Row> rows() {
+        return rows.values();
+    }
+
+    private long hourStart(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(zone).truncatedTo(ChronoUnit.HOURS).toInstant().toEpochMilli();
+    }
+
+    private Row row(long hourStart, ParkingType parkingType) {
+        return rows.computeIfAbsent(hourStart * TYPES.length + parkingType.ordinal(), key -> new Row(hourStart, parkingType));
+    }
+
+    static final class Row {
+        final long hourStart;
+        final ParkingType parkingType;
+        long exits;
+        long revenueCents;
+        long occupiedSeconds;
+
+        private Row(long hourStart, ParkingType parkingType) {
+            this.hourStart = hourStart;
+            this.parkingType = parkingType;
+        }
+    }
+}
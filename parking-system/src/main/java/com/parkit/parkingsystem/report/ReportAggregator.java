@@ -0,0 +1,288 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the report_hourly aggregates up to date with the ticket table, without ever reading the whole
+ * ticket history again.
+ *
+ * <p>Each catch-up reads the tickets above a high-water mark on the ticket id, counts the closed ones and
+ * remembers the still open ones in report_pending, together with ids missing below the mark because their
+ * insert was not committed yet. The next catch-up reads only those pending tickets and the new ones, so
+ * every closed ticket is counted exactly once, whichever gate or import closed it. The mark is a
+ * row of the ticket_journal checkpoint table, locked for the whole catch-up so that concurrent catch-ups
+ * and re-ratings run one after the other.
+ */
+public class ReportAggregator {
+
+    private static final Logger logger = LogManager.getLogger("ReportAggregator");
+
+    public static final String CHECKPOINT = "report.hourly";
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+    //how long an id below the mark may stay missing before it is taken for a rolled back insert
+    private static final long MISSING_GRACE = 60000;
+    //a wider gap in the ids is taken for rolled back or deleted tickets, not for inserts in flight
+    private static final int MAX_MISSING = 1000;
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    private final int batchSize;
+
+    public ReportAggregator() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    public ReportAggregator(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    //counts the tickets closed since the last catch-up and returns how many, or -1 on error
+    public int catchUp() {
+        int counted = 0;
+        boolean pendingDone = false;
+        while (true) {
+            Connection con = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                con.setAutoCommit(false);
+                CountedTickets countedTickets = lockCounted(con);
+                HourlyAggregates aggregates = new HourlyAggregates();
+                long now = System.currentTimeMillis();
+                int read = 0;
+                if (!pendingDone) {
+                    counted += countPending(con, aggregates, now);
+                    pendingDone = true;
+                }
+                long mark = countedTickets.mark;
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKETS_AFTER);
+                ps.setLong(1, mark);
+                ps.setInt(2, batchSize);
+                ResultSet rs = ps.executeQuery();
+                List<Integer> pending = new ArrayList<>();
+                while (rs.next()) {
+                    read++;
+                    int id = rs.getInt(1);
+                    if (id - mark <= MAX_MISSING) {
+                        for (long missing = mark + 1; missing < id; missing++) {
+                            pending.add((int) missing);
+                        }
+                    }
+                    mark = id;
+                    Timestamp outTime = rs.getTimestamp(5);
+                    if (outTime == null) {
+                        pending.add(id);
+                    } else {
+                        aggregates.addStay(ParkingType.valueOf(rs.getString(2)), rs.getTimestamp(4).getTime(),
+                                outTime.getTime(), Math.round(rs.getDouble(3) * 100));
+                        counted++;
+                    }
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+                savePending(con, pending, now);
+                apply(con, aggregates);
+                saveMark(con, mark);
+                con.commit();
+                if (read < batchSize) {
+                    return counted;
+                }
+            } catch (Exception ex) {
+                logger.error("Error catching up report aggregates, rolling back", ex);
+                rollback(con);
+                return -1;
+            } finally {
+                dataBaseConfig.closeConnection(con);
+            }
+        }
+    }
+
+    //catches up now and then every period, on a daemon thread
+    public ScheduledExecutorService schedule(long periodMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "report-aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::catchUp, 0, periodMillis, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    //locks the high-water mark until the caller's transaction ends and tells which tickets it covers
+    public CountedTickets lockCounted(Connection con) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_JOURNAL_CHECKPOINT_FOR_UPDATE);
+        ps.setString(1, CHECKPOINT);
+        ResultSet rs = ps.executeQuery();
+        boolean exists = rs.next();
+        long mark = exists ? rs.getLong(1) : 0;
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        if (!exists) {
+            ps = con.prepareStatement(DBConstants.SAVE_JOURNAL_CHECKPOINT);
+            ps.setString(1, CHECKPOINT);
+            ps.setLong(2, 0);
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+        Set<Integer> pending = new HashSet<>();
+        ps = con.prepareStatement(DBConstants.GET_REPORT_PENDING_IDS);
+        rs = ps.executeQuery();
+        while (rs.next()) {
+            pending.add(rs.getInt(1));
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return new CountedTickets(mark, pending);
+    }
+
+    //adds the changes to the aggregate rows, in the caller's transaction
+    public void apply(Connection con, HourlyAggregates aggregates) throws SQLException {
+        List<HourlyAggregates.Row> rows = new ArrayList<>();
+        for (HourlyAggregates.Row row : aggregates.rows()) {
+            //an update changing nothing would count as a missing row
+            if (row.exits != 0 || row.revenueCents != 0 || row.occupiedSeconds != 0) {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_REPORT_HOURLY);
+        for (HourlyAggregates.Row row : rows) {
+            ps.setLong(1, row.exits);
+            ps.setLong(2, row.revenueCents);
+            ps.setLong(3, row.occupiedSeconds);
+            ps.setTimestamp(4, new Timestamp(row.hourStart));
+            ps.setString(5, row.parkingType.toString());
+            ps.addBatch();
+        }
+        int[] updated = ps.executeBatch();
+        dataBaseConfig.closePreparedStatement(ps);
+        //hours seen for the first time
+        ps = null;
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 0) {
+                continue;
+            }
+            if (ps == null) {
+                ps = con.prepareStatement(DBConstants.SAVE_REPORT_HOURLY);
+            }
+            HourlyAggregates.Row row = rows.get(i);
+            ps.setTimestamp(1, new Timestamp(row.hourStart));
+            ps.setString(2, row.parkingType.toString());
+            ps.setLong(3, row.exits);
+            ps.setLong(4, row.revenueCents);
+            ps.setLong(5, row.occupiedSeconds);
+            ps.addBatch();
+        }
+        if (ps != null) {
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    //counts the pending tickets closed since, drops the missing ids past the grace period
+    private int countPending(Connection con, HourlyAggregates aggregates, long now) throws SQLException {
+        int counted = 0;
+        List<Integer> done = new ArrayList<>();
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_REPORT_PENDING);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            int id = rs.getInt(1);
+            Timestamp inTime = rs.getTimestamp(5);
+            Timestamp outTime = rs.getTimestamp(6);
+            if (inTime == null) {
+                if (now - rs.getTimestamp(2).getTime() > MISSING_GRACE) {
+                    done.add(id);
+                }
+            } else if (outTime != null) {
+                aggregates.addStay(ParkingType.valueOf(rs.getString(3)), inTime.getTime(), outTime.getTime(),
+                        Math.round(rs.getDouble(4) * 100));
+                done.add(id);
+                counted++;
+            }
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        if (!done.isEmpty()) {
+            ps = con.prepareStatement(DBConstants.DELETE_REPORT_PENDING);
+            for (int id : done) {
+                ps.setInt(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+        return counted;
+    }
+
+    private void savePending(Connection con, List<Integer> pending, long now) throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_REPORT_PENDING);
+        for (int id : pending) {
+            ps.setInt(1, id);
+            ps.setTimestamp(2, new Timestamp(now));
+            ps.addBatch();
+        }
+        ps.executeBatch();
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    private void saveMark(Connection con, long mark) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_JOURNAL_CHECKPOINT);
+        ps.setLong(1, mark);
+        ps.setString(2, CHECKPOINT);
+        ps.executeUpdate();
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    private void rollback(Connection con) {
+        if (con == null) {
+            return;
+        }
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            logger.error("Error rolling back report catch-up", e);
+        }
+    }
+
+    /**
+     * The tickets already in the aggregates: every id up to the mark that is not pending.
+     */
+    public static final class CountedTickets {
+        private final long mark;
+        private final Set<Integer> pending;
+
+        private CountedTickets(long mark, Set<Integer> pending) {
+            this.mark = mark;
+            this.pending = pending;
+        }
+
+        public long getMark() {
+            return mark;
+        }
+
+        public boolean isCounted(int id) {
+            return id <= mark && !pending.contains(id);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Revenue and occupancy of one {@link ParkingType} over an hour or a day.
+ */
+public class ReportRow {
+
+    private final LocalDateTime start;
+    private final ParkingType parkingType;
+    private final long hours;
+    private final int spots;
+    private long exits;
+    private long revenueCents;
+    private long occupiedSeconds;
+
+    ReportRow(LocalDateTime start, ParkingType parkingType, long hours, int spots) {
+        this.start = start;
+        this.parkingType = parkingType;
+        this.hours = hours;
+        this.spots = spots;
+    }
+
+    void add(long exits, long revenueCents, long occupiedSeconds) {
+        this.exits += exits;
+        this.revenueCents += revenueCents;
+        this.occupiedSeconds += occupiedSeconds;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public long getExits() {
+        return exits;
+    }
+
+    public long getRevenueCents() {
+        return revenueCents;
+    }
+
+    public double getRevenue() {
+        return revenueCents / 100.0;
+    }
+
+    long getHours() {
+        return hours;
+    }
+
+    public int getSpots() {
+        return spots;
+    }
+
+    public long getOccupiedSeconds() {
+        return occupiedSeconds;
+    }
+
+    //share of the type's spot time taken by closed stays, from 0 to 1
+    public double getOccupancy() {
+        return spots == 0 ? 0 : occupiedSeconds / (spots * hours * 3600.0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s,%s,%d,%.2f,%.1f%%", start, parkingType, exits, getRevenue(), getOccupancy() * 100);
+    }
+}
@@ -0,0 +1,158 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.config.DataAccess;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hourly and daily revenue and occupancy per {@link ParkingType}, read from the report_hourly aggregates
+ * that {@link ReportAggregator} maintains, never from the ticket table.
+ */
+public class RevenueReportService {
+
+    private static final Logger logger = LogManager.getLogger("RevenueReportService");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    private final ZoneId zone;
+
+    public RevenueReportService() {
+        this(ZoneId.systemDefault());
+    }
+
+    public RevenueReportService(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    //"report hourly|daily <from> [to]" from App: catches up, then prints one CSV line per period and type
+    public static void main(String[] args) {
+        if (args.length < 2 || !("hourly".equals(args[0]) || "daily".equals(args[0]))) {
+            System.out.println("Usage: report hourly|daily <from> [to], dates as 2024-05-02");
+            return;
+        }
+        try {
+            new ReportAggregator().catchUp();
+            LocalDate from = LocalDate.parse(args[1]);
+            LocalDate to = args.length > 2 ? LocalDate.parse(args[2]) : from.plusDays(1);
+            RevenueReportService reportService = new RevenueReportService();
+            List<ReportRow> rows = "hourly".equals(args[0]) ? reportService.hourly(from, to) : reportService.daily(from, to);
+            if (rows == null) {
+                System.out.println("Report could not be read, see the log");
+                return;
+            }
+            System.out.println("start,type,exits,revenue,occupancy");
+            for (ReportRow row : rows) {
+                System.out.println(row);
+            }
+        } finally {
+            DataBaseConfig.shutdownPools();
+        }
+    }
+
+    //the hours of the days from (included) to (excluded) that had stays, null on error
+    public List<ReportRow> hourly(LocalDate from, LocalDate to) {
+        Map<ParkingType, Integer> spots = new EnumMap<>(ParkingType.class);
+        List<ReportRow> rows = new ArrayList<>();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection(DataAccess.STALE_READ);
+            loadSpotCounts(con, spots);
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_REPORT_HOURLY);
+            ps.setTimestamp(1, new Timestamp(from.atStartOfDay(zone).toInstant().toEpochMilli()));
+            ps.setTimestamp(2, new Timestamp(to.atStartOfDay(zone).toInstant().toEpochMilli()));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                ParkingType parkingType = ParkingType.valueOf(rs.getString(2));
+                ReportRow row = new ReportRow(rs.getTimestamp(1).toLocalDateTime(), parkingType, 1,
+                        spots.getOrDefault(parkingType, 0));
+                row.add(rs.getLong(3), rs.getLong(4), rs.getLong(5));
+                rows.add(row);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            return rows;
+        } catch (Exception ex) {
+            logger.error("Error reading hourly report", ex);
+            return null;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    //the days from (included) to (excluded) that had stays, summed from their hours, null on error
+    public List<ReportRow> daily(LocalDate from, LocalDate to) {
+        List<ReportRow> hours = hourly(from, to);
+        if (hours == null) {
+            return null;
+        }
+        Map<LocalDate, Map<ParkingType, ReportRow>> days = new LinkedHashMap<>();
+        for (ReportRow hour : hours) {
+            LocalDate day = hour.getStart().toLocalDate();
+            days.computeIfAbsent(day, key -> new EnumMap<>(ParkingType.class))
+                    .computeIfAbsent(hour.getParkingType(), key -> new ReportRow(day.atStartOfDay(), key, hoursIn(day), hour.getSpots()))
+                    .add(hour.getExits(), hour.getRevenueCents(), hour.getOccupiedSeconds());
+        }
+        List<ReportRow> rows = new ArrayList<>();
+        for (Map<ParkingType, ReportRow> day : days.values()) {
+            rows.addAll(day.values());
+        }
+        return rows;
+    }
+
+    //the rows of several facilities added up per period and type, occupancy over all their spots
+    public static List<ReportRow> combine(Collection<List<ReportRow>> facilities) {
+        Map<LocalDateTime, Map<ParkingType, ReportRow>> periods = new TreeMap<>();
+        for (List<ReportRow> rows : facilities) {
+            for (ReportRow row : rows) {
+                Map<ParkingType, ReportRow> types = periods.computeIfAbsent(row.getStart(), key -> new EnumMap<>(ParkingType.class));
+                ReportRow total = types.get(row.getParkingType());
+                int spots = row.getSpots() + (total == null ? 0 : total.getSpots());
+                ReportRow combined = new ReportRow(row.getStart(), row.getParkingType(), row.getHours(), spots);
+                combined.add(row.getExits(), row.getRevenueCents(), row.getOccupiedSeconds());
+                if (total != null) {
+                    combined.add(total.getExits(), total.getRevenueCents(), total.getOccupiedSeconds());
+                }
+                types.put(row.getParkingType(), combined);
+            }
+        }
+        List<ReportRow> combined = new ArrayList<>();
+        for (Map<ParkingType, ReportRow> types : periods.values()) {
+            combined.addAll(types.values());
+        }
+        return combined;
+    }
+
+    //23 or 25 on the days clocks change
+    private long hoursIn(LocalDate day) {
+        return Duration.between(day.atStartOfDay(zone), day.plusDays(1).atStartOfDay(zone)).toHours();
+    }
+
+    private void loadSpotCounts(Connection con, Map<ParkingType, Integer> spots) throws Exception {
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_SPOT_COUNTS);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            spots.put(ParkingType.valueOf(rs.getString(1)), rs.getInt(2));
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+}
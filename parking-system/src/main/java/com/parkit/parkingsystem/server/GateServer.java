@@ -0,0 +1,374 @@
+package com.parkit.parkingsystem.server;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.FacilityRouter;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.facility.Facilities;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.tariff.TariffEngine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP front of {@link ParkingService} for gate terminals and plate cameras, on the JDK's built-in server.
+ *
+ * <pre>
+ * POST /entries?plate=AB123CD&amp;type=CAR   vehicle entry
+ * POST /exits?plate=AB123CD               vehicle exit, closes the ticket
+ * GET  /fares?plate=AB123CD               fare if the vehicle left now
+ * GET  /occupancy                         free spots per vehicle type
+ * </pre>
+ *
+ * A server for several facilities picks the facility of a request from its {@code facility} parameter,
+ * the default facility when there is none.
+ * Requests are admitted on the dispatcher thread, then run on their own virtual thread when the JVM has
+ * them, else on a thread of their facility's pool, so a slow facility cannot hold the workers of the
+ * others. At most {@code maxInFlight} requests per facility are admitted at once;
+ * the others get 503 straight away instead of queuing, so an overloaded server sheds load rather than
+ * timing every gate out.
+ */
+public class GateServer {
+
+    private static final Logger logger = LogManager.getLogger("GateServer");
+
+    private static final int BACKLOG = 256;
+    private static final int FALLBACK_THREADS = 64;
+    //gates send every parameter in the query string
+    private static final int MAX_BODY = 4096;
+    private static final long TARIFF_CHECK_PERIOD = 5000;
+    private static final long REPORT_CATCH_UP_PERIOD = 10000;
+    private static final long OCCUPANCY_RECONCILE_PERIOD = 30000;
+    private static final long SESSION_RELOAD_PERIOD = 60000;
+    private static final long ARCHIVE_PERIOD = 3600000;
+
+    static {
+        //headers and body go out as two writes; without this, Nagle holds the body back for the client's delayed ACK (~40ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Facilities facilities;
+    private final Map<String, Semaphore> admissions = new HashMap<>();
+    private final Map<String, ExecutorService> executors = new HashMap<>();
+    private final LongAdder shedRequests = new LongAdder();
+    private final HttpServer server;
+
+    public GateServer(InetSocketAddress address, ParkingService parkingService, int maxInFlight) throws IOException {
+        this(address, Facilities.single(parkingService), maxInFlight);
+    }
+
+    //a facility that is overloaded sheds its own requests only
+    public GateServer(InetSocketAddress address, Facilities facilities, int maxInFlight) throws IOException {
+        this.facilities = facilities;
+        for (String facility : facilities.getFacilities()) {
+            admissions.put(facility, new Semaphore(maxInFlight));
+            executors.put(facility, newRequestExecutor(facility, maxInFlight));
+        }
+        //no executor: handlers run on the dispatcher thread, which admits or sheds before handing off
+        this.server = HttpServer.create(address, BACKLOG);
+        server.createContext("/entries", admitted("POST", gate(GateServer::entry)));
+        server.createContext("/exits", admitted("POST", gate(GateServer::exit)));
+        server.createContext("/fares", admitted("GET", gate(GateServer::fare)));
+        server.createContext("/occupancy", admitted("GET", GateServer::occupancy));
+    }
+
+    //serves the production database, or the facilities of the file given fourth, until the process is stopped
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int maxInFlight = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        if (args.length > 2) {
+            //edits to the tariff file take effect within seconds, without a restart
+            TariffEngine.getInstance().watch(Paths.get(args[2]), TARIFF_CHECK_PERIOD);
+        }
+        Facilities facilities = Facilities.open(args.length > 3 ? FacilityRouter.load(Paths.get(args[3]))
+                : FacilityRouter.single(new DataBaseConfig()));
+        //closed tickets reach the revenue reports within seconds and the archive once old enough
+        facilities.watch(OCCUPANCY_RECONCILE_PERIOD, SESSION_RELOAD_PERIOD, REPORT_CATCH_UP_PERIOD, ARCHIVE_PERIOD);
+        GateServer gateServer = new GateServer(new InetSocketAddress(port), facilities, maxInFlight);
+        Runtime.getRuntime().addShutdownHook(new Thread(gateServer::stop));
+        gateServer.start();
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Gate server listening on port " + getPort());
+    }
+
+    public void stop() {
+        server.stop(1);
+        for (ExecutorService executor : executors.values()) {
+            executor.shutdown();
+        }
+        facilities.close();
+        try {
+            for (ExecutorService executor : executors.values()) {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Gate server stopped");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    //requests turned away with 503 because maxInFlight were already being served
+    public long getShedRequests() {
+        return shedRequests.sum();
+    }
+
+    //virtual threads are looked up reflectively so the code still builds and runs on Java 8. A pool never
+    //needs more threads than the requests its facility admits at once.
+    static ExecutorService newRequestExecutor(String facility, int maxInFlight) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            logger.info("Serving " + facility + " requests on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(1, Math.min(FALLBACK_THREADS, maxInFlight));
+            logger.info("Virtual threads not available, serving " + facility + " requests on " + threads + " platform threads");
+            return Executors.newFixedThreadPool(threads, runnable -> new Thread(runnable, "gate-" + facility));
+        }
+    }
+
+    private static GateResult entry(ParkingService parkingService, Map<String, String> params) {
+        ParkingType parkingType;
+        try {
+            parkingType = ParkingType.valueOf(String.valueOf(params.get("type")).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return GateResult.rejected(GateResult.Rejection.INVALID_VEHICLE);
+        }
+        return parkingService.enterVehicle(params.get("plate"), parkingType);
+    }
+
+    private static GateResult exit(ParkingService parkingService, Map<String, String> params) {
+        return parkingService.exitVehicle(params.get("plate"));
+    }
+
+    private static GateResult fare(ParkingService parkingService, Map<String, String> params) {
+        return parkingService.quoteFare(params.get("plate"));
+    }
+
+    private static Response occupancy(ParkingService parkingService, Map<String, String> params) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<ParkingType, Integer> freeSpots : parkingService.getFreeSpots().entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(freeSpots.getKey()).append("\":{\"free\":").append(freeSpots.getValue()).append('}');
+        }
+        return new Response(200, json.append('}').toString());
+    }
+
+    private static Endpoint gate(GateAction action) {
+        return (parkingService, params) -> toResponse(action.apply(parkingService, params));
+    }
+
+    //runs on the dispatcher thread: a request is only queued for a worker once it holds a permit,
+    //so the work waiting for workers never exceeds maxInFlight
+    private HttpHandler admitted(String method, Endpoint endpoint) {
+        return exchange -> {
+            boolean handedOff = false;
+            try {
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                String facility = params.getOrDefault("facility", facilities.getDefaultFacility());
+                ParkingService parkingService = facilities.getParkingService(facility);
+                if (parkingService == null) {
+                    send(exchange, new Response(404, "{\"error\":\"unknown facility\"}"));
+                    return;
+                }
+                if (!method.equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    send(exchange, new Response(405, "{\"error\":\"method not allowed\"}"));
+                    return;
+                }
+                Semaphore admission = admissions.get(facility);
+                if (!admission.tryAcquire()) {
+                    shed(exchange);
+                    return;
+                }
+                try {
+                    executors.get(facility).execute(() -> serve(exchange, admission, endpoint, parkingService, params));
+                    handedOff = true;
+                } catch (RejectedExecutionException e) {
+                    //stopping
+                    admission.release();
+                    shed(exchange);
+                }
+            } catch (Exception e) {
+                fail(exchange, e);
+            } finally {
+                if (!handedOff) {
+                    exchange.close();
+                }
+            }
+        };
+    }
+
+    private static void serve(HttpExchange exchange, Semaphore admission, Endpoint endpoint, ParkingService parkingService,
+                              Map<String, String> params) {
+        try {
+            if (!drain(exchange)) {
+                send(exchange, new Response(413, "{\"error\":\"body too large\"}"));
+            } else {
+                send(exchange, endpoint.handle(parkingService, params));
+            }
+        } catch (Exception e) {
+            fail(exchange, e);
+        } finally {
+            admission.release();
+            exchange.close();
+        }
+    }
+
+    private void shed(HttpExchange exchange) throws IOException {
+        shedRequests.increment();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        send(exchange, new Response(503, "{\"error\":\"overloaded\"}"));
+    }
+
+    private static void fail(HttpExchange exchange, Exception e) {
+        logger.error("Error serving " + exchange.getRequestURI(), e);
+        //only possible while the response headers are not sent yet
+        if (exchange.getResponseCode() < 0) {
+            try {
+                send(exchange, new Response(500, "{\"error\":\"internal\"}"));
+            } catch (IOException ignored) {
+                //the client is gone
+            }
+        }
+    }
+
+    private static Response toResponse(GateResult result) {
+        if (!result.isAccepted()) {
+            return new Response(statusOf(result.getRejection()),
+                    "{\"accepted\":false,\"rejection\":\"" + result.getRejection() + "\"}");
+        }
+        Ticket ticket = result.getTicket();
+        StringBuilder json = new StringBuilder("{\"accepted\":true")
+                .append(",\"ticketId\":").append(ticket.getId())
+                .append(",\"vehicleRegNumber\":\"").append(escape(ticket.getVehicleRegNumber())).append('"')
+                .append(",\"parkingType\":\"").append(ticket.getParkingSpot().getParkingType()).append('"')
+                .append(",\"parkingNumber\":").append(ticket.getParkingSpot().getId())
+                .append(",\"level\":").append(ticket.getParkingSpot().getLevel())
+                .append(",\"zone\":\"").append(escape(ticket.getParkingSpot().getZone())).append('"')
+                .append(",\"recurent\":").append(ticket.getRecurent())
+                .append(",\"inTime\":").append(ticket.getInTime().getTime());
+        if (ticket.getOutTime() != null) {
+            json.append(",\"outTime\":").append(ticket.getOutTime().getTime())
+                    .append(",\"fare\":").append(result.getFare());
+        }
+        return new Response(200, json.append('}').toString());
+    }
+
+    private static int statusOf(GateResult.Rejection rejection) {
+        switch (rejection) {
+            case INVALID_VEHICLE: return 400;
+            case NOT_PARKED: return 404;
+            case ALREADY_PARKED:
+            case PARKING_FULL: return 409;
+            default: return 500;
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    //the connection can only be kept alive once the request body was read to the end; false when
+    //the body is larger than any gate sends, which is not read further
+    private static boolean drain(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && Long.parseLong(length.trim()) > MAX_BODY) {
+            return false;
+        }
+        InputStream in = exchange.getRequestBody();
+        byte[] buffer = new byte[1024];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            //discard, every parameter comes in the query string
+            total += read;
+            if (total > MAX_BODY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private interface GateAction {
+        GateResult apply(ParkingService parkingService, Map<String, String> params);
+    }
+
+    private interface Endpoint {
+        Response handle(ParkingService parkingService, Map<String, String> params) throws IOException;
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.util.InputReaderUtil;
@@ -17,8 +18,12 @@ public class InteractiveShell {
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
         ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.loadFreeSpotIndex();
         TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingSessionDAO parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.loadActiveSessions();
+        parkingSessionDAO.loadLoyalVehicles();
+        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, parkingSessionDAO);
 
         while(continueApp){
             loadMenu();
@@ -0,0 +1,66 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Spots and free spots per {@link ParkingType}, for display boards that poll several times a second.
+ * Gates move the counters with an atomic add on every claim and release; reads are plain volatile reads
+ * and never reach the storage. The counters are set from the storage when loaded and on every
+ * reconciliation, which also takes in the claims and releases of gates running in other processes.
+ */
+public class OccupancyCounters {
+
+    private static final ParkingType[] TYPES = ParkingType.values();
+
+    private final AtomicIntegerArray capacity = new AtomicIntegerArray(TYPES.length);
+    private final AtomicIntegerArray free = new AtomicIntegerArray(TYPES.length);
+    private volatile boolean loaded;
+
+    public void claimed(ParkingType parkingType) {
+        free.decrementAndGet(parkingType.ordinal());
+    }
+
+    public void released(ParkingType parkingType) {
+        free.incrementAndGet(parkingType.ordinal());
+    }
+
+    //the storage's own counts; a claim or release racing with it may be off by one until the next reconciliation
+    public void set(ParkingType parkingType, int spots, int freeSpots) {
+        capacity.set(parkingType.ordinal(), spots);
+        free.set(parkingType.ordinal(), freeSpots);
+    }
+
+    //marks the counters as set for every type
+    public void setLoaded() {
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int getCapacity(ParkingType parkingType) {
+        return capacity.get(parkingType.ordinal());
+    }
+
+    //never below 0 or above the capacity, even while out of step with the storage
+    public int getFree(ParkingType parkingType) {
+        return Math.max(0, Math.min(getCapacity(parkingType), free.get(parkingType.ordinal())));
+    }
+
+    public int getOccupied(ParkingType parkingType) {
+        return getCapacity(parkingType) - getFree(parkingType);
+    }
+
+    public Map<ParkingType, Integer> getFreeSpots() {
+        Map<ParkingType, Integer> freeSpots = new EnumMap<>(ParkingType.class);
+        for (ParkingType parkingType : TYPES) {
+            freeSpots.put(parkingType, getFree(parkingType));
+        }
+        return freeSpots;
+    }
+}
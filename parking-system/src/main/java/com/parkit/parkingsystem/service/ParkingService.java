@@ -1,98 +1,202 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.GateResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.storage.ParkingSessionRepository;
+import com.parkit.parkingsystem.storage.ParkingSpotRepository;
+import com.parkit.parkingsystem.storage.ParkingStorage;
+import com.parkit.parkingsystem.storage.TicketRepository;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Gate operations. {@link #enterVehicle} and {@link #exitVehicle} take the vehicle as arguments and can be
+ * called from many threads at once; the process methods read the vehicle from the console and print the outcome.
+ * Storage goes through the {@link ParkingStorage} repositories, so the same service runs on the database or in memory.
+ */
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
+    //VEHICLE_REG_NUMBER is a varchar(10)
+    private static final int MAX_PLATE_LENGTH = 10;
+
     private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
     private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private  TicketDAO ticketDAO;
+    private ParkingSpotRepository parkingSpotDAO;
+    private TicketRepository ticketDAO;
+    private ParkingSessionRepository parkingSessionDAO;
+    private final OccupancyCounters occupancy = new OccupancyCounters();
 
     public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, sessionsOf(parkingSpotDAO, ticketDAO));
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, ParkingSessionRepository parkingSessionDAO){
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
+        this.parkingSessionDAO = parkingSessionDAO;
     }
 
-    public void processIncomingVehicle() {
-    	  try{
-              ParkingSpot parkingSpot = getNextParkingNumberIfAvailable(); 
-              if(parkingSpot !=null && parkingSpot.getId() > 0){          
-                  String vehicleRegNumber = getVehichleRegNumber();        
-                  boolean recurrent = ticketDAO.recurrentUsers(vehicleRegNumber); 
-                 boolean  ParkingYet = ticketDAO.alreadyAtParking(vehicleRegNumber); 
-                 if(ParkingYet==true)
-                 {
-              	   
-              	   throw new IllegalArgumentException("Error : This Vehicle Number is in the parking yet");
-           	   
-                 }
-                
-                  parkingSpot.setAvailable(false);                         
-                  parkingSpotDAO.updateParking(parkingSpot);             
-
-                  Date inTime = new Date();
-                  Ticket ticket = new Ticket();
-                  //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-                  //ticket.setId(ticketID);
-                  ticket.setParkingSpot(parkingSpot); 
-                  ticket.setVehicleRegNumber(vehicleRegNumber);
-                  ticket.setPrice(0);
-                  ticket.setInTime(inTime);
-                  ticket.setOutTime(null);
-                  ticketDAO.saveTicket(ticket);
-                  
-                 
-                  if(recurrent == true)
-                  {
-                  	System.out.println("Welcome  back,you will benefit of 5% discount!!!!");
-                  }
-                  
-                  System.out.println("Generated Ticket and saved in DB");
-                  System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
-                  System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+ inTime);
-                 }
-              
-          }catch(Exception e){
-              logger.error("Unable to process incoming vehicle",e);
-         }
-   
-      }
-    private String getVehichleRegNumber() {
-        System.out.println("Please type the vehicle registration number and press enter key");
-        return inputReaderUtil.readVehicleRegistrationNumber();
+    //for callers that pass vehicles in directly, without a console
+    public ParkingService(ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, ParkingSessionRepository parkingSessionDAO){
+        this(null, parkingSpotDAO, ticketDAO, parkingSessionDAO);
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingStorage parkingStorage){
+        this(inputReaderUtil, parkingStorage.getParkingSpotRepository(), parkingStorage.getTicketRepository(),
+                parkingStorage.getParkingSessionRepository());
+    }
+
+    public ParkingService(ParkingStorage parkingStorage){
+        this(null, parkingStorage);
+    }
+
+    private static ParkingSessionDAO sessionsOf(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+        ParkingSessionDAO parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = ticketDAO.dataBaseConfig;
+        return parkingSessionDAO;
+    }
+
+    //registers a vehicle at the gate: presence check, loyalty check, spot claim and ticket insert all commit or roll back together.
+    //Keeps no state between calls, so any number of gates can share one service.
+    public GateResult enterVehicle(String vehicleRegNumber, ParkingType parkingType) {
+        if (!isValidPlate(vehicleRegNumber) || parkingType == null) {
+            return GateResult.rejected(GateResult.Rejection.INVALID_VEHICLE);
+        }
+        Ticket ticket = new Ticket();
+        //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+        ticket.setParkingSpot(new ParkingSpot(0, parkingType, true));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(0);
+        ticket.setInTime(new Date());
+        ticket.setOutTime(null);
+        if (parkingSessionDAO.enterVehicle(ticket) > 0) {
+            occupancy.claimed(parkingType);
+            return GateResult.accepted(ticket);
+        }
+        if (ticket.getAtParking()) {
+            return GateResult.rejected(GateResult.Rejection.ALREADY_PARKED);
+        }
+        if (ticket.getParkingSpot().getId() <= 0) {
+            return GateResult.rejected(GateResult.Rejection.PARKING_FULL);
+        }
+        return GateResult.rejected(GateResult.Rejection.ERROR);
+    }
+
+    //loads the ticket with its loyalty status, prices it, closes it and frees the spot in one transaction
+    public GateResult exitVehicle(String vehicleRegNumber) {
+        if (!isValidPlate(vehicleRegNumber)) {
+            return GateResult.rejected(GateResult.Rejection.INVALID_VEHICLE);
+        }
+        Ticket ticket = parkingSessionDAO.exitVehicle(vehicleRegNumber, new Date(), fareCalculatorService);
+        if (ticket != null) {
+            occupancy.released(ticket.getParkingSpot().getParkingType());
+            return GateResult.accepted(ticket);
+        }
+        return GateResult.rejected(parkingSessionDAO.isAtParking(vehicleRegNumber) ? GateResult.Rejection.ERROR
+                : GateResult.Rejection.NOT_PARKED);
+    }
+
+    //what the vehicle would pay if it left now, without closing its ticket
+    public GateResult quoteFare(String vehicleRegNumber) {
+        if (!isValidPlate(vehicleRegNumber)) {
+            return GateResult.rejected(GateResult.Rejection.INVALID_VEHICLE);
+        }
+        Ticket ticket = parkingSessionDAO.getOpenTicket(vehicleRegNumber);
+        if (ticket == null) {
+            return GateResult.rejected(GateResult.Rejection.NOT_PARKED);
+        }
+        ticket.setOutTime(new Date());
+        fareCalculatorService.calculateFare(ticket);
+        return GateResult.accepted(ticket);
     }
 
-    public ParkingSpot getNextParkingNumberIfAvailable(){
-        int parkingNumber=0;
-        ParkingSpot parkingSpot = null;
+    //free spots per vehicle type from the occupancy counters, -1 for every type while they cannot be loaded
+    public Map<ParkingType, Integer> getFreeSpots() {
+        if (!occupancy.isLoaded() && !reconcileOccupancy()) {
+            Map<ParkingType, Integer> unknown = new EnumMap<>(ParkingType.class);
+            for (ParkingType parkingType : ParkingType.values()) {
+                unknown.put(parkingType, -1);
+            }
+            return unknown;
+        }
+        return occupancy.getFreeSpots();
+    }
+
+    //counters moved by this service's gates; load them with reconcileOccupancy or watchOccupancy first
+    public OccupancyCounters getOccupancy() {
+        return occupancy;
+    }
+
+    //sets the counters to the storage's counts, false when they cannot be counted
+    public boolean reconcileOccupancy() {
+        return parkingSpotDAO.loadOccupancy(occupancy);
+    }
+
+    //loads the counters now and again every period, to take in gates of other processes and any drift
+    public ScheduledExecutorService watchOccupancy(long periodMillis) {
+        reconcileOccupancy();
+        ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occupancy-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcileOccupancy, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return reconciler;
+    }
+
+    public void processIncomingVehicle() {
         try{
             ParkingType parkingType = getVehichleType();
-            parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
-            if(parkingNumber > 0){
-                parkingSpot = new ParkingSpot(parkingNumber,parkingType, true);
-            }else{
-                throw new Exception("Error fetching parking number from DB. Parking slots might be full");
+            String vehicleRegNumber = getVehichleRegNumber();
+            GateResult result = enterVehicle(vehicleRegNumber, parkingType);
+            if(result.isAccepted()){
+                Ticket ticket = result.getTicket();
+                if(ticket.getRecurent())
+                {
+                    System.out.println("Welcome  back,you will benefit of 5% discount!!!!");
+                }
+                System.out.println("Generated Ticket and saved in DB");
+                System.out.println("Please park your vehicle in spot number:"+result.getParkingSpot().getId());
+                System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+ ticket.getInTime());
+                return;
+            }
+            switch(result.getRejection()){
+                case ALREADY_PARKED: {
+                    throw new IllegalArgumentException("Error : This Vehicle Number is in the parking yet");
+                }
+                case PARKING_FULL: {
+                    logger.error("Error fetching parking number from DB. Parking slots might be full");
+                    break;
+                }
+                default: {
+                    System.out.println("Unable to save ticket information. Error occurred");
+                }
             }
-        }catch(IllegalArgumentException ie){
-            logger.error("Error parsing user input for type of vehicle", ie);
         }catch(Exception e){
-            logger.error("Error fetching next available parking slot", e);
+            logger.error("Unable to process incoming vehicle",e);
         }
-        return parkingSpot;
+    }
+
+    private String getVehichleRegNumber() {
+        System.out.println("Please type the vehicle registration number and press enter key");
+        return inputReaderUtil.readVehicleRegistrationNumber();
     }
 
     private ParkingType getVehichleType(){
@@ -115,27 +219,21 @@ public class ParkingService {
     }
 
     public void processExitingVehicle() {
-    	   try{
-               String vehicleRegNumber = getVehichleRegNumber();
-               Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-               Date outTime = new Date();
-               ticket.setOutTime(outTime);
-              
-               boolean recurrent =  ticketDAO.recurrentUsers(vehicleRegNumber); 
-              if(recurrent==true){
-               fareCalculatorService.calculateFare(ticket);}
-              fareCalculatorService.calculateFare(ticket);
-               if(ticketDAO.updateTicket(ticket)) {
-                   ParkingSpot parkingSpot = ticket.getParkingSpot();
-                   parkingSpot.setAvailable(true);
-                   parkingSpotDAO.updateParking(parkingSpot);
-                   System.out.println("Please pay the parking fare:" + ticket.getPrice());
-                   System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
-               }else{
-                   System.out.println("Unable to update ticket information. Error occurred");
-               }
-           }catch(Exception e){
-               logger.error("Unable to process exiting vehicle",e);
-           }
-       }
+        try{
+            String vehicleRegNumber = getVehichleRegNumber();
+            GateResult result = exitVehicle(vehicleRegNumber);
+            if(result.isAccepted()) {
+                System.out.println("Please pay the parking fare:" + result.getFare());
+                System.out.println("Recorded out-time for vehicle number:" + vehicleRegNumber + " is:" + result.getTicket().getOutTime());
+            }else{
+                System.out.println("Unable to update ticket information. Error occurred");
+            }
+        }catch(Exception e){
+            logger.error("Unable to process exiting vehicle",e);
+        }
+    }
+
+    private static boolean isValidPlate(String vehicleRegNumber) {
+        return vehicleRegNumber != null && !vehicleRegNumber.trim().isEmpty() && vehicleRegNumber.length() <= MAX_PLATE_LENGTH;
+    }
 }
@@ -0,0 +1,90 @@
+package com.parkit.parkingsystem.storage;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Date;
+
+/**
+ * Entries and exits over the in-memory spots and tickets. A plate is reserved before its spot is
+ * claimed and a ticket is closed by compare-and-set before its spot is freed, so concurrent gates
+ * can neither park a vehicle twice nor hand one spot to two vehicles.
+ */
+public class InMemoryParkingSessionRepository implements ParkingSessionRepository {
+
+    private static final Logger logger = LogManager.getLogger("InMemoryParkingSessionRepository");
+
+    private final InMemoryParkingSpotRepository parkingSpots;
+    private final InMemoryTicketRepository tickets;
+
+    public InMemoryParkingSessionRepository(InMemoryParkingSpotRepository parkingSpots, InMemoryTicketRepository tickets) {
+        this.parkingSpots = parkingSpots;
+        this.tickets = tickets;
+    }
+
+    @Override
+    public int enterVehicle(Ticket ticket) {
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        if (!tickets.reserve(vehicleRegNumber)) {
+            ticket.setAtParking(true);
+            return -1;
+        }
+        boolean opened = false;
+        try {
+            ticket.setAtParking(false);
+            ticket.setRecurent(tickets.isLoyal(vehicleRegNumber));
+            int parkingNumber = parkingSpots.claimNextAvailableSlot(parkingSpot.getParkingType());
+            if (parkingNumber < 0) {
+                return -1;
+            }
+            int ticketId = tickets.open(vehicleRegNumber, parkingNumber, parkingSpot.getParkingType(),
+                    ticket.getInTime().getTime(), ticket.getRecurent());
+            parkingSpot.setId(parkingNumber);
+            parkingSpot.setAvailable(false);
+            ticket.setId(ticketId);
+            opened = true;
+            return ticketId;
+        } finally {
+            if (!opened) {
+                tickets.cancel(vehicleRegNumber);
+            }
+        }
+    }
+
+    @Override
+    public Ticket exitVehicle(String vehicleRegNumber, Date outTime, FareCalculatorService fareCalculatorService) {
+        InMemoryTicketRepository.TicketRecord open = tickets.getOpen(vehicleRegNumber);
+        if (open == null) {
+            return null;
+        }
+        Ticket ticket = open.toTicket();
+        ticket.setOutTime(outTime);
+        try {
+            fareCalculatorService.calculateFare(ticket);
+        } catch (IllegalArgumentException ex) {
+            logger.error("Error processing vehicle exit", ex);
+            return null;
+        }
+        if (!tickets.close(open, ticket.getPrice(), outTime.getTime())) {
+            return null;
+        }
+        parkingSpots.releaseClaimedSlot(open.getParkingType(), open.getParkingNumber());
+        ticket.getParkingSpot().setAvailable(true);
+        return ticket;
+    }
+
+    @Override
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        InMemoryTicketRepository.TicketRecord open = tickets.getOpen(vehicleRegNumber);
+        return open == null ? null : open.toTicket();
+    }
+
+    @Override
+    public boolean isAtParking(String vehicleRegNumber) {
+        return tickets.isOpen(vehicleRegNumber);
+    }
+}
@@ -0,0 +1,144 @@
+package com.parkit.parkingsystem.storage;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.OccupancyCounters;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Spots indexed by their number, with one bitmap of free spots per {@link ParkingType}. Claims and
+ * releases are compare-and-set on a bitmap word, so gates never block each other.
+ */
+public class InMemoryParkingSpotRepository implements ParkingSpotRepository {
+
+    private static final ParkingType[] TYPES = ParkingType.values();
+
+    private final int capacity;
+    //parking type ordinal + 1 per spot number, 0 for numbers without a spot
+    private final AtomicIntegerArray types;
+    private final AtomicLongArray[] freeSpots = new AtomicLongArray[TYPES.length];
+
+    //spot numbers range from 1 to capacity
+    public InMemoryParkingSpotRepository(int capacity) {
+        this.capacity = capacity;
+        this.types = new AtomicIntegerArray(capacity + 1);
+        for (int i = 0; i < TYPES.length; i++) {
+            freeSpots[i] = new AtomicLongArray((capacity >> 6) + 1);
+        }
+    }
+
+    public void addParkingSpot(int parkingNumber, ParkingType parkingType, boolean available) {
+        if (parkingNumber < 1 || parkingNumber > capacity) {
+            throw new IllegalArgumentException("Parking number " + parkingNumber + " out of 1.." + capacity);
+        }
+        if (!types.compareAndSet(parkingNumber, 0, parkingType.ordinal() + 1)) {
+            throw new IllegalArgumentException("Parking number " + parkingNumber + " already exists");
+        }
+        if (available) {
+            setFree(freeSpots[parkingType.ordinal()], parkingNumber);
+        }
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        AtomicLongArray bitmap = freeSpots[parkingType.ordinal()];
+        for (int word = 0; word < bitmap.length(); word++) {
+            long bits = bitmap.get(word);
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    //takes the lowest free spot of the type, -1 when none
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        AtomicLongArray bitmap = freeSpots[parkingType.ordinal()];
+        for (int word = 0; word < bitmap.length(); word++) {
+            long bits = bitmap.get(word);
+            while (bits != 0) {
+                long lowest = Long.lowestOneBit(bits);
+                if (bitmap.compareAndSet(word, bits, bits & ~lowest)) {
+                    return (word << 6) + Long.numberOfTrailingZeros(lowest);
+                }
+                //another gate changed the word, retry on its new value
+                bits = bitmap.get(word);
+            }
+        }
+        return -1;
+    }
+
+    public void releaseClaimedSlot(ParkingType parkingType, int parkingNumber) {
+        if (typeOf(parkingNumber) == parkingType) {
+            setFree(freeSpots[parkingType.ordinal()], parkingNumber);
+        }
+    }
+
+    @Override
+    public int getFreeSpotCount(ParkingType parkingType) {
+        AtomicLongArray bitmap = freeSpots[parkingType.ordinal()];
+        int count = 0;
+        for (int word = 0; word < bitmap.length(); word++) {
+            count += Long.bitCount(bitmap.get(word));
+        }
+        return count;
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        if (typeOf(parkingSpot.getId()) != parkingSpot.getParkingType()) {
+            return false;
+        }
+        AtomicLongArray bitmap = freeSpots[parkingSpot.getParkingType().ordinal()];
+        if (parkingSpot.isAvailable()) {
+            setFree(bitmap, parkingSpot.getId());
+        } else {
+            setTaken(bitmap, parkingSpot.getId());
+        }
+        return true;
+    }
+
+    @Override
+    public boolean loadOccupancy(OccupancyCounters occupancy) {
+        int[] spots = new int[TYPES.length];
+        for (int parkingNumber = 1; parkingNumber <= capacity; parkingNumber++) {
+            int type = types.get(parkingNumber);
+            if (type != 0) {
+                spots[type - 1]++;
+            }
+        }
+        for (ParkingType parkingType : TYPES) {
+            occupancy.set(parkingType, spots[parkingType.ordinal()], getFreeSpotCount(parkingType));
+        }
+        occupancy.setLoaded();
+        return true;
+    }
+
+    private ParkingType typeOf(int parkingNumber) {
+        if (parkingNumber < 1 || parkingNumber > capacity) {
+            return null;
+        }
+        int type = types.get(parkingNumber);
+        return type == 0 ? null : TYPES[type - 1];
+    }
+
+    private static void setFree(AtomicLongArray bitmap, int parkingNumber) {
+        int word = parkingNumber >> 6;
+        long bit = 1L << parkingNumber;
+        long bits;
+        do {
+            bits = bitmap.get(word);
+        } while (!bitmap.compareAndSet(word, bits, bits | bit));
+    }
+
+    private static void setTaken(AtomicLongArray bitmap, int parkingNumber) {
+        int word = parkingNumber >> 6;
+        long bit = 1L << parkingNumber;
+        long bits;
+        do {
+            bits = bitmap.get(word);
+        } while (!bitmap.compareAndSet(word, bits, bits & ~bit));
+    }
+}
@@ -0,0 +1,45 @@
+package com.parkit.parkingsystem.storage;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Spots and tickets held in this process only, gone when it stops. Spots are declared up front:
+ *
+ * <pre>
+ * new InMemoryParkingStorage(500).addParkingSpots(1, 450, ParkingType.CAR).addParkingSpots(451, 50, ParkingType.BIKE)
+ * </pre>
+ */
+public class InMemoryParkingStorage implements ParkingStorage {
+
+    private final InMemoryParkingSpotRepository parkingSpotRepository;
+    private final InMemoryTicketRepository ticketRepository = new InMemoryTicketRepository();
+    private final InMemoryParkingSessionRepository parkingSessionRepository;
+
+    //spot numbers range from 1 to capacity
+    public InMemoryParkingStorage(int capacity) {
+        parkingSpotRepository = new InMemoryParkingSpotRepository(capacity);
+        parkingSessionRepository = new InMemoryParkingSessionRepository(parkingSpotRepository, ticketRepository);
+    }
+
+    public InMemoryParkingStorage addParkingSpots(int from, int count, ParkingType parkingType) {
+        for (int i = 0; i < count; i++) {
+            parkingSpotRepository.addParkingSpot(from + i, parkingType, true);
+        }
+        return this;
+    }
+
+    @Override
+    public InMemoryParkingSpotRepository getParkingSpotRepository() {
+        return parkingSpotRepository;
+    }
+
+    @Override
+    public InMemoryTicketRepository getTicketRepository() {
+        return ticketRepository;
+    }
+
+    @Override
+    public InMemoryParkingSessionRepository getParkingSessionRepository() {
+        return parkingSessionRepository;
+    }
+}
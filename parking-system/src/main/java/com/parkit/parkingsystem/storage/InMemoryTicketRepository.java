@@ -0,0 +1,199 @@
+package com.parkit.parkingsystem.storage;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tickets indexed by id in fixed-size segments allocated on first use. A ticket is stored as an immutable
+ * record that updates replace by compare-and-set, so of two gates closing the same ticket only one wins.
+ * Plates map to their open and first ticket ids.
+ */
+public class InMemoryTicketRepository implements TicketRepository {
+
+    private static final int SEGMENT_BITS = 14;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENTS = 1 << 14;
+
+    //stands for a ticket being opened in openTickets, real ids start at 1
+    private static final int OPENING = 0;
+
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicReferenceArray<TicketRecord>> segments = new AtomicReferenceArray<>(SEGMENTS);
+    private final ConcurrentHashMap<String, Integer> openTickets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> firstTickets = new ConcurrentHashMap<>();
+    private final Set<String> loyalVehicles = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        long outTime = ticket.getOutTime() == null ? TicketRecord.OPEN : ticket.getOutTime().getTime();
+        TicketRecord record = new TicketRecord(lastId.incrementAndGet(), ticket.getParkingSpot().getId(),
+                ticket.getParkingSpot().getParkingType(), ticket.getVehicleRegNumber(), ticket.getPrice(),
+                ticket.getInTime().getTime(), outTime, ticket.getRecurent());
+        store(record);
+        firstTickets.putIfAbsent(record.vehicleRegNumber, record.id);
+        if (record.isOpen()) {
+            openTickets.putIfAbsent(record.vehicleRegNumber, record.id);
+        } else {
+            loyalVehicles.add(record.vehicleRegNumber);
+        }
+        return true;
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        Integer id = firstTickets.get(vehicleRegNumber);
+        return id == null ? null : get(id).toTicket();
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        while (true) {
+            TicketRecord record = get(ticket.getId());
+            if (record == null) {
+                return false;
+            }
+            TicketRecord updated = record.withExit(ticket.getPrice(), ticket.getOutTime().getTime());
+            if (replace(record, updated)) {
+                if (record.isOpen()) {
+                    closed(record);
+                }
+                return true;
+            }
+        }
+    }
+
+    //false when the plate already has an open ticket or one being opened
+    boolean reserve(String vehicleRegNumber) {
+        return openTickets.putIfAbsent(vehicleRegNumber, OPENING) == null;
+    }
+
+    void cancel(String vehicleRegNumber) {
+        openTickets.remove(vehicleRegNumber, OPENING);
+    }
+
+    //opens the ticket of a plate reserved beforehand
+    int open(String vehicleRegNumber, int parkingNumber, ParkingType parkingType, long inTime, boolean recurent) {
+        TicketRecord record = new TicketRecord(lastId.incrementAndGet(), parkingNumber, parkingType, vehicleRegNumber,
+                0, inTime, TicketRecord.OPEN, recurent);
+        store(record);
+        firstTickets.putIfAbsent(vehicleRegNumber, record.id);
+        openTickets.replace(vehicleRegNumber, OPENING, record.id);
+        return record.id;
+    }
+
+    TicketRecord getOpen(String vehicleRegNumber) {
+        Integer id = openTickets.get(vehicleRegNumber);
+        if (id == null || id == OPENING) {
+            return null;
+        }
+        TicketRecord record = get(id);
+        return record.isOpen() ? record : null;
+    }
+
+    //false when the ticket was closed in the meantime
+    boolean close(TicketRecord open, double price, long outTime) {
+        if (!replace(open, open.withExit(price, outTime))) {
+            return false;
+        }
+        closed(open);
+        return true;
+    }
+
+    boolean isOpen(String vehicleRegNumber) {
+        return openTickets.containsKey(vehicleRegNumber);
+    }
+
+    boolean isLoyal(String vehicleRegNumber) {
+        return loyalVehicles.contains(vehicleRegNumber);
+    }
+
+    private void closed(TicketRecord record) {
+        openTickets.remove(record.vehicleRegNumber, record.id);
+        loyalVehicles.add(record.vehicleRegNumber);
+    }
+
+    private TicketRecord get(int id) {
+        if (id < 1) {
+            return null;
+        }
+        AtomicReferenceArray<TicketRecord> segment = segments.get(id >>> SEGMENT_BITS);
+        return segment == null ? null : segment.get(id & (SEGMENT_SIZE - 1));
+    }
+
+    private boolean replace(TicketRecord current, TicketRecord updated) {
+        return segments.get(current.id >>> SEGMENT_BITS).compareAndSet(current.id & (SEGMENT_SIZE - 1), current, updated);
+    }
+
+    private void store(TicketRecord record) {
+        int index = record.id >>> SEGMENT_BITS;
+        if (index >= SEGMENTS) {
+            throw new IllegalStateException("In-memory ticket store is full");
+        }
+        AtomicReferenceArray<TicketRecord> segment = segments.get(index);
+        if (segment == null) {
+            segments.compareAndSet(index, null, new AtomicReferenceArray<>(SEGMENT_SIZE));
+            segment = segments.get(index);
+        }
+        segment.set(record.id & (SEGMENT_SIZE - 1), record);
+    }
+
+    static final class TicketRecord {
+        private static final long OPEN = Long.MIN_VALUE;
+
+        private final int id;
+        private final int parkingNumber;
+        private final ParkingType parkingType;
+        private final String vehicleRegNumber;
+        private final double price;
+        private final long inTime;
+        private final long outTime;
+        private final boolean recurent;
+
+        private TicketRecord(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber, double price,
+                             long inTime, long outTime, boolean recurent) {
+            this.id = id;
+            this.parkingNumber = parkingNumber;
+            this.parkingType = parkingType;
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.price = price;
+            this.inTime = inTime;
+            this.outTime = outTime;
+            this.recurent = recurent;
+        }
+
+        boolean isOpen() {
+            return outTime == OPEN;
+        }
+
+        int getParkingNumber() {
+            return parkingNumber;
+        }
+
+        ParkingType getParkingType() {
+            return parkingType;
+        }
+
+        private TicketRecord withExit(double price, long outTime) {
+            return new TicketRecord(id, parkingNumber, parkingType, vehicleRegNumber, price, inTime, outTime, recurent);
+        }
+
+        Ticket toTicket() {
+            Ticket ticket = new Ticket();
+            ticket.setId(id);
+            ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(price);
+            ticket.setInTime(new Date(inTime));
+            ticket.setOutTime(isOpen() ? null : new Date(outTime));
+            ticket.setRecurent(recurent);
+            return ticket;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.parkit.parkingsystem.storage;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+
+/**
+ * The DAOs, all pointing at one database.
+ */
+public class JdbcParkingStorage implements ParkingStorage {
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+    private final ParkingSessionDAO parkingSessionDAO;
+
+    public JdbcParkingStorage() {
+        this(new DataBaseConfig());
+    }
+
+    public JdbcParkingStorage(DataBaseConfig dataBaseConfig) {
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    //reads the free spots, open tickets and loyal plates up front instead of on the first gate event
+    public JdbcParkingStorage load() {
+        parkingSpotDAO.loadFreeSpotIndex();
+        parkingSessionDAO.loadActiveSessions();
+        parkingSessionDAO.loadLoyalVehicles();
+        return this;
+    }
+
+    @Override
+    public ParkingSpotDAO getParkingSpotRepository() {
+        return parkingSpotDAO;
+    }
+
+    @Override
+    public TicketDAO getTicketRepository() {
+        return ticketDAO;
+    }
+
+    @Override
+    public ParkingSessionDAO getParkingSessionRepository() {
+        return parkingSessionDAO;
+    }
+}
@@ -0,0 +1,27 @@
+package com.parkit.parkingsystem.storage;
+
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+
+import java.util.Date;
+
+/**
+ * Vehicle entry and exit, each applied to tickets and spots as a whole or not at all.
+ * Safe to call from any number of gates at once.
+ */
+public interface ParkingSessionRepository {
+
+    //claims a spot of the ticket's parking type and opens the ticket. Fills in the ticket's id, spot number and
+    //recurent flag and returns the id, or -1 when the vehicle is already parked (atParking set), no spot is free
+    //(spot number left at 0) or on error.
+    int enterVehicle(Ticket ticket);
+
+    //prices the plate's open ticket, closes it and frees its spot. Returns the closed ticket, or null when the
+    //vehicle has no open ticket, another gate closed it first, or on error.
+    Ticket exitVehicle(String vehicleRegNumber, Date outTime, FareCalculatorService fareCalculatorService);
+
+    //the plate's open ticket, null when none
+    Ticket getOpenTicket(String vehicleRegNumber);
+
+    boolean isAtParking(String vehicleRegNumber);
+}
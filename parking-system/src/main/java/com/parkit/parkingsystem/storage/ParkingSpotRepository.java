@@ -0,0 +1,23 @@
+package com.parkit.parkingsystem.storage;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.OccupancyCounters;
+
+/**
+ * Parking spots and their availability. Spots are taken and freed by the gates through
+ * {@link ParkingSessionRepository}; updateParking is for maintenance.
+ */
+public interface ParkingSpotRepository {
+
+    //lowest free spot of the type without taking it, -1 when none
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    //-1 when the spots cannot be counted
+    int getFreeSpotCount(ParkingType parkingType);
+
+    boolean updateParking(ParkingSpot parkingSpot);
+
+    //sets the counters to the spots and free spots stored now, false when they cannot be counted
+    boolean loadOccupancy(OccupancyCounters occupancy);
+}
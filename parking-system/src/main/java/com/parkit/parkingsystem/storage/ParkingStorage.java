@@ -0,0 +1,14 @@
+package com.parkit.parkingsystem.storage;
+
+/**
+ * Storage backend of a car park: {@link JdbcParkingStorage} for the MySQL database,
+ * {@link InMemoryParkingStorage} for edge deployments, simulations and tests.
+ */
+public interface ParkingStorage {
+
+    ParkingSpotRepository getParkingSpotRepository();
+
+    TicketRepository getTicketRepository();
+
+    ParkingSessionRepository getParkingSessionRepository();
+}
@@ -0,0 +1,18 @@
+package com.parkit.parkingsystem.storage;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Ticket rows as they are, without touching the spots. Gate entries and exits go through
+ * {@link ParkingSessionRepository}.
+ */
+public interface TicketRepository {
+
+    boolean saveTicket(Ticket ticket);
+
+    //the plate's first ticket, null when it has none
+    Ticket getTicket(String vehicleRegNumber);
+
+    //sets the price and out time of the ticket with the same id
+    boolean updateTicket(Ticket ticket);
+}
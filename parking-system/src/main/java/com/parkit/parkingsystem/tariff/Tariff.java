@@ -0,0 +1,125 @@
+package com.parkit.parkingsystem.tariff;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.List;
+
+/**
+ * {@link TariffRules} compiled into per-type tables holding the price of every stay length up to a day,
+ * or up to the last band when that is longer, in whole billing units. Longer stays extend the last entry at
+ * the last band's rate. Pricing a stay is a table read and a few long operations, with no allocation.
+ * Instances are immutable and can be shared by any number of threads.
+ */
+public final class Tariff {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long DAY_MINUTES = 24 * 60;
+    private static final ParkingType[] TYPES = ParkingType.values();
+
+    private final long unitMillis;
+    private final long unitsPerDay;
+    private final long keepPercent;
+    private final long roundingCents;
+    //per type ordinal: price of u whole units in cent-minutes, i.e. sum of billed minutes times cents per hour
+    private final long[][] prices;
+    //cent-minutes added by each unit past the end of the table
+    private final long[] tailPrices;
+    private final long[] dailyCaps;
+
+    private Tariff(long unitMillis, long unitsPerDay, long keepPercent, long roundingCents,
+                   long[][] prices, long[] tailPrices, long[] dailyCaps) {
+        this.unitMillis = unitMillis;
+        this.unitsPerDay = unitsPerDay;
+        this.keepPercent = keepPercent;
+        this.roundingCents = roundingCents;
+        this.prices = prices;
+        this.tailPrices = tailPrices;
+        this.dailyCaps = dailyCaps;
+    }
+
+    public static Tariff compile(TariffRules rules) {
+        long unit = rules.getBillingUnitMinutes();
+        if (unit <= 0 || DAY_MINUTES % unit != 0) {
+            throw new IllegalArgumentException("Billing unit must divide a day, was " + unit + " minutes");
+        }
+        long free = rules.getFreeMinutes();
+        if (free < 0) {
+            throw new IllegalArgumentException("Free period cannot be negative");
+        }
+        if (rules.getLoyaltyDiscountPercent() < 0 || rules.getLoyaltyDiscountPercent() > 100) {
+            throw new IllegalArgumentException("Loyalty discount must be between 0 and 100%");
+        }
+        if (rules.getLoyaltyRoundingCents() < 1) {
+            throw new IllegalArgumentException("Loyalty rounding must be at least one cent");
+        }
+        long unitsPerDay = DAY_MINUTES / unit;
+        long[][] prices = new long[TYPES.length][];
+        long[] tailPrices = new long[TYPES.length];
+        long[] dailyCaps = new long[TYPES.length];
+        for (ParkingType parkingType : TYPES) {
+            List<long[]> bands = rules.getBands(parkingType);
+            if (bands.isEmpty() || bands.get(0)[0] != 0) {
+                throw new IllegalArgumentException("Rates of " + parkingType + " must start at minute 0");
+            }
+            long lastStart = 0;
+            for (long[] band : bands) {
+                if (band[1] < 0) {
+                    throw new IllegalArgumentException("Negative rate for " + parkingType);
+                }
+                lastStart = band[0];
+            }
+            //past this many units every billed minute falls in the last band
+            long units = Math.max(unitsPerDay, (lastStart + free + unit - 1) / unit);
+            long[] table = new long[(int) units + 1];
+            for (int u = 0; u <= units; u++) {
+                table[u] = centMinutes(bands, Math.max(0, u * unit - free));
+            }
+            int type = parkingType.ordinal();
+            prices[type] = table;
+            tailPrices[type] = unit * bands.get(bands.size() - 1)[1];
+            dailyCaps[type] = rules.getDailyCap(parkingType);
+        }
+        return new Tariff(unit * MINUTE, unitsPerDay, 100 - rules.getLoyaltyDiscountPercent(),
+                rules.getLoyaltyRoundingCents(), prices, tailPrices, dailyCaps);
+    }
+
+    //fare in cents of a stay between two epoch millis
+    public long fareCents(ParkingType parkingType, long inMillis, long outMillis, boolean recurent) {
+        long duration = outMillis - inMillis;
+        if (duration < 0) {
+            throw new IllegalArgumentException("Out time before in time");
+        }
+        int type = parkingType.ordinal();
+        long units = duration / unitMillis;
+        long price = cents(type, units);
+        long cap = dailyCaps[type];
+        if (cap >= 0) {
+            long days = units / unitsPerDay;
+            price = Math.min(price, days * cap + Math.min(cap, cents(type, units - days * unitsPerDay)));
+        }
+        if (recurent && price > 0) {
+            //half up to the rounding step, as Math.round did on whole currency units
+            price = (price * keepPercent + 50 * roundingCents) / (100 * roundingCents) * roundingCents;
+        }
+        return price;
+    }
+
+    private long cents(int type, long units) {
+        long[] table = prices[type];
+        int last = table.length - 1;
+        long centMinutes = units <= last ? table[(int) units] : table[last] + (units - last) * tailPrices[type];
+        return (centMinutes + 30) / 60;
+    }
+
+    private static long centMinutes(List<long[]> bands, long billedMinutes) {
+        long total = 0;
+        for (int i = 0; i < bands.size(); i++) {
+            long start = bands.get(i)[0];
+            long end = i + 1 < bands.size() ? bands.get(i + 1)[0] : Long.MAX_VALUE;
+            if (billedMinutes > start) {
+                total += (Math.min(billedMinutes, end) - start) * bands.get(i)[1];
+            }
+        }
+        return total;
+    }
+}
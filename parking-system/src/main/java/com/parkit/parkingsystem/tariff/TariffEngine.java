@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem.tariff;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The tariff in force. A new one replaces the old in a single write, so fares being computed
+ * finish on the old tariff and the next ones use the new one, without a restart.
+ */
+public class TariffEngine {
+
+    private static final Logger logger = LogManager.getLogger("TariffEngine");
+
+    private static final TariffEngine instance = new TariffEngine(Tariff.compile(TariffRules.standard()));
+
+    private volatile Tariff tariff;
+    private volatile long loadedModified;
+
+    public TariffEngine(Tariff tariff) {
+        this.tariff = tariff;
+    }
+
+    //the engine every FareCalculatorService of this process uses unless given another
+    public static TariffEngine getInstance() {
+        return instance;
+    }
+
+    public Tariff getTariff() {
+        return tariff;
+    }
+
+    public void setTariff(Tariff tariff) {
+        this.tariff = tariff;
+    }
+
+    public long fareCents(ParkingType parkingType, long inMillis, long outMillis, boolean recurent) {
+        return tariff.fareCents(parkingType, inMillis, outMillis, recurent);
+    }
+
+    //compiles the rules of a properties file (see TariffRules#set) and puts them in force;
+    //an unreadable or invalid file leaves the current tariff in place
+    public boolean load(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            //a broken file is not retried until it changes again
+            loadedModified = Files.getLastModifiedTime(file).toMillis();
+            Properties properties = new Properties();
+            properties.load(in);
+            setTariff(Tariff.compile(TariffRules.fromProperties(properties)));
+            logger.info("Tariff loaded from " + file);
+            return true;
+        } catch (Exception e) {
+            logger.error("Tariff in " + file + " not loaded, keeping the current one", e);
+            return false;
+        }
+    }
+
+    //loads the file now and again whenever it is modified, checking every period
+    public ScheduledExecutorService watch(Path file, long periodMillis) {
+        load(file);
+        ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tariff-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            try {
+                if (Files.getLastModifiedTime(file).toMillis() != loadedModified) {
+                    load(file);
+                }
+            } catch (Exception e) {
+                logger.error("Cannot check tariff file " + file, e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return watcher;
+    }
+}
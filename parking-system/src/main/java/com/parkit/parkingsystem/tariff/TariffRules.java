@@ -0,0 +1,147 @@
+package com.parkit.parkingsystem.tariff;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Pricing rules as written by people, turned into a {@link Tariff} by {@link Tariff#compile(TariffRules)}.
+ * Money is in cents, durations in minutes.
+ *
+ * <p>A stay is floored to whole billing units, the free period is taken off what remains and the rest is
+ * charged at the rate of each duration band it runs through. Returning users get the loyalty discount,
+ * rounded to the loyalty rounding step, and no stay costs more than the daily cap per full day plus the
+ * cap for the day started.
+ */
+public class TariffRules {
+
+    public static final long NO_CAP = -1;
+
+    private long billingUnitMinutes = 60;
+    private long freeMinutes = 30;
+    private int loyaltyDiscountPercent = 5;
+    private long loyaltyRoundingCents = 100;
+    private final Map<ParkingType, List<long[]>> bands = new EnumMap<>(ParkingType.class);
+    private final Map<ParkingType, Long> dailyCaps = new EnumMap<>(ParkingType.class);
+
+    //the rates in Fare, billed as FareCalculatorService always did
+    public static TariffRules standard() {
+        TariffRules rules = new TariffRules();
+        rules.setRate(ParkingType.CAR, Math.round(Fare.CAR_RATE_PER_HOUR * 100));
+        rules.setRate(ParkingType.BIKE, Math.round(Fare.BIKE_RATE_PER_HOUR * 100));
+        return rules;
+    }
+
+    public static TariffRules fromProperties(Properties properties) {
+        TariffRules rules = new TariffRules();
+        for (String key : properties.stringPropertyNames()) {
+            rules.set(key + "=" + properties.getProperty(key).trim());
+        }
+        return rules;
+    }
+
+    //stays shorter than one unit are free, longer ones are floored to whole units
+    public long getBillingUnitMinutes() {
+        return billingUnitMinutes;
+    }
+
+    public void setBillingUnitMinutes(long billingUnitMinutes) {
+        this.billingUnitMinutes = billingUnitMinutes;
+    }
+
+    public long getFreeMinutes() {
+        return freeMinutes;
+    }
+
+    public void setFreeMinutes(long freeMinutes) {
+        this.freeMinutes = freeMinutes;
+    }
+
+    public int getLoyaltyDiscountPercent() {
+        return loyaltyDiscountPercent;
+    }
+
+    public void setLoyaltyDiscountPercent(int loyaltyDiscountPercent) {
+        this.loyaltyDiscountPercent = loyaltyDiscountPercent;
+    }
+
+    //100 rounds discounted fares to whole currency units, 1 to the cent
+    public long getLoyaltyRoundingCents() {
+        return loyaltyRoundingCents;
+    }
+
+    public void setLoyaltyRoundingCents(long loyaltyRoundingCents) {
+        this.loyaltyRoundingCents = loyaltyRoundingCents;
+    }
+
+    //{fromMinutes, centsPerHour} pairs sorted by start, the first one starting at 0
+    public List<long[]> getBands(ParkingType parkingType) {
+        List<long[]> typeBands = bands.get(parkingType);
+        return typeBands == null ? new ArrayList<>() : typeBands;
+    }
+
+    //one rate for the whole stay
+    public void setRate(ParkingType parkingType, long centsPerHour) {
+        bands.remove(parkingType);
+        addBand(parkingType, 0, centsPerHour);
+    }
+
+    //billed minutes from fromMinutes on are charged centsPerHour, until the next band starts
+    public void addBand(ParkingType parkingType, long fromMinutes, long centsPerHour) {
+        List<long[]> typeBands = bands.computeIfAbsent(parkingType, type -> new ArrayList<>());
+        typeBands.add(new long[]{fromMinutes, centsPerHour});
+        typeBands.sort((a, b) -> Long.compare(a[0], b[0]));
+    }
+
+    public long getDailyCap(ParkingType parkingType) {
+        Long cap = dailyCaps.get(parkingType);
+        return cap == null ? NO_CAP : cap;
+    }
+
+    public void setDailyCap(ParkingType parkingType, long cents) {
+        dailyCaps.put(parkingType, cents);
+    }
+
+    //"billingUnitMinutes=60", "CAR.bands=0:150,120:100" (fromMinutes:centsPerHour), "BIKE.rate=100", "CAR.dailyCap=2000"
+    public void set(String argument) {
+        String[] pair = argument.split("=", 2);
+        if (pair.length != 2) {
+            throw new IllegalArgumentException("Expected key=value but was: " + argument);
+        }
+        String key = pair[0].trim();
+        String value = pair[1].trim();
+        int dot = key.indexOf('.');
+        if (dot > 0) {
+            ParkingType parkingType = ParkingType.valueOf(key.substring(0, dot));
+            switch (key.substring(dot + 1)) {
+                case "rate": setRate(parkingType, Long.parseLong(value)); break;
+                case "bands": {
+                    bands.remove(parkingType);
+                    for (String band : value.split(",")) {
+                        String[] parts = band.trim().split(":");
+                        if (parts.length != 2) {
+                            throw new IllegalArgumentException("Expected fromMinutes:centsPerHour but was: " + band);
+                        }
+                        addBand(parkingType, Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                    }
+                    break;
+                }
+                case "dailyCap": setDailyCap(parkingType, Long.parseLong(value)); break;
+                default: throw new IllegalArgumentException("Unknown tariff setting: " + key);
+            }
+            return;
+        }
+        switch (key) {
+            case "billingUnitMinutes": setBillingUnitMinutes(Long.parseLong(value)); break;
+            case "freeMinutes": setFreeMinutes(Long.parseLong(value)); break;
+            case "loyaltyDiscountPercent": setLoyaltyDiscountPercent(Integer.parseInt(value)); break;
+            case "loyaltyRoundingCents": setLoyaltyRoundingCents(Long.parseLong(value)); break;
+            default: throw new IllegalArgumentException("Unknown tariff setting: " + key);
+        }
+    }
+}
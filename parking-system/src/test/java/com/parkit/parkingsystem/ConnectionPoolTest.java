@@ -0,0 +1,181 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.PoolSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pooltest;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private PoolSettings settings;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        settings = new PoolSettings();
+        settings.setMinIdle(0);
+        settings.setMaxSize(2);
+        settings.setConnectionTimeout(200);
+    }
+
+    @AfterEach
+    private void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void closedConnectionIsReusedTest() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", settings);
+        Connection first = pool.getConnection();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+        Connection second = pool.getConnection();
+
+        assertSame(physical, second.unwrap(Connection.class));
+        assertEquals(1, pool.getTotalConnections());
+        second.close();
+    }
+
+    @Test
+    public void closeIsIdempotentAndBlocksFurtherUseTest() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", settings);
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, connection::createStatement);
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+    }
+
+    @Test
+    public void acquisitionTimesOutWhenPoolIsExhaustedTest() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", settings);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+
+        assertThrows(SQLTimeoutException.class, pool::getConnection);
+        first.close();
+        pool.getConnection().close();
+        second.close();
+    }
+
+    @Test
+    public void connectionOlderThanMaxLifetimeIsRetiredTest() throws Exception {
+        settings.setMaxLifetime(50);
+        pool = new ConnectionPool(URL, "sa", "", settings);
+        Connection first = pool.getConnection();
+        Connection physical = first.unwrap(Connection.class);
+        Thread.sleep(100);
+        first.close();
+
+        assertTrue(physical.isClosed());
+        assertEquals(0, pool.getTotalConnections());
+    }
+
+    @Test
+    public void minIdleConnectionsAreKeptWhileOthersAreInUseTest() throws Exception {
+        settings.setMinIdle(1);
+        settings.setIdleTimeout(50);
+        settings.setHousekeepingPeriod(20);
+        pool = new ConnectionPool(URL, "sa", "", settings);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+        Thread.sleep(200);
+
+        assertFalse(physical.isClosed());
+        assertEquals(1, pool.getIdleConnections());
+        second.close();
+    }
+
+    @Test
+    public void pendingTransactionIsRolledBackOnReturnTest() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", settings);
+        Connection setup = pool.getConnection();
+        setup.createStatement().execute("create table if not exists pool_check(ID int)");
+        setup.createStatement().execute("delete from pool_check");
+        setup.close();
+
+        Connection connection = pool.getConnection();
+        connection.setAutoCommit(false);
+        connection.createStatement().execute("insert into pool_check values(1)");
+        connection.close();
+
+        Connection check = pool.getConnection();
+        assertTrue(check.getAutoCommit());
+        Statement statement = check.createStatement();
+        ResultSet rs = statement.executeQuery("select count(*) from pool_check");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        check.close();
+    }
+
+    @Test
+    public void preparedStatementIsReusedAcrossLeasesTest() throws Exception {
+        settings.setMaxSize(1);
+        pool = new ConnectionPool(URL, "sa", "", settings);
+        Connection first = pool.getConnection();
+        PreparedStatement ps = first.prepareStatement("select ? from dual");
+        PreparedStatement physical = ps.unwrap(PreparedStatement.class);
+        ps.setInt(1, 1);
+        ps.executeQuery().close();
+        ps.close();
+        first.close();
+
+        Connection second = pool.getConnection();
+        PreparedStatement again = second.prepareStatement("select ? from dual");
+
+        assertSame(physical, again.unwrap(PreparedStatement.class));
+        assertSame(second, again.getConnection());
+        assertFalse(physical.isClosed());
+        assertEquals(1, pool.getStatementCacheHits());
+        assertEquals(1, pool.getStatementCacheMisses());
+        assertEquals(0.5, pool.getStatementCacheHitRatio());
+        second.close();
+        assertTrue(again.isClosed());
+        assertThrows(SQLException.class, again::executeQuery);
+    }
+
+    @Test
+    public void sameStatementOpenTwiceOnOneLeaseIsNotSharedTest() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", settings);
+        Connection connection = pool.getConnection();
+        PreparedStatement first = connection.prepareStatement("select ? from dual");
+        PreparedStatement second = connection.prepareStatement("select ? from dual");
+        PreparedStatement secondPhysical = second.unwrap(PreparedStatement.class);
+
+        assertNotSame(first.unwrap(PreparedStatement.class), secondPhysical);
+        first.close();
+        connection.close();
+        assertTrue(secondPhysical.isClosed());
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementIsEvictedTest() throws Exception {
+        settings.setStatementCacheSize(1);
+        pool = new ConnectionPool(URL, "sa", "", settings);
+        Connection connection = pool.getConnection();
+        PreparedStatement first = connection.prepareStatement("select 1 from dual");
+        PreparedStatement physical = first.unwrap(PreparedStatement.class);
+        first.close();
+        connection.prepareStatement("select 2 from dual").close();
+
+        assertTrue(physical.isClosed());
+        connection.close();
+    }
+}
@@ -0,0 +1,114 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.FacilityRouter;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.facility.Facilities;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.report.ReportAggregator;
+import com.parkit.parkingsystem.report.ReportRow;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FacilitiesTest {
+
+    private static EmbeddedDataBaseTestConfig northDataBaseConfig = new EmbeddedDataBaseTestConfig("north");
+    private static EmbeddedDataBaseTestConfig southDataBaseConfig = new EmbeddedDataBaseTestConfig("south");
+    private static EmbeddedDataBasePrepareService northPrepareService = new EmbeddedDataBasePrepareService(northDataBaseConfig);
+    private static EmbeddedDataBasePrepareService southPrepareService = new EmbeddedDataBasePrepareService(southDataBaseConfig);
+
+    private Facilities facilities;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        northPrepareService.createSchema();
+        southPrepareService.createSchema();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        northPrepareService.clearDataBaseEntries();
+        southPrepareService.clearDataBaseEntries();
+        facilities = Facilities.open(new FacilityRouter()
+                .add("north", northDataBaseConfig)
+                .add("south", southDataBaseConfig));
+    }
+
+    @AfterEach
+    private void tearDown() {
+        facilities.close();
+    }
+
+    @Test
+    public void facilitiesKeepTheirOwnSpotsAndTicketsTest() {
+        ParkingService north = facilities.getParkingService("north");
+        ParkingService south = facilities.getParkingService("south");
+
+        assertEquals("north", facilities.getDefaultFacility());
+        assertNull(facilities.getParkingService("east"));
+        assertTrue(north.enterVehicle("ABCDEF", ParkingType.CAR).isAccepted());
+        //the same plate is a different stay in another facility
+        assertTrue(south.enterVehicle("ABCDEF", ParkingType.CAR).isAccepted());
+        assertTrue(south.enterVehicle("GHIJKL", ParkingType.CAR).isAccepted());
+        assertFalse(north.enterVehicle("ABCDEF", ParkingType.CAR).isAccepted());
+
+        assertEquals(2, (int) north.getFreeSpots().get(ParkingType.CAR));
+        assertEquals(1, (int) south.getFreeSpots().get(ParkingType.CAR));
+        Map<ParkingType, Integer> freeSpots = facilities.getFreeSpots();
+        assertEquals(3, (int) freeSpots.get(ParkingType.CAR));
+        assertEquals(4, (int) freeSpots.get(ParkingType.BIKE));
+    }
+
+    @Test
+    public void dailyReportCombinesFacilitiesTest() {
+        ParkingService north = facilities.getParkingService("north");
+        ParkingService south = facilities.getParkingService("south");
+        assertTrue(north.enterVehicle("ABCDEF", ParkingType.CAR).isAccepted());
+        assertTrue(south.enterVehicle("GHIJKL", ParkingType.CAR).isAccepted());
+        assertTrue(north.exitVehicle("ABCDEF").isAccepted());
+        assertTrue(south.exitVehicle("GHIJKL").isAccepted());
+        catchUp(northDataBaseConfig);
+        catchUp(southDataBaseConfig);
+
+        LocalDate today = LocalDate.now();
+        List<ReportRow> days = facilities.daily(today, today.plusDays(1));
+
+        assertEquals(1, days.size());
+        assertEquals(ParkingType.CAR, days.get(0).getParkingType());
+        assertEquals(2, days.get(0).getExits());
+        assertEquals(6, days.get(0).getSpots());
+    }
+
+    @Test
+    public void dailyReportFailsWhenAFacilityCannotBeReadTest() throws Exception {
+        assertTrue(facilities.getParkingService("north").enterVehicle("ABCDEF", ParkingType.CAR).isAccepted());
+        assertTrue(facilities.getParkingService("north").exitVehicle("ABCDEF").isAccepted());
+        catchUp(northDataBaseConfig);
+        LocalDate today = LocalDate.now();
+        Connection connection = southDataBaseConfig.getConnection();
+        try {
+            connection.createStatement().execute("alter table report_hourly rename to report_hourly_moved");
+
+            assertNull(facilities.daily(today, today.plusDays(1)));
+        } finally {
+            connection.createStatement().execute("alter table report_hourly_moved rename to report_hourly");
+            southDataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private static void catchUp(EmbeddedDataBaseTestConfig dataBaseConfig) {
+        ReportAggregator reportAggregator = new ReportAggregator();
+        reportAggregator.dataBaseConfig = dataBaseConfig;
+        reportAggregator.catchUp();
+    }
+}
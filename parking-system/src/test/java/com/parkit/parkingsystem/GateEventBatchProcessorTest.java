@@ -0,0 +1,170 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.batch.BatchReport;
+import com.parkit.parkingsystem.batch.GateEventBatchProcessor;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateEventBatchProcessorTest {
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("batch");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    private Path events;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+        dataBasePrepareService.addParkingSpots(100, 50, "CAR");
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        events = Files.createTempFile("gate-events", ".csv");
+        events.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void eventsArePricedWithTheirOwnTimestampsTest() throws Exception {
+        Files.write(events, Arrays.asList(
+                "timestamp,event,plate,type",
+                "2024-05-02T08:00:00Z,ENTRY,AB123CD,CAR",
+                "2024-05-02T08:05:00Z,IN,BIKE1,bike",
+                "2024-05-02T08:10:00Z,ENTRY,AB123CD,CAR",
+                "garbage",
+                "2024-05-02T09:00:00Z,EXIT,NOBODY",
+                "2024-05-02T10:00:00Z,EXIT,AB123CD",
+                "2024-05-02T10:30:00Z,ENTRY,AB123CD,CAR",
+                "2024-05-02T12:30:00Z,OUT,AB123CD",
+                "1714647900000,EXIT,BIKE1"), StandardCharsets.UTF_8);
+
+        GateEventBatchProcessor processor = new GateEventBatchProcessor(3);
+        processor.dataBaseConfig = dataBaseConfig;
+        BatchReport report = processor.process(events);
+
+        assertEquals(3, report.getEntries());
+        assertEquals(3, report.getExits());
+        assertEquals(1, report.getRejected(GateResult.Rejection.ALREADY_PARKED));
+        assertEquals(1, report.getRejected(GateResult.Rejection.NOT_PARKED));
+        assertEquals(1, report.getMalformedLines());
+        assertEquals(3, report.getBatches());
+        assertEquals(0, report.getParkedVehicles());
+
+        //2h at the car rate, then the same 2h for a returning user, then 3h at the bike rate
+        assertEquals(2.25, price("AB123CD", "2024-05-02T08:00:00Z"));
+        assertEquals(2.0, price("AB123CD", "2024-05-02T10:30:00Z"));
+        assertEquals(2.5, price("BIKE1", "2024-05-02T08:05:00Z"));
+        assertEquals(Instant.parse("2024-05-02T11:05:00Z").toEpochMilli(),
+                timestamp("select OUT_TIME from ticket where VEHICLE_REG_NUMBER = 'BIKE1'"));
+        assertEquals(0, count("select count(*) from ticket where OUT_TIME is null"));
+        assertEquals(0, count("select count(*) from parking where AVAILABLE = false"));
+    }
+
+    @Test
+    public void importContinuesFromLiveStateTest() throws Exception {
+        //a vehicle that entered through a live gate before the upload
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ParkingSessionDAO parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+        Ticket live = new Ticket();
+        live.setParkingSpot(new ParkingSpot(0, ParkingType.CAR, false));
+        live.setVehicleRegNumber("LIVE1");
+        live.setInTime(new Date(Instant.parse("2024-05-01T22:00:00Z").toEpochMilli()));
+        assertTrue(parkingSessionDAO.enterVehicle(live) > 0);
+
+        long start = Instant.parse("2024-05-02T00:00:00Z").toEpochMilli();
+        try (BufferedWriter writer = Files.newBufferedWriter(events, StandardCharsets.UTF_8)) {
+            writer.write(start + ",EXIT,LIVE1\n");
+            //40 vehicles each coming in and out 50 times, 20 minutes apart
+            for (int round = 0; round < 50; round++) {
+                for (int vehicle = 0; vehicle < 40; vehicle++) {
+                    long time = start + (round * 2 * 40 + vehicle) * 20 * 60 * 1000L;
+                    writer.write(time + ",ENTRY,V" + vehicle + ",CAR\n");
+                }
+                for (int vehicle = 0; vehicle < 40; vehicle++) {
+                    if (round < 49 || vehicle % 2 == 0) {
+                        long time = start + ((round * 2 + 1) * 40 + vehicle) * 20 * 60 * 1000L;
+                        writer.write(time + ",EXIT,V" + vehicle + "\n");
+                    }
+                }
+            }
+        }
+
+        GateEventBatchProcessor processor = new GateEventBatchProcessor(250);
+        processor.dataBaseConfig = dataBaseConfig;
+        BatchReport report = processor.process(events);
+
+        assertEquals(2000, report.getEntries());
+        assertEquals(1981, report.getExits());
+        assertEquals(0, report.getRejected());
+        assertEquals(20, report.getParkedVehicles());
+        assertEquals(2001, count("select count(*) from ticket"));
+        assertEquals(1, count("select count(*) from ticket where VEHICLE_REG_NUMBER = 'LIVE1' and OUT_TIME is not null"));
+        assertEquals(20, count("select count(*) from ticket where OUT_TIME is null"));
+        assertEquals(20, count("select count(*) from parking where AVAILABLE = false"));
+        assertEquals(20, count("select count(*) from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER"
+                + " where t.OUT_TIME is null and p.AVAILABLE = false"));
+    }
+
+    private double price(String vehicleRegNumber, String inTime) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            PreparedStatement ps = connection.prepareStatement(
+                    "select PRICE from ticket where VEHICLE_REG_NUMBER = ? and IN_TIME = ?");
+            ps.setString(1, vehicleRegNumber);
+            ps.setTimestamp(2, new Timestamp(Instant.parse(inTime).toEpochMilli()));
+            ResultSet rs = ps.executeQuery();
+            assertTrue(rs.next());
+            return rs.getDouble(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private long timestamp(String sql) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            ResultSet rs = connection.createStatement().executeQuery(sql);
+            rs.next();
+            return rs.getTimestamp(1).getTime();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private int count(String sql) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            ResultSet rs = connection.createStatement().executeQuery(sql);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
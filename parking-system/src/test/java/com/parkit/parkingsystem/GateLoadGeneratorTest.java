@@ -0,0 +1,80 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.load.GateLoadGenerator;
+import com.parkit.parkingsystem.load.LatencyRecorder;
+import com.parkit.parkingsystem.load.LoadProfile;
+import com.parkit.parkingsystem.load.LoadReport;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateLoadGeneratorTest {
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("load");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+        dataBasePrepareService.addParkingSpots(100, 30, "CAR");
+    }
+
+    @Test
+    public void shortRunReportsTrafficAndEmptiesTheSiteTest() throws Exception {
+        LoadProfile profile = new LoadProfile();
+        profile.set("gates=3");
+        profile.set("seconds=2");
+        profile.set("arrivalsPerSecond=40");
+        profile.set("meanStayMillis=300");
+        profile.set("loyalCustomers=20");
+        GateLoadGenerator generator = new GateLoadGenerator(profile, dataBaseConfig);
+
+        LoadReport report = generator.run();
+
+        assertTrue(report.getEntries() > 0);
+        assertTrue(report.getExits() > 0);
+        assertEquals(0, report.getFailedExits());
+        assertEquals(report.getEntries() + report.getRejectedEntries(), report.getEntryLatency().getCount());
+        assertTrue(report.getEntryLatency().percentile(50) <= report.getEntryLatency().percentile(99.9));
+        assertTrue(report.getMaxActiveConnections() <= report.getMaxPoolSize());
+        assertEquals(0, count("select count(*) from ticket where OUT_TIME is null"));
+        assertEquals(20, count("select count(distinct VEHICLE_REG_NUMBER) from ticket where VEHICLE_REG_NUMBER like 'L%'"));
+    }
+
+    @Test
+    public void databaseMustBeGivenTest() {
+        assertThrows(IllegalArgumentException.class, () -> GateLoadGenerator.main(new String[]{"gates=1"}));
+        assertThrows(IllegalArgumentException.class, () -> new GateLoadGenerator(new LoadProfile(), null));
+    }
+
+    @Test
+    public void percentileUsesNearestRankTest() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 1000; i >= 1; i--) {
+            recorder.record(i);
+        }
+
+        assertEquals(500, recorder.percentile(50));
+        assertEquals(990, recorder.percentile(99));
+        assertEquals(999, recorder.percentile(99.9));
+        assertEquals(1000, recorder.getMax());
+        assertEquals(0, new LatencyRecorder().percentile(99));
+    }
+
+    private int count(String sql) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            ResultSet rs = connection.createStatement().executeQuery(sql);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.server.GateServer;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateServerTest {
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("http");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+    private GateServer gateServer;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @AfterEach
+    private void tearDown() {
+        gateServer.stop();
+    }
+
+    @Test
+    public void entryFareAndExitOverHttpTest() throws Exception {
+        startServer(10);
+
+        Reply entry = call("POST", "/entries?plate=ABCDEF&type=car");
+        assertEquals(200, entry.status);
+        assertTrue(entry.body.contains("\"parkingNumber\":1,\"level\":0,\"zone\":\"A\""));
+        assertEquals(409, call("POST", "/entries?plate=ABCDEF&type=CAR").status);
+        assertTrue(call("GET", "/occupancy").body.contains("\"CAR\":{\"free\":2}"));
+
+        Reply fare = call("GET", "/fares?plate=ABCDEF");
+        assertEquals(200, fare.status);
+        assertTrue(fare.body.contains("\"fare\":"));
+
+        Reply exit = call("POST", "/exits?plate=ABCDEF");
+        assertEquals(200, exit.status);
+        assertTrue(exit.body.contains("\"outTime\":"));
+        assertEquals(404, call("POST", "/exits?plate=ABCDEF").status);
+    }
+
+    @Test
+    public void badRequestsAreRejectedTest() throws Exception {
+        startServer(10);
+
+        assertEquals(400, call("POST", "/entries?plate=ABCDEF&type=TRUCK").status);
+        assertEquals(400, call("POST", "/entries?type=CAR").status);
+        assertEquals(405, call("GET", "/entries?plate=ABCDEF&type=CAR").status);
+        //longer than the plate column
+        assertEquals(400, call("POST", "/entries?plate=ABCDEFGHIJK&type=CAR").status);
+        assertEquals(413, call("POST", "/entries?plate=ABCDEF&type=CAR", new byte[8192]).status);
+    }
+
+    @Test
+    public void controlCharactersInPlatesAreEscapedTest() throws Exception {
+        startServer(10);
+
+        Reply entry = call("POST", "/entries?plate=AB%01CD&type=CAR");
+
+        assertEquals(200, entry.status);
+        assertTrue(entry.body.contains("\"vehicleRegNumber\":\"AB\\u0001CD\""));
+    }
+
+    @Test
+    public void requestsBeyondAdmissionLimitAreShedTest() throws Exception {
+        startServer(0);
+
+        Reply reply = call("GET", "/occupancy");
+
+        assertEquals(503, reply.status);
+        assertEquals(1, gateServer.getShedRequests());
+    }
+
+    @Test
+    public void requestsAreRoutedByFacilityTest() throws Exception {
+        startServer(10);
+
+        assertEquals(200, call("POST", "/entries?plate=ABCDEF&type=CAR&facility=main").status);
+        assertTrue(call("GET", "/occupancy").body.contains("\"CAR\":{\"free\":2}"));
+        Reply unknown = call("GET", "/occupancy?facility=east");
+        assertEquals(404, unknown.status);
+        assertTrue(unknown.body.contains("unknown facility"));
+    }
+
+    private void startServer(int maxInFlight) throws Exception {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ParkingSessionDAO parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+        gateServer = new GateServer(new InetSocketAddress("localhost", 0),
+                new ParkingService(parkingSpotDAO, ticketDAO, parkingSessionDAO), maxInFlight);
+        gateServer.start();
+    }
+
+    private Reply call(String method, String path) throws Exception {
+        return call(method, path, null);
+    }
+
+    private Reply call(String method, String path, byte[] body) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + gateServer.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream reply = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            reply.write(buffer, 0, read);
+        }
+        in.close();
+        return new Reply(status, new String(reply.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static final class Reply {
+        private final int status;
+        private final String body;
+
+        private Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.storage.InMemoryParkingStorage;
+import com.parkit.parkingsystem.storage.ParkingStorage;
+
+public class InMemoryParkingStorageTest extends ParkingStorageConformance {
+
+    @Override
+    protected ParkingStorage newStorage() {
+        return new InMemoryParkingStorage(5)
+                .addParkingSpots(1, 3, ParkingType.CAR)
+                .addParkingSpots(4, 2, ParkingType.BIKE);
+    }
+}
@@ -0,0 +1,24 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.storage.JdbcParkingStorage;
+import com.parkit.parkingsystem.storage.ParkingStorage;
+import org.junit.jupiter.api.BeforeAll;
+
+public class JdbcParkingStorageTest extends ParkingStorageConformance {
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("storage");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+    }
+
+    @Override
+    protected ParkingStorage newStorage() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        return new JdbcParkingStorage(dataBaseConfig);
+    }
+}
@@ -0,0 +1,87 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.OccupancyCounters;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.storage.InMemoryParkingStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OccupancyCountersTest {
+
+    private InMemoryParkingStorage storage;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        storage = new InMemoryParkingStorage(120)
+                .addParkingSpots(1, 100, ParkingType.CAR)
+                .addParkingSpots(101, 20, ParkingType.BIKE);
+        parkingService = new ParkingService(storage);
+        assertTrue(parkingService.reconcileOccupancy());
+    }
+
+    @Test
+    public void countersFollowConcurrentGatesTest() throws Exception {
+        int gates = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(gates);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int gate = 0; gate < gates; gate++) {
+                String prefix = "G" + gate + "-";
+                results.add(executor.submit((Callable<Integer>) () -> {
+                    start.await();
+                    int parked = 0;
+                    for (int i = 0; i < 200; i++) {
+                        String vehicleRegNumber = prefix + (i % 20);
+                        GateResult result = i % 3 == 2 ? parkingService.exitVehicle(vehicleRegNumber)
+                                : parkingService.enterVehicle(vehicleRegNumber, ParkingType.CAR);
+                        if (result.isAccepted()) {
+                            parked += i % 3 == 2 ? -1 : 1;
+                        }
+                    }
+                    return parked;
+                }));
+            }
+            start.countDown();
+            int parked = 0;
+            for (Future<Integer> result : results) {
+                parked += result.get();
+            }
+            OccupancyCounters occupancy = parkingService.getOccupancy();
+            assertEquals(parked, occupancy.getOccupied(ParkingType.CAR));
+            assertEquals(storage.getParkingSpotRepository().getFreeSpotCount(ParkingType.CAR), occupancy.getFree(ParkingType.CAR));
+            assertEquals(20, occupancy.getFree(ParkingType.BIKE));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void reconciliationTakesInChangesMadeElsewhereTest() {
+        assertTrue(parkingService.enterVehicle("BIKE1", ParkingType.BIKE).isAccepted());
+        assertEquals(19, parkingService.getFreeSpots().get(ParkingType.BIKE).intValue());
+
+        //a spot closed for maintenance without going through the gates
+        storage.getParkingSpotRepository().updateParking(new ParkingSpot(102, ParkingType.BIKE, false));
+        assertEquals(19, parkingService.getFreeSpots().get(ParkingType.BIKE).intValue());
+
+        assertTrue(parkingService.reconcileOccupancy());
+        assertEquals(18, parkingService.getFreeSpots().get(ParkingType.BIKE).intValue());
+        assertEquals(2, parkingService.getOccupancy().getOccupied(ParkingType.BIKE));
+        assertEquals(20, parkingService.getOccupancy().getCapacity(ParkingType.BIKE));
+    }
+}
@@ -0,0 +1,106 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many gates sharing one ParkingService in the same process.
+ */
+public class ParkingServiceConcurrencyTest {
+
+    private static final int GATES = 8;
+    private static final int VEHICLES_PER_GATE = 20;
+    private static final int CAR_SPOTS = 3 + 100;
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("gates");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+        dataBasePrepareService.addParkingSpots(100, 100, "CAR");
+    }
+
+    @Test
+    public void concurrentGatesShareOneServiceTest() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ParkingSessionDAO parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO, parkingSessionDAO);
+
+        List<GateResult> entries = runGates(plate -> parkingService.enterVehicle(plate, ParkingType.CAR));
+        Set<Integer> spots = new HashSet<>();
+        int full = 0;
+        for (GateResult result : entries) {
+            if (result.isAccepted()) {
+                assertTrue(spots.add(result.getParkingSpot().getId()));
+            } else {
+                assertEquals(GateResult.Rejection.PARKING_FULL, result.getRejection());
+                full++;
+            }
+        }
+        assertEquals(CAR_SPOTS, spots.size());
+        assertEquals(GATES * VEHICLES_PER_GATE - CAR_SPOTS, full);
+
+        List<GateResult> exits = runGates(parkingService::exitVehicle);
+        int paid = 0;
+        for (GateResult result : exits) {
+            if (result.isAccepted()) {
+                paid++;
+            } else {
+                assertEquals(GateResult.Rejection.NOT_PARKED, result.getRejection());
+            }
+        }
+        assertEquals(CAR_SPOTS, paid);
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    private List<GateResult> runGates(Function<String, GateResult> action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(GATES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<GateResult>>> futures = new ArrayList<>();
+        for (int gate = 0; gate < GATES; gate++) {
+            final int gateNumber = gate;
+            Callable<List<GateResult>> task = () -> {
+                List<GateResult> results = new ArrayList<>();
+                start.await();
+                for (int i = 0; i < VEHICLES_PER_GATE; i++) {
+                    results.add(action.apply("G" + gateNumber + "V" + i));
+                }
+                return results;
+            };
+            futures.add(executor.submit(task));
+        }
+        start.countDown();
+        List<GateResult> results = new ArrayList<>();
+        for (Future<List<GateResult>> future : futures) {
+            results.addAll(future.get());
+        }
+        executor.shutdown();
+        return results;
+    }
+}
@@ -1,10 +1,13 @@
 package com.parkit.parkingsystem;
 
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.GateResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.BeforeEach;
@@ -23,6 +26,7 @@ import java.util.Date;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 
@@ -38,14 +42,16 @@ public class ParkingServiceTest {
     private static ParkingSpotDAO parkingSpotDAO;
     @Mock
     private static TicketDAO ticketDAO;
+    @Mock
+    private static ParkingSessionDAO parkingSessionDAO;
 
 
 
    @BeforeEach
     private void setUpPerTest() {
 	    try {
-            when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
-            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+            lenient().when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, parkingSessionDAO);
         } catch (Exception e) {
             e.printStackTrace();
             throw  new RuntimeException("Failed to set up test mock objects");
@@ -61,13 +67,11 @@ public class ParkingServiceTest {
         ticket.setParkingSpot(parkingSpot);
         ticket.setVehicleRegNumber("ABCDEF");     
      
-        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
-        when(ticketDAO.updateTicket(ticket)).thenReturn(true);
-        when(parkingSpotDAO.updateParking(ticket.getParkingSpot())).thenReturn(true);
+        stubExitVehicle(ticket);
 
         parkingService.processExitingVehicle();
       
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        verify(parkingSessionDAO, Mockito.times(1)).exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class));
 
     }
     
@@ -76,10 +80,12 @@ public class ParkingServiceTest {
 		
     when(inputReaderUtil.readSelection()).thenReturn(1);
 
-        when(parkingSpotDAO.getNextAvailableSlot(CAR)).thenReturn(1);
+        when(parkingSessionDAO.enterVehicle(any(Ticket.class))).thenReturn(1);
         parkingService.processIncomingVehicle();
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
-        verify(ticketDAO, Mockito.times(1)).saveTicket(any(Ticket.class));
+        ArgumentCaptor<Ticket> ticketCaptor = ArgumentCaptor.forClass(Ticket.class);
+        verify(parkingSessionDAO, Mockito.times(1)).enterVehicle(ticketCaptor.capture());
+        assertEquals(CAR, ticketCaptor.getValue().getParkingSpot().getParkingType());
+        assertEquals("ABCDEF", ticketCaptor.getValue().getVehicleRegNumber());
     }
 
     @Test
@@ -87,12 +93,13 @@ public class ParkingServiceTest {
     	
         when(inputReaderUtil.readSelection()).thenReturn(2);
 
-        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE)).thenReturn(4);
+        when(parkingSessionDAO.enterVehicle(any(Ticket.class))).thenReturn(1);
 
         parkingService.processIncomingVehicle();
 
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
-        verify(ticketDAO, Mockito.times(1)).saveTicket(any(Ticket.class));
+        ArgumentCaptor<Ticket> ticketCaptor = ArgumentCaptor.forClass(Ticket.class);
+        verify(parkingSessionDAO, Mockito.times(1)).enterVehicle(ticketCaptor.capture());
+        assertEquals(BIKE, ticketCaptor.getValue().getParkingSpot().getParkingType());
 
     }
 
@@ -104,12 +111,10 @@ public class ParkingServiceTest {
         ticket.setInTime(new Date(System.currentTimeMillis() - (60*60*1000)));
         ticket.setParkingSpot(parkingSpot);
         ticket.setVehicleRegNumber("ABCDEF");     
-        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
-        when(ticketDAO.updateTicket(ticket)).thenReturn(true);
-        when(parkingSpotDAO.updateParking(ticket.getParkingSpot())).thenReturn(true);
+        stubExitVehicle(ticket);
 
         parkingService.processExitingVehicle();
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        verify(parkingSessionDAO, Mockito.times(1)).exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class));
         assertNotNull(ticket.getInTime());
         assertEquals("ABCDEF",ticket.getVehicleRegNumber());
         assertThat(ticket.getPrice()).isGreaterThanOrEqualTo(0);
@@ -124,11 +129,9 @@ public class ParkingServiceTest {
         ticket.setInTime(new Date(System.currentTimeMillis() - (60*60*1000)));
         ticket.setParkingSpot(parkingSpot);
         ticket.setVehicleRegNumber("ABCDEF");     
-        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
-        when(ticketDAO.updateTicket(ticket)).thenReturn(true);
-        when(parkingSpotDAO.updateParking(ticket.getParkingSpot())).thenReturn(true);
+        stubExitVehicle(ticket);
         parkingService.processExitingVehicle();
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        verify(parkingSessionDAO, Mockito.times(1)).exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class));
         assertNotNull(ticket.getInTime());
         assertEquals("ABCDEF",ticket.getVehicleRegNumber());
         assertThat(ticket.getPrice()).isGreaterThanOrEqualTo(0);
@@ -139,15 +142,102 @@ public class ParkingServiceTest {
     public void processIncomingCarWithAnExistingVehicleNumberTest() throws Exception {
         when(inputReaderUtil.readSelection()).thenReturn(1); 
 
-        when(parkingSpotDAO.getNextAvailableSlot(CAR)).thenReturn(1);
-        when(ticketDAO.alreadyAtParking("ABCDEF")).thenReturn(true); 
+        when(parkingSessionDAO.enterVehicle(any(Ticket.class))).thenAnswer(invocation -> {
+            invocation.<Ticket>getArgument(0).setAtParking(true);
+            return -1;
+        });
         parkingService.processIncomingVehicle();
-        verify(parkingSpotDAO, times(0)).updateParking(any());
+        verify(parkingSessionDAO, times(1)).enterVehicle(any(Ticket.class));
+        verify(parkingSpotDAO, times(0)).claimNextAvailableSlot(any());
         verify(ticketDAO, times(0)).saveTicket(any());
 
 
     }
-    
-  
-    
+
+    @Test
+    public void processExitingUnknownVehicleTest() throws Exception {
+        when(parkingSessionDAO.exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class))).thenReturn(null);
+
+        parkingService.processExitingVehicle();
+
+        verify(parkingSessionDAO, Mockito.times(1)).exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class));
+    }
+
+    //the DAO prices the ticket with the calculator it is given, as the real one does
+    private void stubExitVehicle(Ticket ticket) {
+        when(parkingSessionDAO.exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class))).thenAnswer(invocation -> {
+            ticket.setOutTime(invocation.getArgument(1));
+            invocation.<FareCalculatorService>getArgument(2).calculateFare(ticket);
+            return ticket;
+        });
+    }
+
+    @Test
+    public void processIncomingCarWhenParkingIsFullTest() throws Exception {
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSessionDAO.enterVehicle(any(Ticket.class))).thenReturn(-1);
+
+        parkingService.processIncomingVehicle();
+
+        verify(parkingSessionDAO, times(1)).enterVehicle(any(Ticket.class));
+        verify(ticketDAO, times(0)).saveTicket(any());
+    }
+
+    @Test
+    public void enterVehicleReturnsTicketWithSpotTest() {
+        when(parkingSessionDAO.enterVehicle(any(Ticket.class))).thenAnswer(invocation -> {
+            invocation.<Ticket>getArgument(0).getParkingSpot().setId(3);
+            return 7;
+        });
+
+        GateResult result = parkingService.enterVehicle("ABCDEF", BIKE);
+
+        assertTrue(result.isAccepted());
+        assertNull(result.getRejection());
+        assertEquals(3, result.getParkingSpot().getId());
+        assertEquals(BIKE, result.getParkingSpot().getParkingType());
+        assertEquals("ABCDEF", result.getTicket().getVehicleRegNumber());
+        verifyZeroInteractions(inputReaderUtil);
+    }
+
+    @Test
+    public void enterVehicleRejectionsAreTypedTest() {
+        when(parkingSessionDAO.enterVehicle(any(Ticket.class))).thenAnswer(invocation -> {
+            invocation.<Ticket>getArgument(0).setAtParking(true);
+            return -1;
+        }).thenReturn(-1);
+
+        assertEquals(GateResult.Rejection.ALREADY_PARKED, parkingService.enterVehicle("ABCDEF", CAR).getRejection());
+        assertEquals(GateResult.Rejection.PARKING_FULL, parkingService.enterVehicle("GHIJKL", CAR).getRejection());
+        assertEquals(GateResult.Rejection.INVALID_VEHICLE, parkingService.enterVehicle(" ", CAR).getRejection());
+        assertEquals(GateResult.Rejection.INVALID_VEHICLE, parkingService.enterVehicle("ABCDEF", null).getRejection());
+        verify(parkingSessionDAO, times(2)).enterVehicle(any(Ticket.class));
+    }
+
+    @Test
+    public void exitVehicleReturnsFareTest() {
+        Ticket ticket = new Ticket();
+        ticket.setInTime(new Date(System.currentTimeMillis() - (3 * 60 * 60 * 1000)));
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        stubExitVehicle(ticket);
+
+        GateResult result = parkingService.exitVehicle("ABCDEF");
+
+        assertTrue(result.isAccepted());
+        assertEquals(ticket.getPrice(), result.getFare());
+        assertThat(result.getFare()).isGreaterThan(0);
+    }
+
+    @Test
+    public void exitVehicleNotParkedIsRejectedTest() {
+        when(parkingSessionDAO.exitVehicle(eq("ABCDEF"), any(Date.class), any(FareCalculatorService.class))).thenReturn(null);
+        when(parkingSessionDAO.isAtParking("ABCDEF")).thenReturn(false);
+
+        GateResult result = parkingService.exitVehicle("ABCDEF");
+
+        assertFalse(result.isAccepted());
+        assertEquals(GateResult.Rejection.NOT_PARKED, result.getRejection());
+        assertNull(result.getTicket());
+    }
 }
@@ -0,0 +1,277 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.LoyaltyRegistry;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.model.ActiveSession;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSessionDAOTest {
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig();
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+    private ParkingSpotDAO parkingSpotDAO;
+    private ParkingSessionDAO parkingSessionDAO;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @Test
+    public void enterVehicleClaimsSpotAndSavesTicketTest() throws Exception {
+        Ticket ticket = newTicket("ABCDEF", ParkingType.CAR);
+
+        int ticketId = parkingSessionDAO.enterVehicle(ticket);
+
+        assertTrue(ticketId > 0);
+        assertEquals(ticketId, ticket.getId());
+        assertEquals(1, ticket.getParkingSpot().getId());
+        assertFalse(ticket.getRecurent());
+        assertEquals(1, count("select count(*) from ticket where OUT_TIME is null and PARKING_NUMBER = 1"));
+        assertEquals(1, count("select count(*) from parking where AVAILABLE = false and PARKING_NUMBER = 1"));
+    }
+
+    @Test
+    public void enterVehicleAlreadyParkedIsRejectedTest() throws Exception {
+        parkingSessionDAO.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+        Ticket second = newTicket("ABCDEF", ParkingType.CAR);
+
+        assertEquals(-1, parkingSessionDAO.enterVehicle(second));
+        assertTrue(second.getAtParking());
+        assertEquals(1, count("select count(*) from ticket"));
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void enterVehicleWithClosedTicketIsRecurentTest() throws Exception {
+        parkingSessionDAO.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+        parkingSessionDAO.exitVehicle("ABCDEF", new Date(), new FareCalculatorService());
+        Ticket ticket = newTicket("ABCDEF", ParkingType.CAR);
+
+        assertTrue(parkingSessionDAO.enterVehicle(ticket) > 0);
+        assertTrue(ticket.getRecurent());
+    }
+
+    @Test
+    public void loyaltyRegistryIsWarmedFromClosedTicketsTest() throws Exception {
+        parkingSessionDAO.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+        parkingSessionDAO.exitVehicle("ABCDEF", new Date(), new FareCalculatorService());
+
+        ParkingSessionDAO restarted = new ParkingSessionDAO(parkingSpotDAO);
+        restarted.dataBaseConfig = dataBaseConfig;
+        assertTrue(restarted.loadLoyalVehicles());
+        LoyaltyRegistry loyaltyRegistry = restarted.getLoyaltyRegistry();
+        Ticket returning = newTicket("ABCDEF", ParkingType.CAR);
+        Ticket firstVisit = newTicket("GHIJKL", ParkingType.CAR);
+
+        assertTrue(restarted.enterVehicle(returning) > 0);
+        assertTrue(restarted.enterVehicle(firstVisit) > 0);
+        assertTrue(returning.getRecurent());
+        assertFalse(firstVisit.getRecurent());
+        assertEquals(1, loyaltyRegistry.getHitCount());
+        assertEquals(1, loyaltyRegistry.getMissCount());
+    }
+
+    @Test
+    public void loyalVehicleParkedThroughAnotherGateIsRejectedTest() throws Exception {
+        parkingSessionDAO.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+        parkingSessionDAO.exitVehicle("ABCDEF", new Date(), new FareCalculatorService());
+        ParkingSessionDAO otherGate = new ParkingSessionDAO(parkingSpotDAO);
+        otherGate.dataBaseConfig = dataBaseConfig;
+        otherGate.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+        Ticket second = newTicket("ABCDEF", ParkingType.CAR);
+
+        assertTrue(parkingSessionDAO.getLoyaltyRegistry().contains("ABCDEF"));
+        assertEquals(-1, parkingSessionDAO.enterVehicle(second));
+        assertTrue(second.getAtParking());
+        assertEquals(1, count("select count(*) from ticket where OUT_TIME is null"));
+    }
+
+    @Test
+    public void enterVehicleWhenFullLeavesNothingBehindTest() throws Exception {
+        assertTrue(parkingSessionDAO.enterVehicle(newTicket("BIKE1", ParkingType.BIKE)) > 0);
+        assertTrue(parkingSessionDAO.enterVehicle(newTicket("BIKE2", ParkingType.BIKE)) > 0);
+        Ticket ticket = newTicket("BIKE3", ParkingType.BIKE);
+
+        assertEquals(-1, parkingSessionDAO.enterVehicle(ticket));
+        assertEquals(0, ticket.getParkingSpot().getId());
+        assertEquals(2, count("select count(*) from ticket"));
+    }
+
+    @Test
+    public void failedTicketInsertRollsBackSpotClaimTest() throws Exception {
+        //longer than the VEHICLE_REG_NUMBER column, so the insert fails after the spot was claimed
+        Ticket ticket = newTicket("ABCDEFGHIJKLMNOP", ParkingType.CAR);
+
+        assertEquals(-1, parkingSessionDAO.enterVehicle(ticket));
+        assertEquals(0, count("select count(*) from ticket"));
+        assertEquals(3, count("select count(*) from parking where AVAILABLE = true and TYPE = 'CAR'"));
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void exitVehicleClosesTicketAndFreesSpotTest() throws Exception {
+        Ticket entry = newTicket("ABCDEF", ParkingType.CAR);
+        entry.setInTime(new Date(System.currentTimeMillis() - (3 * 60 * 60 * 1000)));
+        parkingSessionDAO.enterVehicle(entry);
+
+        Ticket ticket = parkingSessionDAO.exitVehicle("ABCDEF", new Date(), new FareCalculatorService());
+
+        assertNotNull(ticket);
+        assertEquals(entry.getId(), ticket.getId());
+        assertFalse(ticket.getRecurent());
+        assertEquals(2.5 * Fare.CAR_RATE_PER_HOUR, ticket.getPrice());
+        assertEquals(1, count("select count(*) from ticket where OUT_TIME is not null and PRICE = " + ticket.getPrice()));
+        assertEquals(3, count("select count(*) from parking where AVAILABLE = true and TYPE = 'CAR'"));
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void exitVehicleAppliesLoyaltyFromEarlierTicketsTest() throws Exception {
+        parkingSessionDAO.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+        parkingSessionDAO.exitVehicle("ABCDEF", new Date(), new FareCalculatorService());
+        Ticket entry = newTicket("ABCDEF", ParkingType.CAR);
+        entry.setInTime(new Date(System.currentTimeMillis() - (3 * 60 * 60 * 1000)));
+        parkingSessionDAO.enterVehicle(entry);
+
+        Ticket ticket = parkingSessionDAO.exitVehicle("ABCDEF", new Date(), new FareCalculatorService());
+
+        assertTrue(ticket.getRecurent());
+        assertEquals(Math.round(2.5 * Fare.CAR_RATE_PER_HOUR * 0.95), ticket.getPrice());
+    }
+
+    @Test
+    public void exitVehicleWithoutOpenTicketReturnsNullTest() throws Exception {
+        parkingSessionDAO.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+        assertNotNull(parkingSessionDAO.exitVehicle("ABCDEF", new Date(), new FareCalculatorService()));
+
+        assertNull(parkingSessionDAO.exitVehicle("ABCDEF", new Date(), new FareCalculatorService()));
+        assertNull(parkingSessionDAO.exitVehicle("UNKNOWN", new Date(), new FareCalculatorService()));
+    }
+
+    @Test
+    public void openSessionsAreRebuiltFromDataBaseTest() throws Exception {
+        Ticket entry = newTicket("ABCDEF", ParkingType.BIKE);
+        parkingSessionDAO.enterVehicle(entry);
+
+        ParkingSessionDAO restarted = new ParkingSessionDAO(parkingSpotDAO);
+        restarted.dataBaseConfig = dataBaseConfig;
+        assertTrue(restarted.loadActiveSessions());
+
+        assertTrue(restarted.isAtParking("ABCDEF"));
+        assertFalse(restarted.isAtParking("GHIJKL"));
+        ActiveSession session = restarted.getActiveSession("ABCDEF");
+        assertEquals(entry.getId(), session.getTicketId());
+        assertEquals(4, session.getParkingNumber());
+        assertEquals(ParkingType.BIKE, session.getParkingType());
+        assertNotNull(restarted.exitVehicle("ABCDEF", new Date(), new FareCalculatorService()));
+        assertFalse(restarted.isAtParking("ABCDEF"));
+    }
+
+    @Test
+    public void exitVehicleOpenedByAnotherProcessFallsBackToDataBaseTest() throws Exception {
+        ParkingSessionDAO otherGate = new ParkingSessionDAO(parkingSpotDAO);
+        otherGate.dataBaseConfig = dataBaseConfig;
+        otherGate.loadActiveSessions();
+        parkingSessionDAO.loadActiveSessions();
+        otherGate.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+
+        assertNull(parkingSessionDAO.getActiveSession("ABCDEF"));
+        assertNotNull(parkingSessionDAO.exitVehicle("ABCDEF", new Date(), new FareCalculatorService()));
+        assertEquals(0, count("select count(*) from ticket where OUT_TIME is null"));
+    }
+
+    @Test
+    public void vehicleThatLeftThroughAnotherNodeCanEnterAgainTest() throws Exception {
+        ParkingSessionDAO otherGate = new ParkingSessionDAO(parkingSpotDAO);
+        otherGate.dataBaseConfig = dataBaseConfig;
+        otherGate.loadActiveSessions();
+        parkingSessionDAO.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+        assertNotNull(otherGate.exitVehicle("ABCDEF", new Date(), new FareCalculatorService()));
+        Ticket again = newTicket("ABCDEF", ParkingType.CAR);
+
+        assertTrue(parkingSessionDAO.isAtParking("ABCDEF"));
+        assertTrue(parkingSessionDAO.enterVehicle(again) > 0);
+        assertTrue(again.getRecurent());
+        assertEquals(again.getId(), parkingSessionDAO.getActiveSession("ABCDEF").getTicketId());
+        assertEquals(1, count("select count(*) from ticket where OUT_TIME is null"));
+    }
+
+    @Test
+    public void reloadDropsSessionsClosedElsewhereTest() throws Exception {
+        ParkingSessionDAO otherGate = new ParkingSessionDAO(parkingSpotDAO);
+        otherGate.dataBaseConfig = dataBaseConfig;
+        otherGate.loadActiveSessions();
+        parkingSessionDAO.enterVehicle(newTicket("ABCDEF", ParkingType.CAR));
+        parkingSessionDAO.enterVehicle(newTicket("GHIJKL", ParkingType.CAR));
+        otherGate.exitVehicle("ABCDEF", new Date(), new FareCalculatorService());
+
+        assertTrue(parkingSessionDAO.loadActiveSessions());
+
+        assertFalse(parkingSessionDAO.isAtParking("ABCDEF"));
+        assertTrue(parkingSessionDAO.isAtParking("GHIJKL"));
+    }
+
+    @Test
+    public void fullCarParkIsReloadedAtMostOncePerIntervalTest() throws Exception {
+        for (String vehicleRegNumber : new String[]{"CAR1", "CAR2", "CAR3"}) {
+            assertTrue(parkingSessionDAO.enterVehicle(newTicket(vehicleRegNumber, ParkingType.CAR)) > 0);
+        }
+        assertEquals(-1, parkingSessionDAO.enterVehicle(newTicket("LATE1", ParkingType.CAR)));
+        //a car leaves through another node, whose free spot index is not this one's
+        ParkingSpotDAO otherSpots = new ParkingSpotDAO();
+        otherSpots.dataBaseConfig = dataBaseConfig;
+        ParkingSessionDAO otherGate = new ParkingSessionDAO(otherSpots);
+        otherGate.dataBaseConfig = dataBaseConfig;
+        assertNotNull(otherGate.exitVehicle("CAR2", new Date(), new FareCalculatorService()));
+
+        assertEquals(-1, parkingSessionDAO.enterVehicle(newTicket("LATE2", ParkingType.CAR)));
+        Thread.sleep(1100);
+        assertTrue(parkingSessionDAO.enterVehicle(newTicket("LATE2", ParkingType.CAR)) > 0);
+        assertEquals(3, count("select count(*) from ticket where OUT_TIME is null"));
+    }
+
+    private Ticket newTicket(String vehicleRegNumber, ParkingType parkingType) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(0, parkingType, true));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date());
+        return ticket;
+    }
+
+    private int count(String sql) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            ResultSet rs = connection.createStatement().executeQuery(sql);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Several gates, each with its own ParkingSpotDAO as if running in separate processes,
+ * race to claim every car spot of the same parking table.
+ */
+public class ParkingSpotClaimContentionTest {
+
+    private static final int GATES = 8;
+    private static final int EXTRA_CAR_SPOTS = 400;
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("contention");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+        dataBasePrepareService.addParkingSpots(100, EXTRA_CAR_SPOTS, "CAR");
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @Test
+    public void concurrentGatesNeverClaimTheSameSpotTest() throws Exception {
+        int carSpots = 3 + EXTRA_CAR_SPOTS;
+        ExecutorService executor = Executors.newFixedThreadPool(GATES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<ParkingSpotDAO> gates = new ArrayList<>();
+        List<Future<List<Integer>>> results = new ArrayList<>();
+        for (int i = 0; i < GATES; i++) {
+            ParkingSpotDAO gate = new ParkingSpotDAO();
+            gate.dataBaseConfig = dataBaseConfig;
+            gate.loadFreeSpotIndex();
+            gates.add(gate);
+            results.add(executor.submit(claimUntilFull(gate, start)));
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        List<Integer> claimed = new ArrayList<>();
+        for (Future<List<Integer>> result : results) {
+            claimed.addAll(result.get());
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        Set<Integer> distinct = new HashSet<>(claimed);
+        long conflicts = 0;
+        for (ParkingSpotDAO gate : gates) {
+            conflicts += gate.getClaimConflicts();
+        }
+        //timings vary from run to run, so they are only reported; see SpotClaimContentionBenchmark to measure them
+        String summary = claimed.size() + " spots claimed by " + GATES + " gates at "
+                + (long) (claimed.size() / (elapsedNanos / 1e9)) + " claims/s, " + conflicts + " lost races, "
+                + (claimed.size() - distinct.size()) + " duplicate allocations";
+        assertEquals(distinct.size(), claimed.size(), summary);
+        assertEquals(carSpots, claimed.size(), summary);
+    }
+
+    @Test
+    public void reloadsNeverMakeClaimsSeeAFullParkingTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(GATES + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        //two gates, each claiming from four threads while their index is reloaded over and over
+        List<ParkingSpotDAO> gates = new ArrayList<>();
+        List<Future<List<Integer>>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            ParkingSpotDAO gate = new ParkingSpotDAO();
+            gate.dataBaseConfig = dataBaseConfig;
+            gate.loadFreeSpotIndex();
+            gates.add(gate);
+        }
+        for (int i = 0; i < GATES; i++) {
+            ParkingSpotDAO gate = gates.get(i % 2);
+            results.add(executor.submit(() -> {
+                List<Integer> claimed = new ArrayList<>();
+                start.await();
+                for (int j = 0; j < EXTRA_CAR_SPOTS / GATES; j++) {
+                    claimed.add(gate.claimNextAvailableSlot(ParkingType.CAR));
+                }
+                return claimed;
+            }));
+        }
+        AtomicBoolean claiming = new AtomicBoolean(true);
+        executor.submit(() -> {
+            while (claiming.get()) {
+                gates.get(0).loadFreeSpotIndex();
+                gates.get(1).loadFreeSpotIndex();
+            }
+        });
+
+        start.countDown();
+        List<Integer> claimed = new ArrayList<>();
+        for (Future<List<Integer>> result : results) {
+            claimed.addAll(result.get());
+        }
+        claiming.set(false);
+        executor.shutdown();
+
+        assertFalse(claimed.contains(-1));
+        assertEquals(claimed.size(), new HashSet<>(claimed).size());
+    }
+
+    private Callable<List<Integer>> claimUntilFull(ParkingSpotDAO gate, CountDownLatch start) {
+        return () -> {
+            List<Integer> claimed = new ArrayList<>();
+            start.await();
+            int parkingNumber;
+            while ((parkingNumber = gate.claimNextAvailableSlot(ParkingType.CAR)) > 0) {
+                claimed.add(parkingNumber);
+            }
+            return claimed;
+        };
+    }
+}
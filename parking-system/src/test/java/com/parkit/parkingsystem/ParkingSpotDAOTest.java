@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSpotDAOTest {
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig();
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+    private ParkingSpotDAO parkingSpotDAO;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @Test
+    public void nextAvailableSlotIsLowestFreeSpotPerTypeTest() {
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(4, parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE));
+    }
+
+    @Test
+    public void claimNextAvailableSlotWritesThroughTest() throws Exception {
+        assertEquals(1, parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertFalse(isAvailableInDataBase(1));
+    }
+
+    @Test
+    public void updateParkingReleasesSpotIntoIndexTest() throws Exception {
+        assertEquals(4, parkingSpotDAO.claimNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(5, parkingSpotDAO.claimNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(-1, parkingSpotDAO.claimNextAvailableSlot(ParkingType.BIKE));
+
+        assertTrue(parkingSpotDAO.updateParking(new ParkingSpot(4, ParkingType.BIKE, true)));
+        assertEquals(4, parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE));
+        assertTrue(isAvailableInDataBase(4));
+    }
+
+    @Test
+    public void indexIsLoadedFromParkingTableTest() {
+        assertTrue(parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, false)));
+
+        ParkingSpotDAO restarted = new ParkingSpotDAO();
+        restarted.dataBaseConfig = dataBaseConfig;
+        assertTrue(restarted.loadFreeSpotIndex());
+        assertEquals(2, restarted.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    private boolean isAvailableInDataBase(int parkingNumber) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            ResultSet rs = connection.createStatement().executeQuery("select AVAILABLE from parking where PARKING_NUMBER = " + parkingNumber);
+            rs.next();
+            return rs.getBoolean(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
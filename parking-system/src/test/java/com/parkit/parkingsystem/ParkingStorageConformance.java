@@ -0,0 +1,217 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.OccupancyCounters;
+import com.parkit.parkingsystem.storage.ParkingSessionRepository;
+import com.parkit.parkingsystem.storage.ParkingSpotRepository;
+import com.parkit.parkingsystem.storage.ParkingStorage;
+import com.parkit.parkingsystem.storage.TicketRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every {@link ParkingStorage} must have. Subclasses hand out a fresh storage holding
+ * car spots 1 to 3 and bike spots 4 and 5, all free and without tickets.
+ */
+public abstract class ParkingStorageConformance {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private ParkingSpotRepository spots;
+    private TicketRepository tickets;
+    private ParkingSessionRepository sessions;
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+    protected abstract ParkingStorage newStorage() throws Exception;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        ParkingStorage storage = newStorage();
+        spots = storage.getParkingSpotRepository();
+        tickets = storage.getTicketRepository();
+        sessions = storage.getParkingSessionRepository();
+    }
+
+    @Test
+    public void entryTakesLowestFreeSpotOfItsTypeTest() {
+        Ticket car = enter("CAR1", ParkingType.CAR, 0);
+        Ticket bike = enter("BIKE1", ParkingType.BIKE, 0);
+
+        assertTrue(car.getId() > 0);
+        assertEquals(1, car.getParkingSpot().getId());
+        assertEquals(4, bike.getParkingSpot().getId());
+        assertNotEquals(car.getId(), bike.getId());
+        assertEquals(2, spots.getFreeSpotCount(ParkingType.CAR));
+        assertEquals(2, spots.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(1, spots.getFreeSpotCount(ParkingType.BIKE));
+        assertTrue(sessions.isAtParking("CAR1"));
+    }
+
+    @Test
+    public void parkedVehicleCannotEnterAgainTest() {
+        enter("CAR1", ParkingType.CAR, 0);
+
+        Ticket again = newTicket("CAR1", ParkingType.CAR, 0);
+        assertEquals(-1, sessions.enterVehicle(again));
+        assertTrue(again.getAtParking());
+        assertEquals(2, spots.getFreeSpotCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void fullParkingTurnsVehicleAwayTest() {
+        enter("BIKE1", ParkingType.BIKE, 0);
+        enter("BIKE2", ParkingType.BIKE, 0);
+
+        Ticket third = newTicket("BIKE3", ParkingType.BIKE, 0);
+        assertEquals(-1, sessions.enterVehicle(third));
+        assertFalse(third.getAtParking());
+        assertEquals(0, third.getParkingSpot().getId());
+        assertEquals(-1, spots.getNextAvailableSlot(ParkingType.BIKE));
+        assertFalse(sessions.isAtParking("BIKE3"));
+    }
+
+    @Test
+    public void exitPricesTicketAndFreesSpotTest() {
+        Ticket entered = enter("CAR1", ParkingType.CAR, 3);
+        Ticket open = sessions.getOpenTicket("CAR1");
+        assertEquals(entered.getId(), open.getId());
+        assertEquals(entered.getInTime().getTime(), open.getInTime().getTime(), 1000);
+        assertEquals(1, open.getParkingSpot().getId());
+        assertEquals(ParkingType.CAR, open.getParkingSpot().getParkingType());
+
+        Ticket closed = sessions.exitVehicle("CAR1", new Date(), fareCalculatorService);
+
+        assertNotNull(closed);
+        assertEquals(2.5 * 1.5, closed.getPrice(), 0.001);
+        assertNotNull(closed.getOutTime());
+        assertFalse(sessions.isAtParking("CAR1"));
+        assertNull(sessions.getOpenTicket("CAR1"));
+        assertNull(sessions.exitVehicle("CAR1", new Date(), fareCalculatorService));
+        assertEquals(3, spots.getFreeSpotCount(ParkingType.CAR));
+        assertEquals(1, spots.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void unknownVehicleCannotExitTest() {
+        assertNull(sessions.exitVehicle("NOBODY", new Date(), fareCalculatorService));
+        assertNull(sessions.getOpenTicket("NOBODY"));
+        assertFalse(sessions.isAtParking("NOBODY"));
+    }
+
+    @Test
+    public void returningVehicleIsRecurentTest() {
+        assertFalse(enter("CAR1", ParkingType.CAR, 3).getRecurent());
+        sessions.exitVehicle("CAR1", new Date(), fareCalculatorService);
+
+        Ticket back = enter("CAR1", ParkingType.CAR, 3);
+        assertTrue(back.getRecurent());
+        Ticket closed = sessions.exitVehicle("CAR1", new Date(), fareCalculatorService);
+        assertEquals(Math.round(2.5 * 1.5 * 0.95), closed.getPrice(), 0.001);
+    }
+
+    @Test
+    public void concurrentEntriesNeverShareSpotTest() throws Exception {
+        int gates = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(gates);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Ticket>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < gates; i++) {
+                String vehicleRegNumber = "CAR" + i;
+                results.add(executor.submit((Callable<Ticket>) () -> {
+                    start.await();
+                    Ticket ticket = newTicket(vehicleRegNumber, ParkingType.CAR, 0);
+                    return sessions.enterVehicle(ticket) > 0 ? ticket : null;
+                }));
+            }
+            start.countDown();
+            Set<Integer> parkingNumbers = new HashSet<>();
+            int accepted = 0;
+            for (Future<Ticket> result : results) {
+                Ticket ticket = result.get();
+                if (ticket != null) {
+                    accepted++;
+                    assertTrue(parkingNumbers.add(ticket.getParkingSpot().getId()));
+                }
+            }
+            assertEquals(3, accepted);
+            assertEquals(0, spots.getFreeSpotCount(ParkingType.CAR));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void updatedSpotIsNotHandedOutTest() {
+        assertTrue(spots.updateParking(new ParkingSpot(1, ParkingType.CAR, false)));
+        assertEquals(2, enter("CAR1", ParkingType.CAR, 0).getParkingSpot().getId());
+        assertTrue(spots.updateParking(new ParkingSpot(1, ParkingType.CAR, true)));
+        assertEquals(1, enter("CAR2", ParkingType.CAR, 0).getParkingSpot().getId());
+    }
+
+    @Test
+    public void occupancyCountsStoredSpotsTest() {
+        enter("CAR1", ParkingType.CAR, 0);
+        OccupancyCounters occupancy = new OccupancyCounters();
+
+        assertTrue(spots.loadOccupancy(occupancy));
+
+        assertTrue(occupancy.isLoaded());
+        assertEquals(3, occupancy.getCapacity(ParkingType.CAR));
+        assertEquals(2, occupancy.getFree(ParkingType.CAR));
+        assertEquals(1, occupancy.getOccupied(ParkingType.CAR));
+        assertEquals(2, occupancy.getFree(ParkingType.BIKE));
+    }
+
+    @Test
+    public void savedTicketIsReadAndUpdatedTest() {
+        Ticket ticket = newTicket("CAR1", ParkingType.CAR, 2);
+        ticket.getParkingSpot().setId(1);
+        assertTrue(tickets.saveTicket(ticket));
+
+        Ticket saved = tickets.getTicket("CAR1");
+        assertNotNull(saved);
+        assertTrue(saved.getId() > 0);
+        assertEquals(1, saved.getParkingSpot().getId());
+        assertNull(saved.getOutTime());
+        assertNull(tickets.getTicket("NOBODY"));
+
+        saved.setPrice(1.5);
+        saved.setOutTime(new Date());
+        assertTrue(tickets.updateTicket(saved));
+        Ticket updated = tickets.getTicket("CAR1");
+        assertEquals(1.5, updated.getPrice(), 0.001);
+        assertNotNull(updated.getOutTime());
+    }
+
+    private Ticket enter(String vehicleRegNumber, ParkingType parkingType, int hoursAgo) {
+        Ticket ticket = newTicket(vehicleRegNumber, parkingType, hoursAgo);
+        assertTrue(sessions.enterVehicle(ticket) > 0);
+        return ticket;
+    }
+
+    private Ticket newTicket(String vehicleRegNumber, ParkingType parkingType, int hoursAgo) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(0, parkingType, true));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        //a minute more, so a stay of whole hours stays whole once the database drops the milliseconds
+        ticket.setInTime(new Date(System.currentTimeMillis() - hoursAgo * HOUR - 60 * 1000));
+        return ticket;
+    }
+}
@@ -0,0 +1,152 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.migration.SchemaMigrator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//plans of the embedded H2 database, whose index choice follows MySQL's closely enough to catch a missing index
+public class QueryPlanTest {
+
+    //an H2 table or index read without any condition on it
+    private static final Pattern FULL_SCAN = Pattern.compile("/\\* (PUBLIC\\.[A-Za-z0-9_.]+) \\*/");
+
+    //queries that read a whole table on purpose
+    private static final Set<String> FULL_READS = new HashSet<>(Arrays.asList(
+            //every spot, to build the free spot index and the occupancy counters
+            "GET_PARKING_SPOTS", "GET_SPOT_COUNTS",
+            //every loyal plate, once at startup
+            "GET_LOYAL_VEHICLES",
+            //the whole history, live and archived, streamed by re-rating after reading when each plate first left
+            "GET_CLOSED_TICKETS", "GET_FIRST_EXITS",
+            //the few tickets the reports are waiting for
+            "GET_REPORT_PENDING", "GET_REPORT_PENDING_IDS",
+            //the few leases of the cluster
+            "GET_SPOT_LEASES"));
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("plans");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+    }
+
+    @Test
+    public void migrationsAreAppliedOnceTest() {
+        SchemaMigrator schemaMigrator = new SchemaMigrator();
+        schemaMigrator.dataBaseConfig = dataBaseConfig;
+
+        assertEquals(SchemaMigrator.getLatestVersion(), schemaMigrator.getVersion());
+        assertEquals(0, schemaMigrator.migrate());
+        assertEquals(SchemaMigrator.getLatestVersion(), schemaMigrator.getVersion());
+    }
+
+    @Test
+    public void halfAppliedMigrationsAreCompletedTest() throws Exception {
+        SchemaMigrator schemaMigrator = new SchemaMigrator();
+        schemaMigrator.dataBaseConfig = dataBaseConfig;
+        //the first step of migrations 2 and 3 committed, the second did not
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            connection.createStatement().execute("drop index spot_lease_node");
+            connection.createStatement().execute("alter table parking drop column ZONE");
+            connection.createStatement().execute("delete from schema_version where VERSION >= 2");
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+
+        assertEquals(2, schemaMigrator.migrate());
+        assertEquals(SchemaMigrator.getLatestVersion(), schemaMigrator.getVersion());
+        connection = dataBaseConfig.getConnection();
+        try {
+            assertTrue(explain(connection, DBConstants.GET_NODE_SPOT_LEASES).contains("SPOT_LEASE_NODE"));
+            ResultSet rs = connection.createStatement().executeQuery("select count(*) from parking where ZONE = 'A'");
+            rs.next();
+            assertEquals(5, rs.getInt(1));
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    @Test
+    public void nodesStartingTogetherMigrateOnceTest() throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            connection.createStatement().execute("delete from schema_version where VERSION > 0");
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<Integer>> applied = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            applied.add(executor.submit(() -> {
+                SchemaMigrator schemaMigrator = new SchemaMigrator();
+                schemaMigrator.dataBaseConfig = dataBaseConfig;
+                return schemaMigrator.migrate();
+            }));
+        }
+        executor.shutdown();
+
+        Set<Integer> results = new HashSet<>(Arrays.asList(applied.get(0).get(), applied.get(1).get()));
+        assertEquals(new HashSet<>(Arrays.asList(0, SchemaMigrator.getLatestVersion())), results);
+    }
+
+    @Test
+    public void noQueryScansAWholeTableTest() throws Exception {
+        List<String> fullScans = new ArrayList<>();
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            for (Field field : DBConstants.class.getFields()) {
+                String sql = (String) field.get(null);
+                if (FULL_READS.contains(field.getName()) || sql.startsWith("create")) {
+                    continue;
+                }
+                String plan = explain(connection, sql);
+                //min or max read from the index ends
+                if (plan.contains("/* direct lookup */")) {
+                    continue;
+                }
+                Matcher matcher = FULL_SCAN.matcher(plan);
+                while (matcher.find()) {
+                    fullScans.add(field.getName() + " scans " + matcher.group(1));
+                }
+            }
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+
+        assertTrue(fullScans.isEmpty(), String.join("\n", fullScans));
+    }
+
+    private static String explain(Connection connection, String sql) throws Exception {
+        PreparedStatement ps = connection.prepareStatement("explain " + sql);
+        ResultSet rs = ps.executeQuery();
+        StringBuilder plan = new StringBuilder();
+        while (rs.next()) {
+            plan.append(rs.getString(1)).append('\n');
+        }
+        rs.close();
+        ps.close();
+        return plan.toString();
+    }
+}
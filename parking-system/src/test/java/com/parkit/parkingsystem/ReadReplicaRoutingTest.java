@@ -0,0 +1,95 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.FacilityDataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.OccupancyCounters;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//the replica is a database of its own that is never replicated to, so every read shows where it went
+public class ReadReplicaRoutingTest {
+
+    private static EmbeddedDataBaseTestConfig replicaDataBaseConfig = new EmbeddedDataBaseTestConfig("replica");
+    private static DataBaseConfig unreachableReplica = new FacilityDataBaseConfig("main",
+            "jdbc:h2:tcp://localhost:1/unreachable", "sa", "", "org.h2.Driver", null);
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("primary") {
+        @Override
+        protected List<DataBaseConfig> getReplicas() {
+            return Arrays.asList(unreachableReplica, replicaDataBaseConfig);
+        }
+    };
+    private static EmbeddedDataBasePrepareService primaryPrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+    private static EmbeddedDataBasePrepareService replicaPrepareService = new EmbeddedDataBasePrepareService(replicaDataBaseConfig);
+
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+    private ParkingService parkingService;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        primaryPrepareService.createSchema();
+        replicaPrepareService.createSchema();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        primaryPrepareService.clearDataBaseEntries();
+        replicaPrepareService.clearDataBaseEntries();
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ParkingSessionDAO parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+        parkingService = new ParkingService(parkingSpotDAO, ticketDAO, parkingSessionDAO);
+    }
+
+    @Test
+    public void staleReadsGoToTheReplicaTest() {
+        assertTrue(parkingService.enterVehicle("ABCDEF", ParkingType.CAR).isAccepted());
+
+        assertNull(ticketDAO.getTicket("ABCDEF"));
+        assertFalse(ticketDAO.alreadyAtParking("ABCDEF"));
+
+        //once replicated, the ticket shows up
+        TicketDAO replicaTicketDAO = new TicketDAO();
+        replicaTicketDAO.dataBaseConfig = replicaDataBaseConfig;
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date());
+        assertTrue(replicaTicketDAO.saveTicket(ticket));
+        assertNotNull(ticketDAO.getTicket("ABCDEF"));
+    }
+
+    @Test
+    public void writesAndConsistentReadsStayOnThePrimaryTest() {
+        assertTrue(parkingService.enterVehicle("ABCDEF", ParkingType.CAR).isAccepted());
+        //the exit finds the open ticket the replica does not have yet
+        assertTrue(parkingService.exitVehicle("ABCDEF").isAccepted());
+
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertTrue(parkingService.enterVehicle("GHIJKL", ParkingType.CAR).isAccepted());
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        //the counters are set to these counts, so they must include the entry just made
+        OccupancyCounters occupancy = new OccupancyCounters();
+        assertTrue(parkingSpotDAO.loadOccupancy(occupancy));
+        assertEquals(2, occupancy.getFree(ParkingType.CAR));
+    }
+}
@@ -0,0 +1,150 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.batch.TicketReRater;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.report.ReportAggregator;
+import com.parkit.parkingsystem.report.ReportRow;
+import com.parkit.parkingsystem.report.RevenueReportService;
+import com.parkit.parkingsystem.tariff.Tariff;
+import com.parkit.parkingsystem.tariff.TariffRules;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RevenueReportTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 5, 2);
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("report");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    private ReportAggregator reportAggregator;
+    private RevenueReportService reportService;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        reportAggregator = new ReportAggregator(2);
+        reportAggregator.dataBaseConfig = dataBaseConfig;
+        reportService = new RevenueReportService();
+        reportService.dataBaseConfig = dataBaseConfig;
+    }
+
+    @Test
+    public void closedTicketsAreCountedOnceTest() throws Exception {
+        insertTicket(1, "CAR1", 2.25, at(8, 30), at(10, 30));
+        insertTicket(4, "BIKE1", 1.0, at(9, 0), at(10, 0));
+        int open = insertTicket(2, "CAR2", 0, at(9, 15), null);
+
+        assertEquals(2, reportAggregator.catchUp());
+
+        List<ReportRow> hours = reportService.hourly(DAY, DAY.plusDays(1));
+        assertEquals(5, hours.size());
+        assertRow(hours.get(0), 8, ParkingType.CAR, 0, 0, 1800);
+        assertRow(hours.get(1), 9, ParkingType.BIKE, 0, 0, 3600);
+        assertRow(hours.get(2), 9, ParkingType.CAR, 0, 0, 3600);
+        assertRow(hours.get(3), 10, ParkingType.BIKE, 1, 100, 0);
+        assertRow(hours.get(4), 10, ParkingType.CAR, 1, 225, 1800);
+        //one of the three car spots taken the whole hour
+        assertEquals(1 / 3.0, hours.get(2).getOccupancy(), 0.0001);
+
+        closeTicket(open, 3.0, at(11, 15));
+        insertTicket(3, "CAR3", 1.5, at(12, 0), at(13, 10));
+
+        assertEquals(2, reportAggregator.catchUp());
+        assertEquals(0, reportAggregator.catchUp());
+
+        List<ReportRow> days = reportService.daily(DAY, DAY.plusDays(1));
+        assertEquals(2, days.size());
+        assertRow(days.get(0), 0, ParkingType.CAR, 3, 675, 7200 + 7200 + 4200);
+        assertEquals((7200 + 7200 + 4200) / (3 * 24 * 3600.0), days.get(0).getOccupancy(), 0.0001);
+        assertRow(days.get(1), 0, ParkingType.BIKE, 1, 100, 3600);
+        assertTrue(reportService.daily(DAY.plusDays(1), DAY.plusDays(2)).isEmpty());
+    }
+
+    @Test
+    public void reRatedPricesMoveCountedRevenueTest() throws Exception {
+        insertTicket(1, "CAR1", 2.25, at(8, 30), at(10, 30));
+        assertEquals(1, reportAggregator.catchUp());
+        //closed after the catch-up, so counted later with its new price
+        insertTicket(2, "CAR2", 2.25, at(9, 0), at(11, 0));
+
+        TicketReRater reRater = new TicketReRater();
+        reRater.dataBaseConfig = dataBaseConfig;
+        TariffRules rules = TariffRules.standard();
+        rules.set("CAR.rate=300");
+        reRater.setTariff(Tariff.compile(rules));
+        assertEquals(2, reRater.run().getWritten());
+        assertEquals(1, reportAggregator.catchUp());
+
+        List<ReportRow> hours = reportService.hourly(DAY, DAY.plusDays(1));
+        assertRow(hours.get(2), 10, ParkingType.CAR, 1, 450, 3600 + 1800);
+        assertRow(hours.get(3), 11, ParkingType.CAR, 1, 450, 0);
+    }
+
+    private static void assertRow(ReportRow row, int hour, ParkingType parkingType, long exits, long revenueCents,
+                                  long occupiedSeconds) {
+        assertEquals(DAY.atTime(hour, 0), row.getStart());
+        assertEquals(parkingType, row.getParkingType());
+        assertEquals(exits, row.getExits());
+        assertEquals(revenueCents, row.getRevenueCents());
+        assertEquals(occupiedSeconds, row.getOccupiedSeconds());
+    }
+
+    private static long at(int hour, int minute) {
+        return LocalDateTime.of(DAY, LocalTime.of(hour, minute)).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private int insertTicket(int parkingNumber, String vehicleRegNumber, double price, long inTime, Long outTime)
+            throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)",
+                    PreparedStatement.RETURN_GENERATED_KEYS);
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, vehicleRegNumber);
+            ps.setDouble(3, price);
+            ps.setTimestamp(4, new Timestamp(inTime));
+            ps.setTimestamp(5, outTime == null ? null : new Timestamp(outTime));
+            ps.executeUpdate();
+            ResultSet keys = ps.getGeneratedKeys();
+            keys.next();
+            return keys.getInt(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private void closeTicket(int id, double price, long outTime) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            PreparedStatement ps = connection.prepareStatement("update ticket set PRICE=?, OUT_TIME=? where ID=?");
+            ps.setDouble(1, price);
+            ps.setTimestamp(2, new Timestamp(outTime));
+            ps.setInt(3, id);
+            ps.executeUpdate();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.SpotAllocationStrategy;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpotAllocationStrategyTest {
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("zones");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    private FreeSpotIndex freeSpotIndex;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+        //car spots 1-3 on the ground level, 10-19 in zone A and 20-29 in zone B of level 1, 30-39 in zone A of level 2
+        dataBasePrepareService.addParkingSpots(10, 30, "CAR");
+        dataBasePrepareService.locateParkingSpots(10, 10, 1, "A");
+        dataBasePrepareService.locateParkingSpots(20, 10, 1, "B");
+        dataBasePrepareService.locateParkingSpots(30, 10, 2, "A");
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        //level 0: 1-2 in zone A; level 1: 10-12 in zone A, 20-23 in zone B; level 2: 30 in zone A
+        freeSpotIndex = new FreeSpotIndex();
+        locate(0, "A", 1, 2);
+        locate(1, "A", 10, 11, 12);
+        locate(1, "B", 20, 21, 22, 23);
+        locate(2, "A", 30);
+    }
+
+    @Test
+    public void lowestNumberIgnoresTheLayoutTest() {
+        SpotAllocationStrategy strategy = SpotAllocationStrategy.parse("lowest");
+
+        assertEquals(1, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(2, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(10, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(2, freeSpotIndex.freeCount(ParkingType.CAR, 1, "A"));
+    }
+
+    @Test
+    public void nearestFillsTheGateZoneThenItsNeighboursTest() {
+        SpotAllocationStrategy strategy = SpotAllocationStrategy.parse("nearest:1:B");
+
+        for (int parkingNumber = 20; parkingNumber <= 23; parkingNumber++) {
+            assertEquals(parkingNumber, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        }
+        //same level, next zone, before any other level
+        assertEquals(10, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        freeSpotIndex.claim(ParkingType.CAR, 11);
+        freeSpotIndex.claim(ParkingType.CAR, 12);
+        //one level away, ground level before level 2
+        assertEquals(1, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(2, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(30, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(-1, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(0, freeSpotIndex.freeCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void nearestPicksUpAreasFoundAfterItOrderedThemTest() {
+        SpotAllocationStrategy strategy = SpotAllocationStrategy.parse("nearest:2:A");
+
+        assertEquals(30, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        //a zone of the gate level gets its first free spot once the order is made
+        locate(2, "B", 40);
+        assertEquals(40, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(10, strategy.claim(freeSpotIndex, ParkingType.CAR));
+    }
+
+    @Test
+    public void spreadPicksTheLevelWithTheMostFreeSpotsTest() {
+        SpotAllocationStrategy strategy = SpotAllocationStrategy.parse("spread");
+
+        //level 1 has 7 free, and zone B is its zone with the most free spots
+        assertEquals(20, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(10, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        assertEquals(21, strategy.claim(freeSpotIndex, ParkingType.CAR));
+        freeSpotIndex.release(ParkingType.CAR, 21);
+        assertEquals(3, freeSpotIndex.freeCount(ParkingType.CAR, 1, "B"));
+        assertEquals(2, freeSpotIndex.freeCount(ParkingType.CAR, 1, "A"));
+    }
+
+    @Test
+    public void unknownStrategyIsRejectedTest() {
+        assertThrows(IllegalArgumentException.class, () -> SpotAllocationStrategy.parse("random"));
+        assertThrows(IllegalArgumentException.class, () -> SpotAllocationStrategy.parse("nearest:1"));
+    }
+
+    @Test
+    public void daoAllocatesNearTheGateFromTheParkingLayoutTest() {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.setAllocationStrategy(SpotAllocationStrategy.nearestTo(2, "A"));
+
+        assertEquals(30, parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(31, parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(31, parkingSpotDAO.getFreeSpotCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void gatesTellWhereTheSpotIsTest() {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.setAllocationStrategy(SpotAllocationStrategy.nearestTo(1, "B"));
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ParkingSessionDAO parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO, parkingSessionDAO);
+
+        ParkingSpot entered = parkingService.enterVehicle("ABCDEF", ParkingType.CAR).getParkingSpot();
+        ParkingSpot exited = parkingService.exitVehicle("ABCDEF").getParkingSpot();
+
+        assertEquals(20, entered.getId());
+        assertEquals(1, entered.getLevel());
+        assertEquals("B", entered.getZone());
+        assertEquals(1, exited.getLevel());
+        assertEquals("B", exited.getZone());
+    }
+
+    @Test
+    public void contendedClaimsStayInTheAreaTheStrategyChoseTest() {
+        SpotAllocationStrategy strategy = SpotAllocationStrategy.parse("nearest:1:B");
+
+        for (int i = 0; i < 4; i++) {
+            int parkingNumber = strategy.claim(freeSpotIndex, ParkingType.CAR, 8);
+            assertTrue(parkingNumber >= 20 && parkingNumber <= 23);
+        }
+        assertEquals(0, freeSpotIndex.freeCount(ParkingType.CAR, 1, "B"));
+        int parkingNumber = strategy.claim(freeSpotIndex, ParkingType.CAR, 8);
+        assertTrue(parkingNumber >= 10 && parkingNumber <= 12);
+    }
+
+    @Test
+    public void daoRetriesALostRaceWithItsStrategyTest() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.setAllocationStrategy(SpotAllocationStrategy.nearestTo(2, "A"));
+        assertTrue(parkingSpotDAO.loadFreeSpotIndex());
+        //another process takes the spot this gate would pick
+        ParkingSpotDAO otherGate = new ParkingSpotDAO();
+        otherGate.dataBaseConfig = dataBaseConfig;
+        otherGate.setAllocationStrategy(SpotAllocationStrategy.nearestTo(2, "A"));
+        assertEquals(30, otherGate.claimNextAvailableSlot(ParkingType.CAR));
+
+        int parkingNumber = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+
+        assertEquals(1, parkingSpotDAO.getClaimConflicts());
+        assertTrue(parkingNumber >= 31 && parkingNumber <= 39);
+    }
+
+    private void locate(int level, String zone, int... parkingNumbers) {
+        for (int parkingNumber : parkingNumbers) {
+            freeSpotIndex.locate(parkingNumber, level, zone);
+            freeSpotIndex.release(ParkingType.CAR, parkingNumber);
+        }
+    }
+}
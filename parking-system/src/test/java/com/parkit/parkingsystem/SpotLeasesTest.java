@@ -0,0 +1,106 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.SpotLeases;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//two nodes of a gate cluster on one database, each with its own free spot index
+public class SpotLeasesTest {
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("leases");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    private final Map<ParkingSpotDAO, SpotLeases> leases = new HashMap<>();
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+        //car spots 1-3 and 6-45
+        dataBasePrepareService.addParkingSpots(6, 40, "CAR");
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @Test
+    public void nodesAllocateFromTheirOwnBlocksTest() {
+        ParkingSpotDAO north = node("north", 8, 60000);
+        ParkingSpotDAO south = node("south", 8, 60000);
+        Set<Integer> northSpots = new HashSet<>();
+        Set<Integer> southSpots = new HashSet<>();
+
+        for (int i = 0; i < 12; i++) {
+            northSpots.add(north.claimNextAvailableSlot(ParkingType.CAR));
+            southSpots.add(south.claimNextAvailableSlot(ParkingType.CAR));
+        }
+
+        assertEquals(12, northSpots.size());
+        assertEquals(12, southSpots.size());
+        assertFalse(northSpots.contains(-1) || southSpots.contains(-1));
+        Set<Integer> northBlocks = blocksOf(northSpots, 8);
+        for (int block : blocksOf(southSpots, 8)) {
+            assertFalse(northBlocks.contains(block), "block " + block + " used by both nodes");
+        }
+        assertEquals(0, north.getClaimConflicts());
+        assertEquals(0, south.getClaimConflicts());
+    }
+
+    @Test
+    public void blocksOfADeadNodeAreTakenOverTest() throws Exception {
+        ParkingSpotDAO north = node("north", 100, 300);
+        ParkingSpotDAO south = node("south", 100, 300);
+        SpotLeases northLeases = leasesOf(north);
+
+        assertEquals(1, north.claimNextAvailableSlot(ParkingType.CAR));
+        assertTrue(northLeases.getBlocks(ParkingType.CAR).contains(0));
+        //the only block is north's, south still lets the car in from the whole car park
+        assertEquals(2, south.claimNextAvailableSlot(ParkingType.CAR));
+        assertTrue(leasesOf(south).getBlocks(ParkingType.CAR).isEmpty());
+
+        //north stops renewing
+        Thread.sleep(400);
+        south.maintainLeases();
+        assertTrue(leasesOf(south).getBlocks(ParkingType.CAR).contains(0));
+        assertEquals(3, south.claimNextAvailableSlot(ParkingType.CAR));
+
+        //north comes back to find its block gone
+        north.maintainLeases();
+        assertFalse(northLeases.getBlocks(ParkingType.CAR).contains(0));
+    }
+
+    private ParkingSpotDAO node(String name, int blockSize, long ttl) {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        SpotLeases spotLeases = new SpotLeases(name, blockSize, ttl, 2);
+        spotLeases.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.enableLeasing(spotLeases);
+        leases.put(parkingSpotDAO, spotLeases);
+        return parkingSpotDAO;
+    }
+
+    private SpotLeases leasesOf(ParkingSpotDAO parkingSpotDAO) {
+        return leases.get(parkingSpotDAO);
+    }
+
+    private static Set<Integer> blocksOf(Set<Integer> spots, int blockSize) {
+        Set<Integer> blocks = new HashSet<>();
+        for (int spot : spots) {
+            blocks.add(spot / blockSize);
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,120 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.tariff.Tariff;
+import com.parkit.parkingsystem.tariff.TariffEngine;
+import com.parkit.parkingsystem.tariff.TariffRules;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TariffTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Test
+    public void standardTariffMatchesFormerCalculationTest() {
+        Tariff tariff = Tariff.compile(TariffRules.standard());
+        for (ParkingType parkingType : ParkingType.values()) {
+            for (long minutes = 0; minutes <= 3 * 24 * 60; minutes += 5) {
+                for (boolean recurent : new boolean[]{false, true}) {
+                    long cents = tariff.fareCents(parkingType, 0, minutes * MINUTE + 1234, recurent);
+                    assertEquals(formerFare(parkingType, minutes * MINUTE + 1234, recurent), cents / 100.0,
+                            parkingType + " " + minutes + " min" + (recurent ? " recurent" : ""));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bandsFreePeriodAndCapTest() {
+        TariffRules rules = new TariffRules();
+        rules.setBillingUnitMinutes(15);
+        rules.setFreeMinutes(15);
+        rules.setLoyaltyDiscountPercent(10);
+        rules.setLoyaltyRoundingCents(1);
+        rules.set("CAR.bands=0:200,120:100");
+        rules.set("CAR.dailyCap=1500");
+        rules.set("BIKE.rate=60");
+        Tariff tariff = Tariff.compile(rules);
+
+        assertEquals(0, tariff.fareCents(ParkingType.CAR, 0, 29 * MINUTE, false));
+        //15 billed minutes at 2.00/h
+        assertEquals(50, tariff.fareCents(ParkingType.CAR, 0, 30 * MINUTE, false));
+        //2h at 2.00/h then 1h at 1.00/h
+        assertEquals(500, tariff.fareCents(ParkingType.CAR, 0, 3 * HOUR + 15 * MINUTE + 5 * MINUTE, false));
+        assertEquals(450, tariff.fareCents(ParkingType.CAR, 0, 3 * HOUR + 15 * MINUTE + 5 * MINUTE, true));
+        //capped to one day, then one day plus the next hours
+        assertEquals(1500, tariff.fareCents(ParkingType.CAR, 0, 23 * HOUR, false));
+        assertEquals(1500 + 200, tariff.fareCents(ParkingType.CAR, 0, 25 * HOUR + 15 * MINUTE, false));
+        assertEquals(3 * 1500, tariff.fareCents(ParkingType.CAR, 0, 3 * 24 * HOUR, false));
+        //no cap
+        assertEquals(60 * 10 - 15, tariff.fareCents(ParkingType.BIKE, 0, 10 * HOUR, false));
+        assertEquals((24 * 60 * 30 - 15) * 60 / 60, tariff.fareCents(ParkingType.BIKE, 0, 30 * 24 * HOUR, false));
+        assertThrows(IllegalArgumentException.class, () -> tariff.fareCents(ParkingType.BIKE, HOUR, 0, false));
+    }
+
+    @Test
+    public void invalidRulesAreRejectedTest() {
+        TariffRules rules = TariffRules.standard();
+        rules.setBillingUnitMinutes(7);
+        assertThrows(IllegalArgumentException.class, () -> Tariff.compile(rules));
+
+        TariffRules missingType = new TariffRules();
+        missingType.setRate(ParkingType.CAR, 150);
+        assertThrows(IllegalArgumentException.class, () -> Tariff.compile(missingType));
+        assertThrows(IllegalArgumentException.class, () -> new TariffRules().set("CAR.speed=3"));
+    }
+
+    @Test
+    public void newTariffAppliesWithoutRestartTest() throws Exception {
+        TariffEngine engine = new TariffEngine(Tariff.compile(TariffRules.standard()));
+        FareCalculatorService fareCalculatorService = new FareCalculatorService(engine);
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(0));
+        ticket.setOutTime(new Date(2 * HOUR));
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals(2.25, ticket.getPrice());
+
+        Path file = Files.createTempFile("tariff", ".properties");
+        file.toFile().deleteOnExit();
+        Files.write(file, Arrays.asList("freeMinutes=0", "CAR.rate=300", "BIKE.rate=100"), StandardCharsets.UTF_8);
+        assertTrue(engine.load(file));
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals(6.0, ticket.getPrice());
+
+        //a broken file keeps the tariff in force
+        Files.write(file, Arrays.asList("CAR.rate=abc"), StandardCharsets.UTF_8);
+        assertFalse(engine.load(file));
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals(6.0, ticket.getPrice());
+    }
+
+    //what FareCalculatorService computed before the tariff engine
+    private static double formerFare(ParkingType parkingType, long durationMillis, boolean recurent) {
+        float time = durationMillis / (60 * 60 * 1000);
+        if (time < 0.5) {
+            time = 0;
+        }
+        if (time > 0.5) {
+            time = (float) (time - 0.5);
+        }
+        double price = time * (parkingType == ParkingType.CAR ? Fare.CAR_RATE_PER_HOUR : Fare.BIKE_RATE_PER_HOUR);
+        if (recurent && price > 0) {
+            price = Math.round(price * 0.95);
+        }
+        return price;
+    }
+}
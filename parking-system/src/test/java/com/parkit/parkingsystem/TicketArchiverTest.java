@@ -0,0 +1,127 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.archive.TicketArchiver;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.report.ReportAggregator;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketArchiverTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("archive");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    private TicketArchiver ticketArchiver;
+    private ReportAggregator reportAggregator;
+    private long now;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        ticketArchiver = new TicketArchiver(30 * DAY, 2);
+        ticketArchiver.dataBaseConfig = dataBaseConfig;
+        reportAggregator = new ReportAggregator();
+        reportAggregator.dataBaseConfig = dataBaseConfig;
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    public void oldClosedTicketsMoveAndStayInTheHistoryTest() throws Exception {
+        insertTicket(1, "ABCDEF", now - 100 * DAY, now - 100 * DAY + 3600000);
+        insertTicket(1, "ABCDEF", now - 60 * DAY, now - 60 * DAY + 3600000);
+        insertTicket(2, "GHIJKL", now - 40 * DAY, now - 40 * DAY + 3600000);
+        insertTicket(3, "MNOPQR", now - 40 * DAY, null);
+        insertTicket(1, "STUVWX", now - DAY, now - DAY + 3600000);
+        assertEquals(4, reportAggregator.catchUp());
+
+        assertEquals(3, ticketArchiver.archive());
+        assertEquals(0, ticketArchiver.archive());
+        assertEquals(2, count("ticket"));
+        assertEquals(3, count("ticket_archive"));
+
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        assertTrue(ticketDAO.recurrentUsers("ABCDEF"));
+        Ticket first = ticketDAO.getTicket("ABCDEF");
+        assertNotNull(first);
+        assertEquals(now - 100 * DAY, first.getInTime().getTime(), 1000);
+
+        //a plate whose every ticket was archived is still a returning user, at entry and at exit
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ParkingSessionDAO parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO, parkingSessionDAO);
+        GateResult entry = parkingService.enterVehicle("GHIJKL", ParkingType.CAR);
+        assertTrue(entry.isAccepted());
+        assertTrue(entry.getTicket().getRecurent());
+        GateResult exit = parkingService.exitVehicle("GHIJKL");
+        assertTrue(exit.isAccepted());
+        assertTrue(exit.getTicket().getRecurent());
+    }
+
+    @Test
+    public void ticketsNotYetInTheReportsStayTest() throws Exception {
+        insertTicket(1, "ABCDEF", now - 100 * DAY, now - 100 * DAY + 3600000);
+
+        assertEquals(0, ticketArchiver.archive());
+        assertEquals(1, count("ticket"));
+
+        assertEquals(1, reportAggregator.catchUp());
+        assertEquals(1, ticketArchiver.archive());
+        assertEquals(0, count("ticket"));
+        //archived tickets are never counted twice
+        assertEquals(0, reportAggregator.catchUp());
+    }
+
+    private void insertTicket(int parkingNumber, String vehicleRegNumber, long inTime, Long outTime) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)");
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, vehicleRegNumber);
+            ps.setDouble(3, outTime == null ? 0 : 1.5);
+            ps.setTimestamp(4, new Timestamp(inTime));
+            ps.setTimestamp(5, outTime == null ? null : new Timestamp(outTime));
+            ps.executeUpdate();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private int count(String table) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            ResultSet rs = connection.createStatement().executeQuery("select count(*) from " + table);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.batch.ReRatingReport;
+import com.parkit.parkingsystem.batch.TicketReRater;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.tariff.Tariff;
+import com.parkit.parkingsystem.tariff.TariffRules;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketReRaterTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long START = Instant.parse("2024-05-02T08:00:00Z").toEpochMilli();
+
+    private static EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("rerate");
+    private static EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+
+    private TicketReRater reRater;
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        reRater = new TicketReRater();
+        reRater.dataBaseConfig = dataBaseConfig;
+        reRater.setChunkSize(2);
+        reRater.setParallelism(2);
+    }
+
+    @Test
+    public void dryRunListsChangesThenRunWritesThemTest() throws Exception {
+        //2h car stays at the old rate, the second one for a returning user, and a 3h bike stay
+        int first = insertTicket(1, "AB123CD", 2.25, START, START + 2 * HOUR);
+        int second = insertTicket(1, "AB123CD", 2.0, START + 3 * HOUR, START + 5 * HOUR);
+        int bike = insertTicket(4, "BIKE1", 2.5, START, START + 3 * HOUR);
+        insertTicket(2, "OPEN1", 0, START, null);
+        TariffRules rules = TariffRules.standard();
+        rules.set("CAR.rate=300");
+        reRater.setTariff(Tariff.compile(rules));
+        reRater.setDryRun(true);
+        StringWriter diff = new StringWriter();
+        reRater.setDiff(diff);
+
+        ReRatingReport dryRun = reRater.run();
+
+        assertEquals(3, dryRun.getTickets());
+        assertEquals(2, dryRun.getChanged());
+        assertEquals(0, dryRun.getWritten());
+        assertEquals(675, dryRun.getOldCents());
+        assertEquals(1100, dryRun.getNewCents());
+        assertEquals(first + ",AB123CD,2.25,4.5\n" + second + ",AB123CD,2.0,4.0\n", diff.toString());
+        assertEquals(2.25, price(first));
+
+        reRater.setDryRun(false);
+        ReRatingReport report = reRater.run();
+
+        assertEquals(2, report.getWritten());
+        assertEquals(4.5, price(first));
+        assertEquals(4.0, price(second));
+        assertEquals(2.5, price(bike));
+        assertEquals(0, reRater.run().getChanged());
+    }
+
+    @Test
+    public void onlyTicketsClosedInWindowAreReRatedTest() throws Exception {
+        reRater.setChunkSize(64);
+        int tickets = 1000;
+        for (int i = 0; i < tickets; i++) {
+            insertTicket(1 + i % 3, "V" + (i % 50), 0, START + i * HOUR, START + i * HOUR + 2 * HOUR);
+        }
+        //exits from the 101st to the 600th ticket
+        reRater.setClosedBetween(START + 102 * HOUR, START + 602 * HOUR);
+
+        ReRatingReport report = reRater.run();
+
+        assertEquals(500, report.getTickets());
+        assertEquals(500, report.getWritten());
+        assertEquals(0, count("select count(*) from ticket where PRICE > 0 and OUT_TIME < ?", START + 102 * HOUR));
+        assertEquals(0, count("select count(*) from ticket where PRICE > 0 and OUT_TIME >= ?", START + 602 * HOUR));
+        //every plate has had two stays before the window, so all of them get the loyalty discount
+        assertEquals(500, count("select count(*) from ticket where PRICE = 2.0 and OUT_TIME >= ?", START));
+    }
+
+    @Test
+    public void loyaltyCountsArchivedStaysAndEntryTimesNotIdsTest() throws Exception {
+        TariffRules rules = TariffRules.standard();
+        rules.set("CAR.rate=300");
+        reRater.setTariff(Tariff.compile(rules));
+        archiveTicket(1000, 1, "ARCH1", START - 48 * HOUR, START - 46 * HOUR);
+        int afterArchive = insertTicket(1, "ARCH1", 0, START, START + 2 * HOUR);
+        //loaded out of order: the later stay got the lower id
+        int later = insertTicket(2, "LATE1", 0, START + 3 * HOUR, START + 5 * HOUR);
+        int earlier = insertTicket(3, "LATE1", 0, START, START + 2 * HOUR);
+
+        reRater.run();
+
+        assertEquals(4.0, price(afterArchive));
+        assertEquals(4.0, price(later));
+        assertEquals(4.5, price(earlier));
+    }
+
+    @Test
+    public void archivedTicketsAreReRatedInTheArchiveTest() throws Exception {
+        //a 2h car stay archived at the 3.00 rate, priced again at the standard one
+        archiveTicket(1000, 1, "ARCH1", START - 48 * HOUR, START - 46 * HOUR);
+        int live = insertTicket(1, "LIVE1", 4.5, START, START + 2 * HOUR);
+        reRater.setTariff(Tariff.compile(TariffRules.standard()));
+
+        ReRatingReport report = reRater.run();
+
+        assertEquals(2, report.getTickets());
+        assertEquals(2, report.getWritten());
+        assertEquals(2.25, price(1000, "ticket_archive"));
+        assertEquals(2.25, price(live));
+    }
+
+    private void archiveTicket(int id, int parkingNumber, String vehicleRegNumber, long inTime, long outTime)
+            throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?,?)");
+            ps.setInt(1, id);
+            ps.setInt(2, parkingNumber);
+            ps.setString(3, vehicleRegNumber);
+            ps.setDouble(4, 4.5);
+            ps.setTimestamp(5, new Timestamp(inTime));
+            ps.setTimestamp(6, new Timestamp(outTime));
+            ps.executeUpdate();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private int insertTicket(int parkingNumber, String vehicleRegNumber, double price, long inTime, Long outTime)
+            throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)",
+                    PreparedStatement.RETURN_GENERATED_KEYS);
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, vehicleRegNumber);
+            ps.setDouble(3, price);
+            ps.setTimestamp(4, new Timestamp(inTime));
+            ps.setTimestamp(5, outTime == null ? null : new Timestamp(outTime));
+            ps.executeUpdate();
+            ResultSet keys = ps.getGeneratedKeys();
+            keys.next();
+            return keys.getInt(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private double price(int id) throws Exception {
+        return price(id, "ticket");
+    }
+
+    private double price(int id, String table) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            ResultSet rs = connection.createStatement().executeQuery("select PRICE from " + table + " where ID = " + id);
+            assertTrue(rs.next());
+            return rs.getDouble(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private int count(String sql, long time) throws Exception {
+        Connection connection = dataBaseConfig.getConnection();
+        try {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, new Timestamp(time));
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.tariff.Tariff;
+import com.parkit.parkingsystem.tariff.TariffRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of pricing one ticket, for every vehicle type, a spread of stay durations and both loyalty flags.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FareCalculatorBenchmark {
+
+    @Param({"CAR", "BIKE"})
+    private ParkingType parkingType;
+
+    //free period, under an hour, a few hours and a full day
+    @Param({"20", "45", "180", "1440"})
+    private int durationMinutes;
+
+    @Param({"false", "true"})
+    private boolean recurent;
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private final Tariff tariff = Tariff.compile(TariffRules.standard());
+    private Ticket ticket;
+    private long inTime;
+    private long outTime;
+
+    @Setup
+    public void setUp() {
+        outTime = System.currentTimeMillis();
+        inTime = outTime - durationMinutes * 60 * 1000L;
+        ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(new Date(outTime));
+        ticket.setRecurent(recurent);
+    }
+
+    @Benchmark
+    public double calculateFare() {
+        fareCalculatorService.calculateFare(ticket);
+        return ticket.getPrice();
+    }
+
+    //the tariff lookup alone, without the ticket
+    @Benchmark
+    public long fareCents() {
+        return tariff.fareCents(parkingType, inTime, outTime, recurent);
+    }
+}
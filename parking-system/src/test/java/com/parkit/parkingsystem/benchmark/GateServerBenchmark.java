@@ -0,0 +1,119 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.load.LatencyRecorder;
+import com.parkit.parkingsystem.server.GateServer;
+import com.parkit.parkingsystem.service.ParkingService;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load on a local {@link GateServer} backed by the embedded H2 database. Each client
+ * thread keeps one keep-alive connection and loops entry then exit for its own vehicle.
+ *
+ * <p>{@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.parkit.parkingsystem.benchmark.GateServerBenchmark -Dexec.args="64 20 256"}
+ * for 64 clients during 20 seconds with at most 256 requests in flight.
+ */
+public class GateServerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        int maxInFlight = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("gateserver");
+        EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+        dataBasePrepareService.createSchema();
+        dataBasePrepareService.addParkingSpots(100, clients, "CAR");
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ParkingSessionDAO parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+        GateServer gateServer = new GateServer(new InetSocketAddress("localhost", 0),
+                new ParkingService(parkingSpotDAO, ticketDAO, parkingSessionDAO), maxInFlight);
+        gateServer.start();
+
+        String base = "http://localhost:" + gateServer.getPort();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong errors = new AtomicLong();
+        List<Client> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(base, "C" + i, end, errors);
+            threads.add(client);
+            client.start();
+        }
+        LatencyRecorder latency = new LatencyRecorder();
+        for (Client client : threads) {
+            client.join();
+            latency.addAll(client.latency);
+        }
+        gateServer.stop();
+        DataBaseConfig.shutdownPools();
+
+        System.out.println(String.format(Locale.ROOT,
+                "%d clients, %ds: %.0f requests/s, p50 %.2fms p99 %.2fms p999 %.2fms, %d shed, %d errors",
+                clients, seconds, latency.getCount() / (double) seconds, latency.percentile(50) / 1e6,
+                latency.percentile(99) / 1e6, latency.percentile(99.9) / 1e6, gateServer.getShedRequests(), errors.get()));
+    }
+
+    private static final class Client extends Thread {
+        private final String base;
+        private final String vehicleRegNumber;
+        private final long end;
+        private final AtomicLong errors;
+        private final LatencyRecorder latency = new LatencyRecorder();
+
+        private Client(String base, String vehicleRegNumber, long end, AtomicLong errors) {
+            this.base = base;
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.end = end;
+            this.errors = errors;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (System.nanoTime() < end) {
+                    call("/entries?type=CAR&plate=" + vehicleRegNumber);
+                    call("/exits?plate=" + vehicleRegNumber);
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+        }
+
+        private void call(String path) throws Exception {
+            long start = System.nanoTime();
+            HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+            connection.setRequestMethod("POST");
+            int status = connection.getResponseCode();
+            //reading the body to the end lets the JDK reuse the connection
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            byte[] buffer = new byte[512];
+            while (in.read(buffer) >= 0) {
+                //discard
+            }
+            in.close();
+            latency.record(System.nanoTime() - start);
+            if (status != 200) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSessionDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entry and exit sequences of the DAO layer against the embedded H2 database, pool included.
+ * The ticket table is emptied between iterations so every iteration starts from the same size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParkingDAOBenchmark {
+
+    private final EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("benchmark");
+    private final EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private final AtomicLong vehicles = new AtomicLong();
+    private ParkingSpotDAO parkingSpotDAO;
+    private ParkingSessionDAO parkingSessionDAO;
+    private TicketDAO ticketDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+        dataBasePrepareService.addParkingSpots(100, 200, "CAR");
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSessionDAO = new ParkingSessionDAO(parkingSpotDAO);
+        parkingSessionDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTickets() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO.loadFreeSpotIndex();
+        parkingSessionDAO.loadActiveSessions();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataBaseConfig.shutdownPools();
+    }
+
+    //transactional gate path: presence and loyalty check, spot claim and ticket insert, then close and release
+    @Benchmark
+    public Ticket enterAndExitVehicle() {
+        String vehicleRegNumber = nextVehicle();
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(0, ParkingType.CAR, true));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(System.currentTimeMillis() - 3 * 60 * 60 * 1000));
+        parkingSessionDAO.enterVehicle(ticket);
+        return parkingSessionDAO.exitVehicle(vehicleRegNumber, new Date(), fareCalculatorService);
+    }
+
+    @Benchmark
+    public boolean claimAndReleaseSpot() {
+        int parkingNumber = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+        return parkingSpotDAO.updateParking(new ParkingSpot(parkingNumber, ParkingType.CAR, true));
+    }
+
+    //ticket writes one statement per call, as the DAO offers them outside the gate transaction
+    @Benchmark
+    public boolean saveReadAndUpdateTicket() {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(nextVehicle());
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticketDAO.saveTicket(ticket);
+        Ticket saved = ticketDAO.getTicket(ticket.getVehicleRegNumber());
+        saved.setOutTime(new Date());
+        fareCalculatorService.calculateFare(saved);
+        return ticketDAO.updateTicket(saved);
+    }
+
+    private String nextVehicle() {
+        return "V" + Long.toString(vehicles.incrementAndGet(), 36).toUpperCase();
+    }
+}
@@ -0,0 +1,99 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eight gates, each with its own ParkingSpotDAO as if running in separate processes, claiming and
+ * freeing car spots of one parking table, so their claims race in DB. Next to the claim throughput,
+ * lost races and spots handed to two gates at once are reported as counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class SpotClaimContentionBenchmark {
+
+    private final EmbeddedDataBaseTestConfig dataBaseConfig = new EmbeddedDataBaseTestConfig("claims");
+    private final EmbeddedDataBasePrepareService dataBasePrepareService = new EmbeddedDataBasePrepareService(dataBaseConfig);
+    //spots claimed and not freed yet, by any gate
+    private final Set<Integer> held = ConcurrentHashMap.newKeySet();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBasePrepareService.createSchema();
+        dataBasePrepareService.addParkingSpots(100, 200, "CAR");
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataBaseConfig.shutdownPools();
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+        private ParkingSpotDAO parkingSpotDAO;
+
+        @Setup(Level.Trial)
+        public void setUp(SpotClaimContentionBenchmark benchmark) {
+            parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.dataBaseConfig = benchmark.dataBaseConfig;
+            parkingSpotDAO.loadFreeSpotIndex();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Races {
+        public long lostRaces;
+        public long duplicateAllocations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lostRaces = 0;
+            duplicateAllocations = 0;
+        }
+    }
+
+    @Benchmark
+    public boolean claimAndReleaseSpot(Gate gate, Races races) {
+        long conflicts = gate.parkingSpotDAO.getClaimConflicts();
+        int parkingNumber = gate.parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+        races.lostRaces += gate.parkingSpotDAO.getClaimConflicts() - conflicts;
+        if (parkingNumber < 0) {
+            return false;
+        }
+        if (held.add(parkingNumber)) {
+            held.remove(parkingNumber);
+        } else {
+            races.duplicateAllocations++;
+        }
+        return gate.parkingSpotDAO.updateParking(new ParkingSpot(parkingNumber, ParkingType.CAR, true));
+    }
+}
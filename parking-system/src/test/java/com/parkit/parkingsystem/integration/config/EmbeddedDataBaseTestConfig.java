@@ -0,0 +1,51 @@
+package com.parkit.parkingsystem.integration.config;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.PoolSettings;
+
+/**
+ * In-memory H2 database running in MySQL mode, for tests that need real SQL but no MySQL server.
+ * Call {@link com.parkit.parkingsystem.integration.service.EmbeddedDataBasePrepareService#createSchema()}
+ * before first use.
+ */
+public class EmbeddedDataBaseTestConfig extends DataBaseConfig {
+
+    private final String name;
+
+    public EmbeddedDataBaseTestConfig() {
+        this("parkit");
+    }
+
+    public EmbeddedDataBaseTestConfig(String name) {
+        this.name = name;
+    }
+
+    @Override
+    protected String getDriverClassName() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    protected String getUrl() {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    protected String getUser() {
+        return "sa";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+
+    @Override
+    protected PoolSettings getPoolSettings() {
+        PoolSettings settings = new PoolSettings();
+        settings.setMinIdle(1);
+        settings.setMaxSize(20);
+        settings.setConnectionTimeout(5000);
+        return settings;
+    }
+}
@@ -0,0 +1,105 @@
+package com.parkit.parkingsystem.integration.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.migration.SchemaMigrator;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.stream.Collectors;
+
+public class EmbeddedDataBasePrepareService {
+
+    private final DataBaseConfig dataBaseConfig;
+
+    public EmbeddedDataBasePrepareService(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    //the tables of Data.sql migrated to the latest version, as App leaves them
+    public void createSchema() throws Exception {
+        runScript("/embedded-schema.sql");
+        SchemaMigrator schemaMigrator = new SchemaMigrator();
+        schemaMigrator.dataBaseConfig = dataBaseConfig;
+        if (schemaMigrator.migrate() < 0) {
+            throw new IllegalStateException("Schema migration failed");
+        }
+    }
+
+    //adds spots numbered from the given value onwards, on top of the five created by the schema
+    public void addParkingSpots(int from, int count, String type) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            PreparedStatement ps = connection.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)");
+            for (int i = 0; i < count; i++) {
+                ps.setInt(1, from + i);
+                ps.setString(2, type);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    //moves the spots numbered from the given value onwards to a level and zone
+    public void locateParkingSpots(int from, int count, int level, String zone) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            PreparedStatement ps = connection.prepareStatement("update parking set PARKING_LEVEL = ?, ZONE = ? where PARKING_NUMBER >= ? and PARKING_NUMBER < ?");
+            ps.setInt(1, level);
+            ps.setString(2, zone);
+            ps.setInt(3, from);
+            ps.setInt(4, from + count);
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    public void clearDataBaseEntries() throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            Statement statement = connection.createStatement();
+            statement.execute("update parking set available = true");
+            statement.execute("delete from ticket");
+            statement.execute("delete from ticket_journal");
+            statement.execute("delete from report_hourly");
+            statement.execute("delete from report_pending");
+            statement.execute("delete from ticket_archive");
+            statement.execute("delete from spot_lease");
+            statement.close();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private void runScript(String resource) throws Exception {
+        String script;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream(resource), StandardCharsets.UTF_8))) {
+            script = reader.lines().collect(Collectors.joining("\n"));
+        }
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            Statement statement = connection.createStatement();
+            for (String sql : script.replaceAll("/\\*.*?\\*/", "").split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    statement.execute(sql);
+                }
+            }
+            statement.close();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
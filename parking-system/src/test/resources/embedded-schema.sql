@@ -0,0 +1,58 @@
+/* Same tables as resources/Data.sql, for the in-memory test database; SchemaMigrator adds the rest */
+drop table if exists spot_lease;
+drop table if exists schema_version;
+drop table if exists ticket_archive;
+drop table if exists report_pending;
+drop table if exists report_hourly;
+drop table if exists ticket_journal;
+drop table if exists ticket;
+drop table if exists parking;
+
+create table parking(
+PARKING_NUMBER int PRIMARY KEY,
+AVAILABLE bool NOT NULL,
+TYPE varchar(10) NOT NULL
+);
+
+create table ticket(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME,
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+create table ticket_journal(
+ NAME varchar(100) PRIMARY KEY,
+ LAST_SEQ bigint NOT NULL);
+
+create table report_hourly(
+ HOUR_START DATETIME NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ EXITS bigint NOT NULL,
+ REVENUE_CENTS bigint NOT NULL,
+ OCCUPIED_SECONDS bigint NOT NULL,
+ PRIMARY KEY (HOUR_START, TYPE));
+
+create table report_pending(
+ TICKET_ID int PRIMARY KEY,
+ SINCE DATETIME NOT NULL);
+
+create table ticket_archive(
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ PRIMARY KEY (ID, OUT_TIME));
+
+create index ticket_archive_plate on ticket_archive(VEHICLE_REG_NUMBER);
+
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(4,true,'BIKE');
+insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(5,true,'BIKE');